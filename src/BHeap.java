@@ -0,0 +1,280 @@
+/**
+ * Creates a minimum heap of primitive long keys laid out in blocks (a B-heap), for heaps far larger than the CPU caches.
+ * In a flat array heap, every level below the first few is a separate cache line (and eventually a separate page), so each
+ * level of a sift is a likely cache miss. A B-heap stores each subtree of 'blockLevels' levels together in one block, so a
+ * sift only moves to a new block once every 'blockLevels' levels
+ *
+ * @Note: Example instantiation:<br>
+ * BHeap heap = new BHeap(100_000_000, BHeap.PAGE_LEVELS);<br>
+ * heap.insert(ride.time.getTime() &lt;&lt; 32 | slot);<br>
+ * <br>The heap is addressed by the usual logical index (root 1, children 2i and 2i + 1), and each logical index is mapped to
+ * its slot in the block layout on access. Passing 0 block levels gives the flat layout, which is handy for comparisons.
+ * Keys are primitive longs, so rides are stored as packed keys (e.g., time and a slot in a side table), as in toSortedArray()
+ */
+public class BHeap {
+    /**
+     * Block levels that fit one 64-byte cache line (a 7-node subtree plus an unused slot)
+     */
+    public static final int CACHE_LINE_LEVELS = 3;
+    /**
+     * Block levels that fit one 4KB page (a 511-node subtree plus an unused slot)
+     */
+    public static final int PAGE_LEVELS = 9;
+    /**
+     * The keys, stored in the block layout
+     */
+    private final long[] keys;
+    /**
+     * The number of tree levels stored in each block, or 0 for the flat layout
+     */
+    private final int blockLevels;
+    /**
+     * The number of tree levels in each block, treating the flat layout as one endless block
+     */
+    private final int levelsPerBlock;
+    /**
+     * The first slot of each block level, block levels are stored one after another from the root down
+     */
+    private final int[] levelStart;
+    /**
+     * The log2 size of the blocks on each block level. Every level uses full blocks except the last, whose blocks are only
+     * as large as the levels the capacity reaches, so a shallow last level does not waste most of each block
+     */
+    private final int[] levelShift;
+    /**
+     * The maximum number of keys the heap can hold
+     */
+    private final int capacity;
+    /**
+     * Points to the next free logical index in the heap
+     */
+    private int next = 1;
+
+    /**
+     * Constructs a new B-heap that can hold the passed number of keys
+     * @param capacity The maximum number of keys the heap can hold
+     * @param blockLevels The number of tree levels stored in each block (e.g., CACHE_LINE_LEVELS or PAGE_LEVELS), or 0 for the flat layout
+     * @throws IllegalArgumentException if the capacity is less than 1 or the number of block levels is out of range
+     */
+    public BHeap(int capacity, int blockLevels) {
+        if (capacity < 1 || capacity == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unable to create heap! Invalid capacity: " + capacity);
+
+        if (blockLevels < 0 || blockLevels > 16)
+            throw new IllegalArgumentException("Unable to create heap! Invalid number of block levels: " + blockLevels);
+
+        this.capacity = capacity;
+        this.blockLevels = blockLevels;
+        levelsPerBlock = blockLevels == 0 ? Integer.SIZE : blockLevels;
+
+        if (blockLevels == 0) {
+            levelStart = null;
+            levelShift = null;
+            keys = new long[capacity + 1];
+            return;
+        }
+
+        // lays out the block levels from the root down, a block level whose roots are at depth d holds 2^d blocks
+        int depth = depth(capacity);
+        int levels = depth / blockLevels + 1;
+        levelStart = new int[levels];
+        levelShift = new int[levels];
+        long slots = 0;
+        for (int level = 0; level < levels; level++) {
+            int rootDepth = level * blockLevels;
+            boolean isLast = level == levels - 1;
+            long blocks = 1L << rootDepth;
+
+            // the last block level only needs to be as deep as the capacity reaches
+            levelShift[level] = isLast ? depth - rootDepth + 1 : blockLevels;
+            if (isLast && depth == rootDepth)
+                // only the top of each block is used, so only the blocks up to the last index's are needed
+                blocks = capacity - blocks + 1;
+
+            levelStart[level] = (int) slots;
+            slots += blocks << levelShift[level];
+            if (slots > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("Unable to create heap! Capacity is too large for the block layout: " + capacity);
+        }
+
+        keys = new long[(int) slots];
+    }
+
+    /**
+     * Adds the passed key to the heap (maintaining heap order)
+     * @param key The key being added
+     * @return A boolean value that is true if the key was added, else returns false if the heap is full
+     */
+    public boolean insert(long key) {
+        if (next > capacity)
+            return false;
+
+        int index = next++;
+        int slot = slot(index);
+        // the index's position within its block, parents inside the same block are found without remapping
+        int local = local(index);
+
+        // shifts larger parents down into the hole until the key's place is found
+        while (index > 1) {
+            int parent = index >>> 1;
+            int parentSlot;
+            if (local > 1) {
+                parentSlot = slot - local + (local >>> 1);
+                local >>>= 1;
+
+            } else {
+                // the hole is at the top of its block, so the parent is at the bottom of the block above
+                parentSlot = slot(parent);
+                local = local(parent);
+            }
+
+            long parentKey = keys[parentSlot];
+            if (parentKey <= key)
+                break;
+
+            keys[slot] = parentKey;
+            index = parent;
+            slot = parentSlot;
+        }
+
+        keys[slot] = key;
+        return true;
+    }
+
+    /**
+     * Returns the smallest key in the heap without removing it
+     * @return The smallest key
+     * @throws IllegalStateException if the heap is empty
+     */
+    public long peek() {
+        if (next == 1)
+            throw new IllegalStateException("Unable to peek! Heap is empty...");
+
+        return keys[slot(1)];
+    }
+
+    /**
+     * Removes and returns the smallest key in the heap
+     * @return The smallest key
+     * @throws IllegalStateException if the heap is empty
+     */
+    public long poll() {
+        if (next == 1)
+            throw new IllegalStateException("Unable to poll! Heap is empty...");
+
+        int slot = slot(1);
+        long top = keys[slot];
+        long key = keys[slot(--next)];
+        int last = next - 1;
+
+        // walks the smaller-child path down from the root, shifting children up into the hole
+        int index = 1;
+        int local = 1;
+        int levels = 0;
+        while (index << 1 <= last) {
+            int child = index << 1;
+            int childSlot;
+            // children inside the same block sit at twice the local index, siblings are always next to each other there
+            if (++levels < levelsPerBlock) {
+                childSlot = slot + local;
+                local <<= 1;
+
+            } else {
+                childSlot = slot(child);
+                local = 1;
+                levels = 0;
+            }
+
+            long childKey = keys[childSlot];
+            if (child < last) {
+                // a sibling that starts its own block is not next to its brother, so it is remapped
+                int rightSlot = local == 1 ? slot(child + 1) : childSlot + 1;
+                long rightKey = keys[rightSlot];
+                if (rightKey < childKey) {
+                    child++;
+                    childSlot = rightSlot;
+                    childKey = rightKey;
+                    if (local > 1)
+                        local++;
+                }
+            }
+
+            if (key <= childKey)
+                break;
+
+            keys[slot] = childKey;
+            index = child;
+            slot = childSlot;
+        }
+
+        keys[slot] = key;
+        return top;
+    }
+
+    /**
+     * Returns the number of keys in the heap
+     * @return An integer value denoting the number of keys
+     */
+    public int size() {
+        return next - 1;
+    }
+
+    /**
+     * Checks if the heap contains any keys
+     * @return A boolean value that is true if the heap is empty, else returns false
+     */
+    public boolean isEmpty() {
+        return next == 1;
+    }
+
+    /**
+     * Returns the number of bytes used by the key array, including the unused slot in each block
+     * @return A long value denoting the memory used in bytes
+     */
+    public long getMemoryUsed() {
+        return (long) keys.length * Long.BYTES;
+    }
+
+    /**
+     * Maps a logical heap index to its slot in the key array. The node's block is the subtree rooted at its ancestor on the
+     * nearest block-root depth above it, and within the block the node keeps its position relative to that ancestor
+     * @param index The logical index (root 1, children 2i and 2i + 1)
+     * @return The slot of the index in the key array
+     */
+    int slot(int index) {
+        if (blockLevels == 0)
+            return index;
+
+        int depth = depth(index);
+        int level = depth / blockLevels;
+        int offset = depth - level * blockLevels;
+        int root = index >>> offset;
+
+        // numbers the block among the blocks of its level, then places the node at its local index within the block
+        int block = root - (1 << (depth - offset));
+        int local = (1 << offset) | (index & ((1 << offset) - 1));
+        return levelStart[level] + (block << levelShift[level]) + local;
+    }
+
+    /**
+     * Returns the position of a logical index within its block, where the block's root is 1
+     * @param index The logical index
+     * @return The local index within the block, the logical index itself in the flat layout
+     */
+    private int local(int index) {
+        if (blockLevels == 0)
+            return index;
+
+        int offset = depth(index) % blockLevels;
+        return (1 << offset) | (index & ((1 << offset) - 1));
+    }
+
+    /**
+     * Returns the depth of a logical index, where the root has a depth of 0
+     * @param index The logical index
+     * @return The depth of the index
+     */
+    private static int depth(int index) {
+        return 31 - Integer.numberOfLeadingZeros(index);
+    }
+}
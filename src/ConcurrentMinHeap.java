@@ -0,0 +1,191 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Creates a thread-safe 'MinHeap' for read-heavy workloads. Writes (insert, remove, poll) take an exclusive write lock,
+ * and reads that walk the heap (hasRide, snapshot, dump) take a shared read lock, so many readers run side by side. After
+ * every write the smallest ride is published to a volatile field, so peek() never locks at all, and the size is copied to a
+ * plain field that size() reads optimistically, only falling back to the read lock if a writer got in the way
+ *
+ * @Note: Example instantiation:<br>
+ * ConcurrentMinHeap queue = new ConcurrentMinHeap(10000);<br>
+ * queue.insert(ride);&nbsp;&nbsp;// from any thread<br>
+ * Ride earliest = queue.peek();&nbsp;&nbsp;// never blocks<br>
+ * <br>The wrapped heap must not be used directly once it has been wrapped. Optimistic reads are kept to copying plain fields,
+ * since calling into the heap while a writer is part way through (e.g., resizing the ride ID index) is not safe to validate after
+ */
+public class ConcurrentMinHeap {
+    /**
+     * The heap being guarded
+     */
+    private final MinHeap heap;
+    /**
+     * Guards the heap, supports optimistic reads that do not block writers
+     */
+    private final StampedLock lock = new StampedLock();
+    /**
+     * The smallest ride in the heap, republished after every write
+     */
+    private volatile Ride min;
+    /**
+     * The number of rides in the heap, copied after every write while the write lock is held
+     */
+    private int size;
+    /**
+     * The number of optimistic reads that were invalidated by a writer and had to retry under the read lock
+     */
+    private final LongAdder optimisticFailures = new LongAdder();
+
+    /**
+     * Constructs a new thread-safe heap that can hold the passed number of rides
+     * @param maxRides The maximum number of rides the heap can hold
+     * @throws IllegalArgumentException if the maximum number of rides is less than 1
+     */
+    public ConcurrentMinHeap(int maxRides) {
+        this(new MinHeap(maxRides));
+    }
+
+    /**
+     * Constructs a new thread-safe wrapper around the passed heap
+     * @param heap The heap being guarded, which must not be used directly afterwards
+     */
+    public ConcurrentMinHeap(MinHeap heap) {
+        this.heap = heap;
+        publish();
+    }
+
+    /**
+     * Adds the passed ride to the heap (maintaining heap order)
+     * @param r The ride object being added to the heap
+     * @return A boolean value that is true if the ride was successfully added to the heap, else returns false
+     */
+    public boolean insert(Ride r) {
+        long stamp = lock.writeLock();
+        try {
+            boolean isInserted = heap.insert(r);
+            publish();
+            return isInserted;
+
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the passed ride from the heap (maintaining heap order)
+     * @param r The ride object being removed from the heap
+     * @return A boolean value that is true if the ride was successfully removed from the heap, else returns false
+     */
+    public boolean remove(Ride r) {
+        long stamp = lock.writeLock();
+        try {
+            boolean isRemoved = heap.remove(r);
+            publish();
+            return isRemoved;
+
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes and returns the first ride in the heap (lowest value)
+     * @return The ride that was at the top of the heap, or null if the heap is empty
+     */
+    public Ride poll() {
+        long stamp = lock.writeLock();
+        try {
+            Ride ride = heap.poll();
+            publish();
+            return ride;
+
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the first ride in the heap (lowest value) without removing it or taking any lock
+     * @return The ride at the top of the heap as of the last completed write, or null if the heap is empty
+     */
+    public Ride peek() {
+        return min;
+    }
+
+    /**
+     * Checks if the heap contains the passed ride under the shared read lock
+     * @param r The ride object being searched for in the heap
+     * @return A boolean value that is true if the heap contains the passed ride, else returns false
+     */
+    public boolean hasRide(Ride r) {
+        long stamp = lock.readLock();
+        try {
+            return heap.hasRide(r);
+
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of rides currently in the heap, without locking unless a write is in progress
+     * @return An integer value denoting the number of rides in the heap
+     */
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int size = this.size;
+            if (lock.validate(stamp))
+                return size;
+
+            optimisticFailures.increment();
+        }
+
+        stamp = lock.readLock();
+        try {
+            return size;
+
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns a copy of the rides in the heap, in heap (array) order, under the shared read lock
+     * @return A new array containing each ride in the heap
+     */
+    public Ride[] snapshot() {
+        long stamp = lock.readLock();
+        try {
+            return heap.snapshot();
+
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Dumps the ride info of the heap to the console. The rides are copied first, so printing never holds up writers
+     */
+    public void dump() {
+        for (Ride ride : snapshot())
+            System.out.println(ride);
+    }
+
+    /**
+     * Publishes the smallest ride and the size of the heap, must be called while holding the write lock (or before the
+     * heap is shared)
+     */
+    private void publish() {
+        min = heap.peek();
+        size = heap.size();
+    }
+
+    /**
+     * Returns the number of optimistic reads that had to be retried under the read lock
+     * @return A long value denoting the number of failed optimistic reads
+     */
+    public long getOptimisticFailures() {
+        return optimisticFailures.sum();
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Sorts ride files that are too large to fit in memory by time. Rides are read in runs that fit the memory budget, each run
+ * is sorted and spilled to a temp file in the binary ride format, and the runs are then merged with a 'LoserTreeMerger'.
+ * If there are more runs than files that can be merged at once, the runs are merged in several passes
+ *
+ * @Note: Example usage:<br>
+ * ExternalRideSorter sorter = new ExternalRideSorter(1_000_000, ExternalRideSorter.DEFAULT_FAN_IN, tempDir);<br>
+ * ExternalRideSorter.Result result = sorter.sort(archive, sortedArchive);<br>
+ * <br>At most 'maxRidesInMemory' rides are held at once while the runs are built, and merging only holds the head ride
+ * of each open run. Rides with equal times keep their input order
+ */
+public class ExternalRideSorter {
+    /**
+     * The default number of runs merged at once
+     */
+    public static final int DEFAULT_FAN_IN = 64;
+    /**
+     * Orders rides by time, earliest first
+     */
+    private static final Comparator<Ride> BY_TIME = Comparator.comparingLong(ride -> ride.time.getTime());
+    /**
+     * The maximum number of rides held in memory while building a run
+     */
+    private final int maxRidesInMemory;
+    /**
+     * The maximum number of runs merged at once (i.e., the number of files open at once)
+     */
+    private final int fanIn;
+    /**
+     * The directory the runs are spilled to
+     */
+    private final Path tempDir;
+
+    /**
+     * Constructs a new external sorter
+     * @param maxRidesInMemory The maximum number of rides held in memory while building a run
+     * @param fanIn The maximum number of runs merged at once, at least 2
+     * @param tempDir The directory the runs are spilled to
+     * @throws IllegalArgumentException if the memory budget is less than 1 ride or the fan-in is less than 2
+     */
+    public ExternalRideSorter(int maxRidesInMemory, int fanIn, Path tempDir) {
+        if (maxRidesInMemory < 1)
+            throw new IllegalArgumentException("Unable to create sorter! Invalid number of rides in memory: " + maxRidesInMemory);
+
+        if (fanIn < 2)
+            throw new IllegalArgumentException("Unable to create sorter! Invalid merge fan-in: " + fanIn);
+
+        this.maxRidesInMemory = maxRidesInMemory;
+        this.fanIn = fanIn;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Sorts the rides in the passed ride file by time into the output file
+     * @param input The ride file being sorted
+     * @param output The file the sorted rides are written to, replacing any existing content
+     * @return The number of runs, merge passes and bytes read and written by the sort
+     * @throws IOException if a file could not be read or written
+     */
+    public Result sort(Path input, Path output) throws IOException {
+        try (RideCodec.Reader reader = RideCodec.open(input)) {
+            Result result = sort(reader, output);
+            result.bytesRead += Files.size(input);
+            return result;
+        }
+    }
+
+    /**
+     * Sorts the passed rides by time into the output file
+     * @param input The rides being sorted, read one at a time
+     * @param output The file the sorted rides are written to, replacing any existing content
+     * @return The number of runs, merge passes and bytes read and written by the sort
+     * @throws IOException if a file could not be read or written
+     */
+    public Result sort(Iterator<Ride> input, Path output) throws IOException {
+        Result result = new Result();
+        List<Path> runs = new ArrayList<>();
+        try {
+            spillRuns(input, runs, result);
+            result.runCount = runs.size();
+
+            // a single run is already the sorted output
+            if (runs.size() <= 1) {
+                if (runs.isEmpty())
+                    result.bytesWritten += RideCodec.writeAll(output, input);
+                else
+                    Files.move(runs.remove(0), output, StandardCopyOption.REPLACE_EXISTING);
+
+                return result;
+            }
+
+            // merges groups of runs into longer runs until they can all be merged at once
+            while (runs.size() > fanIn) {
+                List<Path> merged = new ArrayList<>();
+                boolean isMerged = false;
+                try {
+                    for (int i = 0; i < runs.size(); i += fanIn) {
+                        List<Path> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                        Path run = Files.createTempFile(tempDir, "rides-run", ".bin");
+                        merged.add(run);
+                        merge(group, run, result);
+                    }
+
+                    isMerged = true;
+
+                } finally {
+                    // a failed pass deletes the runs it created, its inputs are deleted by the outer finally
+                    if (!isMerged)
+                        deleteAll(merged);
+                }
+
+                // hands the new runs to the outer finally before the inputs are deleted, so neither can be left behind
+                List<Path> inputs = runs;
+                runs = merged;
+                deleteAll(inputs);
+                result.mergePasses++;
+            }
+
+            merge(runs, output, result);
+            result.mergePasses++;
+            return result;
+
+        } finally {
+            deleteAll(runs);
+        }
+    }
+
+    /**
+     * Reads the input in runs that fit the memory budget, sorting each run and spilling it to a temp file
+     * @param input The rides being sorted
+     * @param runs The list the run files are added to
+     * @param result The result the bytes written are added to
+     * @throws IOException if a run could not be written
+     */
+    private void spillRuns(Iterator<Ride> input, List<Path> runs, Result result) throws IOException {
+        Ride[] buffer = new Ride[maxRidesInMemory];
+        while (input.hasNext()) {
+            int count = 0;
+            while (count < buffer.length && input.hasNext())
+                buffer[count++] = input.next();
+
+            // a stable sort keeps rides with equal times in input order
+            Arrays.sort(buffer, 0, count, BY_TIME);
+            Path run = Files.createTempFile(tempDir, "rides-run", ".bin");
+            runs.add(run);
+            result.bytesWritten += RideCodec.writeAll(run, Arrays.asList(buffer).subList(0, count).iterator());
+            // releases the rides so the buffer does not hold them while the next run is read
+            Arrays.fill(buffer, 0, count, null);
+        }
+    }
+
+    /**
+     * Merges the passed runs into a single time-ordered file
+     * @param runs The run files being merged, in input order so equal times keep their order
+     * @param output The file the merged rides are written to
+     * @param result The result the bytes read and written are added to
+     * @throws IOException if a run could not be read or the output could not be written
+     */
+    private void merge(List<Path> runs, Path output, Result result) throws IOException {
+        try (LoserTreeMerger merger = LoserTreeMerger.fromFiles(runs)) {
+            result.bytesWritten += RideCodec.writeAll(output, merger);
+        }
+
+        for (Path run : runs)
+            result.bytesRead += Files.size(run);
+    }
+
+    /**
+     * Deletes every passed file, ignoring any that are already gone. Every file is attempted even if an earlier one fails
+     * @param files The files being deleted
+     * @throws IOException if a file could not be deleted, holding any later failures as suppressed exceptions
+     */
+    private static void deleteAll(List<Path> files) throws IOException {
+        IOException failure = null;
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * The work done by an external sort
+     */
+    public static final class Result {
+        /**
+         * The number of sorted runs spilled to disk
+         */
+        private int runCount;
+        /**
+         * The number of merge passes over the runs
+         */
+        private int mergePasses;
+        /**
+         * The number of bytes read from the input and the runs
+         */
+        private long bytesRead;
+        /**
+         * The number of bytes written to the runs and the output
+         */
+        private long bytesWritten;
+
+        /**
+         * Returns the number of sorted runs spilled to disk
+         * @return An integer value denoting the number of runs
+         */
+        public int getRunCount() {
+            return runCount;
+        }
+
+        /**
+         * Returns the number of merge passes over the runs
+         * @return An integer value denoting the number of merge passes, 0 if the input fit in a single run
+         */
+        public int getMergePasses() {
+            return mergePasses;
+        }
+
+        /**
+         * Returns the number of bytes read from the input file and the runs
+         * @return A long value denoting the bytes read
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * Returns the number of bytes written to the runs and the output file
+         * @return A long value denoting the bytes written
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("runs=%d, mergePasses=%d, bytesRead=%d, bytesWritten=%d", runCount, mergePasses, bytesRead, bytesWritten);
+        }
+    }
+}
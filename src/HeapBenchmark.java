@@ -0,0 +1,429 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark suite for the heap variants, run from the console and printed as a table
+ *
+ * @Note: Example usage:<br>
+ * java -Xmx4g HeapBenchmark [duration in ms] [layout keys]<br>
+ * <br>Results are throughput figures from a plain timed loop (no JMH), so compare them against each other on the same machine
+ * rather than as absolute numbers. Each benchmark warms up for the same duration before it is measured. The layout benchmark
+ * reports time only, run it under 'perf stat -e cache-misses' to count the cache misses behind the difference
+ */
+public final class HeapBenchmark {
+    /**
+     * The default duration of each measured run in milliseconds
+     */
+    private static final long DEFAULT_DURATION = 2000;
+    /**
+     * The number of rides the shared heap is filled with before the read/write benchmark
+     */
+    private static final int PREFILL = 10_000;
+    /**
+     * The percentage of operations in the read/write benchmark that are reads
+     */
+    private static final int READ_PERCENT = 95;
+    /**
+     * The number of rides polled from the heap in the removal benchmark
+     */
+    private static final int POLL_RIDES = 8192;
+    /**
+     * The number of rides sent to the server by the remote access benchmark
+     */
+    private static final int REMOTE_RIDES = 2_000;
+    /**
+     * The number of requests sent per flush in the pipelined remote access benchmark
+     */
+    private static final int PIPELINE_DEPTH = 100;
+    /**
+     * The default number of keys held by the layout benchmark
+     */
+    private static final int DEFAULT_LAYOUT_KEYS = 10_000_000;
+    /**
+     * The number of poll-then-insert operations timed by the layout benchmark
+     */
+    private static final int LAYOUT_OPS = 2_000_000;
+    /**
+     * Hands out unique ride IDs so no ride is rejected as a duplicate
+     */
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    /**
+     * Prevents this class from being instantiated, it only holds static benchmarks
+     */
+    private HeapBenchmark() {}
+
+    /**
+     * Runs every benchmark and prints the results
+     * @param args Optionally the duration of each measured run in milliseconds
+     * @throws InterruptedException if the benchmark is interrupted
+     * @throws IOException if the remote access benchmark could not reach its server
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        long duration = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_DURATION;
+        int layoutKeys = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LAYOUT_KEYS;
+        // uses at least 4 threads so readers and writers really contend, even on a small machine
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        System.out.printf("%n== Shared queue, %d%% reads / %d%% writes, %d threads ==%n", READ_PERCENT, 100 - READ_PERCENT, threads);
+        System.out.printf("%-24s %16s%n", "variant", "ops/s");
+        System.out.printf("%-24s %,16.0f%n", "synchronized MinHeap", readWriteMix(synchronizedQueue(), threads, duration));
+        System.out.printf("%-24s %,16.0f%n", "ConcurrentMinHeap", readWriteMix(stampedQueue(), threads, duration));
+
+        System.out.printf("%n== Poll %,d rides until empty ==%n", POLL_RIDES);
+        System.out.printf("%-24s %16s %16s %16s%n", "removal", "comparisons/poll", "swaps/poll", "ns/poll");
+        for (boolean isBounce : new boolean[] {false, true}) {
+            PollResult result = pollUntilEmpty(isBounce, POLL_RIDES);
+            System.out.printf("%-24s %16.2f %16.2f %16.0f%n", isBounce ? "bounce (Floyd)" : "classic down heap",
+                    result.comparisons, result.swaps, result.nanos);
+        }
+
+        System.out.printf("%n== Remote heap, %,d inserts then a drain ==%n", REMOTE_RIDES);
+        System.out.printf("%-24s %16s %16s%n", "transport", "us/op (sync)", "us/op (pipeline)");
+        double local = remote(null, 1);
+        System.out.printf("%-24s %16.2f %16.2f%n", "in-process", local, local);
+        for (SocketAddress address : new SocketAddress[] {HeapServer.loopback(0), HeapServer.unixDomain(Files.createTempDirectory("heap-bench").resolve("heap.sock"))}) {
+            double sync = remote(address, 1);
+            double pipelined = remote(address, PIPELINE_DEPTH);
+            System.out.printf("%-24s %16.2f %16.2f%n", address instanceof InetSocketAddress ? "loopback TCP" : "Unix domain socket", sync, pipelined);
+            if (!(address instanceof InetSocketAddress))
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath().getParent());
+        }
+
+        System.out.printf("%n== Heap layout, %,d keys, %,d poll-then-insert operations ==%n", layoutKeys, LAYOUT_OPS);
+        System.out.printf("%-24s %16s %16s %16s%n", "layout", "MB", "ns/insert", "ns/operation");
+        String[] names = {"flat array", "B-heap (cache line)", "B-heap (page)"};
+        int[] blockLevels = {0, BHeap.CACHE_LINE_LEVELS, BHeap.PAGE_LEVELS};
+        for (int i = 0; i < names.length; i++) {
+            double[] result = layout(layoutKeys, blockLevels[i]);
+            System.out.printf("%-24s %16.0f %16.1f %16.1f%n", names[i], result[0], result[1], result[2]);
+        }
+    }
+
+    /**
+     * Starts a server, inserts rides over a client connection and drains them, timing the inserts
+     * @param address The address the server is bound to, or null to insert straight into a local heap (the baseline)
+     * @param depth The number of requests sent per flush, 1 to wait for each response before sending the next request
+     * @return The average microseconds per insert (the timing is taken from a second, warmed-up run)
+     * @throws IOException if the server could not be reached
+     */
+    public static double remote(SocketAddress address, int depth) throws IOException {
+        double micros = 0;
+        for (int run = 0; run < 2; run++) {
+            if (address == null) {
+                MinHeap heap = new MinHeap(REMOTE_RIDES);
+                Ride[] rides = new Ride[REMOTE_RIDES];
+                for (int i = 0; i < rides.length; i++)
+                    rides[i] = newRide();
+
+                long start = System.nanoTime();
+                for (Ride r : rides)
+                    heap.insert(r);
+
+                micros = (System.nanoTime() - start) / 1000.0 / rides.length;
+                continue;
+            }
+
+            try (HeapServer server = HeapServer.start(new MinHeap(REMOTE_RIDES), address);
+                 HeapClient client = new HeapClient(server.getAddress())) {
+                Ride[] rides = new Ride[REMOTE_RIDES];
+                for (int i = 0; i < rides.length; i++)
+                    rides[i] = newRide();
+
+                long start = System.nanoTime();
+                for (int i = 0; i < rides.length; i += depth) {
+                    int end = Math.min(i + depth, rides.length);
+                    for (int j = i; j < end; j++)
+                        client.sendInsert(rides[j]);
+
+                    client.flush();
+                    for (int j = i; j < end; j++)
+                        client.receive();
+                }
+
+                micros = (System.nanoTime() - start) / 1000.0 / rides.length;
+                client.drain(REMOTE_RIDES);
+            }
+        }
+
+        return micros;
+    }
+
+    /**
+     * Fills a B-heap with random keys, then times a hold model (poll the earliest key and insert a later one) which keeps
+     * the heap the same size and sends every operation down the full height of the heap
+     * @param keys The number of keys the heap holds
+     * @param blockLevels The number of tree levels stored in each block, or 0 for the flat layout
+     * @return The memory used in MB, the average nanoseconds per insert while filling, and per poll-then-insert operation
+     */
+    public static double[] layout(int keys, int blockLevels) {
+        BHeap heap = new BHeap(keys, blockLevels);
+        // uses the same keys for every layout so the runs are comparable
+        SplittableRandom random = new SplittableRandom(42);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < keys; i++)
+            heap.insert(random.nextLong(1L << 40));
+        long fillNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < LAYOUT_OPS; i++)
+            heap.insert(heap.poll() + random.nextLong(1L << 30));
+        long holdNanos = System.nanoTime() - start;
+
+        return new double[] {heap.getMemoryUsed() / (1024.0 * 1024.0), (double) fillNanos / keys, (double) holdNanos / LAYOUT_OPS};
+    }
+
+    /**
+     * Fills a heap with the passed number of rides and polls them all, counting the work each poll does
+     * @param isBounceRemoval True to poll with bottom-up (bounce) removal, else the classic down heap is used
+     * @param rides The number of rides the heap is filled with
+     * @return The average comparisons, swaps and nanoseconds per poll (the timing is taken from a second, warmed-up run)
+     */
+    public static PollResult pollUntilEmpty(boolean isBounceRemoval, int rides) {
+        PollResult result = null;
+        for (int run = 0; run < 2; run++) {
+            MinHeap heap = new MinHeap(rides);
+            heap.setBounceRemoval(isBounceRemoval);
+            for (int i = 0; i < rides; i++)
+                heap.insert(newRide());
+
+            // only the polls are counted
+            heap.getMetrics().reset();
+            long start = System.nanoTime();
+            while (heap.poll() != null);
+            long nanos = System.nanoTime() - start;
+
+            MinHeapMetrics metrics = heap.getMetrics();
+            result = new PollResult((double) metrics.getComparisonCount() / rides, (double) metrics.getSwapCount() / rides, (double) nanos / rides);
+        }
+
+        return result;
+    }
+
+    /**
+     * Measures the throughput of a shared queue under a mostly-read mix of peek and hasRide calls, with the writes split
+     * evenly between inserts and polls so the queue stays the same size
+     * @param queue The shared queue being measured
+     * @param threads The number of threads calling the queue at once
+     * @param duration The duration of the measured run in milliseconds (the warm-up runs for the same duration)
+     * @return The number of operations per second across every thread
+     * @throws InterruptedException if the benchmark is interrupted
+     */
+    public static double readWriteMix(SharedQueue queue, int threads, long duration) throws InterruptedException {
+        List<Ride> known = new ArrayList<>();
+        for (int i = 0; i < PREFILL; i++) {
+            Ride ride = newRide();
+            queue.insert(ride);
+            known.add(ride);
+        }
+
+        // warms up first so the measured run is not timing the JIT compiler
+        runMix(queue, known, threads, duration);
+        long ops = runMix(queue, known, threads, duration);
+        return ops * 1000.0 / duration;
+    }
+
+    /**
+     * Runs the read/write mix on the passed number of threads for the passed duration
+     * @param queue The shared queue being called
+     * @param known Rides that were inserted into the queue, used by hasRide calls
+     * @param threads The number of threads calling the queue at once
+     * @param duration The duration of the run in milliseconds
+     * @return The total number of operations performed
+     * @throws InterruptedException if the run is interrupted
+     */
+    private static long runMix(SharedQueue queue, List<Ride> known, int threads, long duration) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long end = System.nanoTime() + duration * 1_000_000;
+        List<Thread> workers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                boolean isInsertNext = true;
+                try {
+                    start.await();
+
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                while (System.nanoTime() < end) {
+                    // runs a small batch between clock checks
+                    for (int i = 0; i < 64; i++, count++) {
+                        int roll = random.nextInt(100);
+                        if (roll < READ_PERCENT / 2) {
+                            queue.peek();
+
+                        } else if (roll < READ_PERCENT) {
+                            queue.hasRide(known.get(random.nextInt(known.size())));
+
+                        } else {
+                            // alternates writes so the queue neither fills nor drains
+                            if (isInsertNext)
+                                queue.insert(newRide());
+                            else
+                                queue.poll();
+
+                            isInsertNext = !isInsertNext;
+                        }
+                    }
+                }
+
+                ops.add(count);
+            });
+
+            worker.start();
+            workers.add(worker);
+        }
+
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+
+        return ops.sum();
+    }
+
+    /**
+     * Creates a new valid ride with a unique ID and a random time. Each ride gets its own start location, so none are pooled
+     * @return A new ride
+     */
+    static Ride newRide() {
+        int id = ids.incrementAndGet();
+        long time = ThreadLocalRandom.current().nextLong(24L * 60 * 60 * 1000);
+        return new Ride(id, new Time(time), "Passenger " + id, id, 0);
+    }
+
+    /**
+     * Creates a shared queue that guards a plain 'MinHeap' with a single monitor, the baseline every read has to queue behind
+     * @return A new synchronized shared queue
+     */
+    static SharedQueue synchronizedQueue() {
+        MinHeap heap = new MinHeap(PREFILL * 2);
+        return new SharedQueue() {
+            @Override
+            public synchronized boolean insert(Ride r) {
+                return heap.insert(r);
+            }
+
+            @Override
+            public synchronized Ride poll() {
+                return heap.poll();
+            }
+
+            @Override
+            public synchronized Ride peek() {
+                return heap.peek();
+            }
+
+            @Override
+            public synchronized boolean hasRide(Ride r) {
+                return heap.hasRide(r);
+            }
+        };
+    }
+
+    /**
+     * Creates a shared queue backed by a 'ConcurrentMinHeap'
+     * @return A new shared queue that shares a read lock between readers and publishes its minimum for lock-free peeks
+     */
+    static SharedQueue stampedQueue() {
+        ConcurrentMinHeap heap = new ConcurrentMinHeap(PREFILL * 2);
+        return new SharedQueue() {
+            @Override
+            public boolean insert(Ride r) {
+                return heap.insert(r);
+            }
+
+            @Override
+            public Ride poll() {
+                return heap.poll();
+            }
+
+            @Override
+            public Ride peek() {
+                return heap.peek();
+            }
+
+            @Override
+            public boolean hasRide(Ride r) {
+                return heap.hasRide(r);
+            }
+        };
+    }
+
+    /**
+     * The average work done per poll by the removal benchmark
+     */
+    public static final class PollResult {
+        /**
+         * The average number of ride comparisons per poll
+         */
+        public final double comparisons;
+        /**
+         * The average number of swaps per poll
+         */
+        public final double swaps;
+        /**
+         * The average number of nanoseconds per poll
+         */
+        public final double nanos;
+
+        /**
+         * Constructs a new result
+         * @param comparisons The average number of ride comparisons per poll
+         * @param swaps The average number of swaps per poll
+         * @param nanos The average number of nanoseconds per poll
+         */
+        PollResult(double comparisons, double swaps, double nanos) {
+            this.comparisons = comparisons;
+            this.swaps = swaps;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * The operations a shared queue benchmark calls from many threads at once
+     */
+    public interface SharedQueue {
+        /**
+         * Adds the passed ride to the queue
+         * @param r The ride being added
+         * @return A boolean value that is true if the ride was added, else returns false
+         */
+        boolean insert(Ride r);
+
+        /**
+         * Removes and returns the earliest ride
+         * @return The earliest ride, or null if the queue is empty
+         */
+        Ride poll();
+
+        /**
+         * Returns the earliest ride without removing it
+         * @return The earliest ride, or null if the queue is empty
+         */
+        Ride peek();
+
+        /**
+         * Checks if the queue contains the passed ride
+         * @param r The ride being searched for
+         * @return A boolean value that is true if the queue contains the ride, else returns false
+         */
+        boolean hasRide(Ride r);
+    }
+}
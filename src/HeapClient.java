@@ -0,0 +1,300 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Connects to a 'HeapServer' to share its heap with other processes. Each operation can be called synchronously (e.g.,
+ * insert(Ride)), or pipelined by sending several requests, flushing them together, then receiving their responses in order
+ *
+ * @Note: Example pipelining:<br>
+ * for (Ride r : batch) client.sendInsert(r);<br>
+ * client.flush();<br>
+ * for (Ride r : batch) client.receive();<br>
+ * <br>Responses come back in the order the requests were sent. This class is not thread-safe, use one client per thread
+ */
+public class HeapClient implements AutoCloseable {
+    /**
+     * The connection to the server
+     */
+    private final SocketChannel channel;
+    /**
+     * Collects requests until they are flushed
+     */
+    private final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    /**
+     * Writes requests into the request buffer
+     */
+    private final DataOutputStream out = new DataOutputStream(requests);
+    /**
+     * Collects the payload of the request being built
+     */
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    /**
+     * Holds response bytes that have been read but not yet returned, grown if a response (e.g., a large drain) needs more room
+     */
+    private ByteBuffer in = ByteBuffer.allocate(1 << 16);
+    /**
+     * The operation of each request sent but not yet received, oldest first, so each response can be decoded
+     */
+    private final Queue<Byte> pendingOps = new ArrayDeque<>();
+    /**
+     * The ID of the next request sent
+     */
+    private int nextRequestId = 1;
+
+    /**
+     * Connects to the server at the passed address
+     * @param address The server's loopback or Unix domain socket address
+     * @throws IOException if the connection could not be made
+     */
+    public HeapClient(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(address);
+
+        } else {
+            channel = SocketChannel.open(address);
+            // small requests are sent straight away rather than waiting to be coalesced
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+
+        in.flip();
+    }
+
+    /**
+     * Inserts the passed ride into the server's heap
+     * @param r The ride being inserted
+     * @return A boolean value that is true if the ride was inserted, else returns false
+     * @throws IOException if the server could not be reached
+     */
+    public boolean insert(Ride r) throws IOException {
+        sendInsert(r);
+        flush();
+        return receive().status == HeapServer.STATUS_OK;
+    }
+
+    /**
+     * Removes the ride with the passed ID from the server's heap
+     * @param id The ID of the ride being removed
+     * @return A boolean value that is true if the ride was removed, else returns false
+     * @throws IOException if the server could not be reached
+     */
+    public boolean remove(int id) throws IOException {
+        sendRemove(id);
+        flush();
+        return receive().status == HeapServer.STATUS_OK;
+    }
+
+    /**
+     * Returns the earliest ride in the server's heap without removing it
+     * @return The earliest ride, or null if the heap is empty
+     * @throws IOException if the server could not be reached
+     */
+    public Ride peek() throws IOException {
+        sendPeek();
+        flush();
+        Response response = receive();
+        return response.rides.isEmpty() ? null : response.rides.get(0);
+    }
+
+    /**
+     * Removes and returns up to the passed number of the earliest rides in the server's heap
+     * @param max The maximum number of rides returned
+     * @return The rides removed, earliest first
+     * @throws IOException if the server could not be reached
+     */
+    public List<Ride> drain(int max) throws IOException {
+        sendDrain(max);
+        flush();
+        return receive().rides;
+    }
+
+    /**
+     * Queues an insert request, which is sent on the next flush
+     * @param r The ride being inserted
+     * @return The ID of the request
+     * @throws IOException if the ride could not be encoded
+     */
+    public int sendInsert(Ride r) throws IOException {
+        RideCodec.write(new DataOutputStream(payload), r);
+        return send(HeapServer.OP_INSERT);
+    }
+
+    /**
+     * Queues a remove request, which is sent on the next flush
+     * @param id The ID of the ride being removed
+     * @return The ID of the request
+     * @throws IOException if the request could not be encoded
+     */
+    public int sendRemove(int id) throws IOException {
+        new DataOutputStream(payload).writeInt(id);
+        return send(HeapServer.OP_REMOVE);
+    }
+
+    /**
+     * Queues a peek request, which is sent on the next flush
+     * @return The ID of the request
+     * @throws IOException if the request could not be encoded
+     */
+    public int sendPeek() throws IOException {
+        return send(HeapServer.OP_PEEK);
+    }
+
+    /**
+     * Queues a drain request, which is sent on the next flush
+     * @param max The maximum number of rides returned
+     * @return The ID of the request
+     * @throws IOException if the request could not be encoded
+     */
+    public int sendDrain(int max) throws IOException {
+        new DataOutputStream(payload).writeInt(max);
+        return send(HeapServer.OP_DRAIN);
+    }
+
+    /**
+     * Sends every queued request to the server in a single write
+     * @throws IOException if the server could not be reached
+     */
+    public void flush() throws IOException {
+        if (requests.size() == 0)
+            return;
+
+        ByteBuffer buffer = ByteBuffer.wrap(requests.toByteArray());
+        requests.reset();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Waits for and returns the response to the oldest request that has not been received yet
+     * @return The response
+     * @throws IOException if the server could not be reached or closed the connection
+     */
+    public Response receive() throws IOException {
+        if (pendingOps.isEmpty())
+            throw new IllegalStateException("Unable to receive! No requests are waiting for a response...");
+
+        byte op = pendingOps.remove();
+        fill(Integer.BYTES);
+        int length = in.getInt();
+        fill(length);
+
+        int requestId = in.getInt();
+        byte status = in.get();
+        int start = in.position();
+        int payloadLength = length - Integer.BYTES - 1;
+        in.position(start + payloadLength);
+
+        DataInputStream response = new DataInputStream(new ByteArrayInputStream(in.array(), start, payloadLength));
+        List<Ride> rides = Collections.emptyList();
+        if (status == HeapServer.STATUS_OK && op == HeapServer.OP_PEEK) {
+            rides = Collections.singletonList(RideCodec.read(response));
+
+        } else if (status == HeapServer.STATUS_OK && op == HeapServer.OP_DRAIN) {
+            // a drain response starts with its count
+            int count = response.readInt();
+            rides = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                rides.add(RideCodec.read(response));
+        }
+
+        return new Response(requestId, status, rides);
+    }
+
+    /**
+     * Closes the connection to the server
+     * @throws IOException if the connection could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Frames the payload built so far as a request and adds it to the request buffer
+     * @param op The request's operation
+     * @return The ID of the request
+     * @throws IOException if the request could not be written
+     */
+    private int send(byte op) throws IOException {
+        int requestId = nextRequestId++;
+        out.writeInt(1 + Integer.BYTES + payload.size());
+        out.writeByte(op);
+        out.writeInt(requestId);
+        payload.writeTo(out);
+        payload.reset();
+        pendingOps.add(op);
+        return requestId;
+    }
+
+    /**
+     * Reads from the server until at least the passed number of bytes are waiting in the response buffer
+     * @param bytes The number of bytes needed
+     * @throws IOException if the server closed the connection first
+     */
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes)
+            return;
+
+        // grows the buffer if the response is larger than it
+        if (bytes > in.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(bytes) << 1);
+            larger.put(in);
+            in = larger;
+
+        } else {
+            in.compact();
+        }
+
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0)
+                throw new EOFException("Connection closed by server");
+        }
+
+        in.flip();
+    }
+
+    /**
+     * The response to a single request
+     */
+    public static final class Response {
+        /**
+         * The ID of the request this responds to
+         */
+        public final int requestId;
+        /**
+         * The status of the request, one of the HeapServer STATUS constants
+         */
+        public final byte status;
+        /**
+         * The rides returned by a peek or drain request, else an empty list
+         */
+        public final List<Ride> rides;
+
+        /**
+         * Constructs a new response
+         * @param requestId The ID of the request this responds to
+         * @param status The status of the request
+         * @param rides The rides returned
+         */
+        private Response(int requestId, byte status, List<Ride> rides) {
+            this.requestId = requestId;
+            this.status = status;
+            this.rides = rides;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Defines the Java Flight Recorder events emitted by a 'MinHeap' and the helper methods used to commit them.
+ * Events cost next to nothing while no recording is running, so they can stay enabled in production
+ * and be captured with a continuous recording (e.g., java -XX:StartFlightRecording ...)
+ *
+ * @Note: Each helper checks if its event is enabled before filling out any fields, so the heap
+ * does not pay for building an event that is never going to be recorded
+ */
+public final class HeapEvents {
+    /**
+     * The category every heap event is grouped under in JDK Mission Control
+     */
+    private static final String CATEGORY = "MinHeap";
+
+    /**
+     * Prevents this class from being instantiated, it only holds the event types and their helpers
+     */
+    private HeapEvents() {}
+
+    /**
+     * Emitted when a ride is inserted into the heap as a new node
+     */
+    @Name("MinHeap.RideInserted")
+    @Label("Ride Inserted")
+    @Category(CATEGORY)
+    @Description("A ride was inserted into the heap as a new node")
+    public static final class RideInserted extends Event {
+        @Label("Ride ID")
+        int rideId;
+        @Label("Start ID")
+        int startId;
+        @Label("End ID")
+        int endId;
+        @Label("Heap Size")
+        int size;
+    }
+
+    /**
+     * Emitted when a ride is pooled (merged) into an existing ride instead of being inserted
+     */
+    @Name("MinHeap.RidePooled")
+    @Label("Ride Pooled")
+    @Category(CATEGORY)
+    @Description("A ride was merged into an existing ride on the same route")
+    public static final class RidePooled extends Event {
+        @Label("Ride ID")
+        int rideId;
+        @Label("Pooled Into Ride ID")
+        int pooledIntoId;
+        @Label("New Time")
+        String time;
+        @Label("Passengers Merged")
+        boolean isMerged;
+    }
+
+    /**
+     * Emitted when a ride is removed from the heap
+     */
+    @Name("MinHeap.RideRemoved")
+    @Label("Ride Removed")
+    @Category(CATEGORY)
+    @Description("A ride was removed from the heap")
+    public static final class RideRemoved extends Event {
+        @Label("Ride ID")
+        int rideId;
+        @Label("Heap Index")
+        int index;
+        @Label("Heap Size")
+        int size;
+    }
+
+    /**
+     * Emitted when a ride is rejected because the heap has reached its maximum capacity
+     */
+    @Name("MinHeap.HeapFull")
+    @Label("Heap Full")
+    @Category(CATEGORY)
+    @Description("A ride was rejected because the heap was full")
+    public static final class HeapFull extends Event {
+        @Label("Ride ID")
+        int rideId;
+        @Label("Capacity")
+        int capacity;
+    }
+
+    /**
+     * Emitted when an up-heap or down-heap operation completes
+     */
+    @Name("MinHeap.SiftCompleted")
+    @Label("Sift Completed")
+    @Category(CATEGORY)
+    @Description("An up-heap or down-heap operation completed")
+    public static final class SiftCompleted extends Event {
+        @Label("Direction")
+        String direction;
+        @Label("Start Index")
+        int indexStart;
+        @Label("Depth")
+        int depth;
+        @Label("Comparisons")
+        int comparisons;
+    }
+
+    /**
+     * Commits a RideInserted event if it is enabled
+     * @param r The ride that was inserted
+     * @param size The number of rides in the heap after the insert
+     */
+    static void rideInserted(Ride r, int size) {
+        RideInserted event = new RideInserted();
+        if (!event.isEnabled())
+            return;
+
+        event.rideId = r.id;
+        event.startId = r.startId;
+        event.endId = r.endId;
+        event.size = size;
+        event.commit();
+    }
+
+    /**
+     * Commits a RidePooled event if it is enabled
+     * @param r The ride that was pooled
+     * @param pooledInto The existing ride that the passed ride was merged into
+     * @param isMerged True if the passengers were successfully merged, else false
+     */
+    static void ridePooled(Ride r, Ride pooledInto, boolean isMerged) {
+        RidePooled event = new RidePooled();
+        if (!event.isEnabled())
+            return;
+
+        event.rideId = r.id;
+        event.pooledIntoId = pooledInto.id;
+        event.time = pooledInto.getTime();
+        event.isMerged = isMerged;
+        event.commit();
+    }
+
+    /**
+     * Commits a RideRemoved event if it is enabled
+     * @param r The ride that was removed
+     * @param index The heap index the ride was removed from
+     * @param size The number of rides in the heap after the remove
+     */
+    static void rideRemoved(Ride r, int index, int size) {
+        RideRemoved event = new RideRemoved();
+        if (!event.isEnabled())
+            return;
+
+        event.rideId = r.id;
+        event.index = index;
+        event.size = size;
+        event.commit();
+    }
+
+    /**
+     * Commits a HeapFull event if it is enabled
+     * @param r The ride that was rejected
+     * @param capacity The number of rides the heap can hold
+     */
+    static void heapFull(Ride r, int capacity) {
+        HeapFull event = new HeapFull();
+        if (!event.isEnabled())
+            return;
+
+        event.rideId = r.id;
+        event.capacity = capacity;
+        event.commit();
+    }
+
+    /**
+     * Commits a SiftCompleted event if it is enabled
+     * @param direction The direction of the sift (i.e., "up" or "down")
+     * @param indexStart The heap index the sift started from
+     * @param depth The number of levels the ride moved
+     * @param comparisons The number of comparisons performed during the sift
+     */
+    static void siftCompleted(String direction, int indexStart, int depth, int comparisons) {
+        SiftCompleted event = new SiftCompleted();
+        if (!event.isEnabled())
+            return;
+
+        event.direction = direction;
+        event.indexStart = indexStart;
+        event.depth = depth;
+        event.comparisons = comparisons;
+        event.commit();
+    }
+}
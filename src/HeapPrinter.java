@@ -1,4 +1,9 @@
-import java.lang.reflect.Field;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Creates a printer that can print different parts of a custom 'Ride'
@@ -13,9 +18,29 @@ import java.lang.reflect.Field;
  * printIds(Ride[] rides)<br>
  * printTime(Ride[] rides)<br>
  * printAll(Ride[] rides)<br>
+ * printTop(Ride[] rides, int levels)<br>
+ * printSubtree(Ride[] rides, int index)<br>
+ * printPath(Ride[] rides, int index)<br>
+ * render(Ride[] rides, String rideField)<br>
+ * writeTo(Ride[] rides, String rideField, Appendable out)<br>
+ * writeTo(Ride[] rides, String rideField, Path file)<br>
  */
 @SuppressWarnings("CallToPrintStackTrace")
 public class HeapPrinter {
+    /**
+     * The default color, used to reset the color after a change
+     */
+    private static final String COLOR_DEFAULT = "\033[0m";
+    /**
+     * Maps each printable 'Ride' field name to a precomputed accessor, so no reflection is needed while rendering
+     */
+    private static final Map<String, Function<Ride, String>> FIELDS = Map.of(
+            "id", ride -> String.valueOf(ride.id),
+            "time", ride -> ride.time.toString(),
+            "startId", ride -> String.valueOf(ride.startId),
+            "endId", ride -> String.valueOf(ride.endId)
+    );
+
     /**
      * Function to print each element of the passed 'Ride' array starting from the 0th item along with its ID and Timestamp if any exist
      * @param rides The ride array to iterate through for the Index, ID, and timestamp
@@ -37,7 +62,8 @@ public class HeapPrinter {
 
             } // end if
 
-            System.out.println("\nPrinting Ride array elements w/their ID and timestamp..\n");
+            // builds the whole list before printing it so the console is only written to once
+            StringBuilder out = new StringBuilder("\nPrinting Ride array elements w/their ID and timestamp..\n\n");
             // iterates through each element in the array
             for (int i = 0; i < rideArray.length; i++) {
                 // takes the current 'Ride' object being iterated over
@@ -46,11 +72,13 @@ public class HeapPrinter {
                 String id = (ride == null ? null : String.valueOf(ride.id));
                 // fetches the current 'Ride' objects time value
                 String timeStamp = (ride == null ? null : ride.time.toString());
-                // prints the current 'Ride' objects info to the console
-                System.out.printf("%d: Ride ID = %s, Ride Timestamp = %s%n", i, id, timeStamp);
+                // adds the current 'Ride' objects info to the list
+                out.append(i).append(": Ride ID = ").append(id).append(", Ride Timestamp = ").append(timeStamp).append(System.lineSeparator());
 
             } // end for
 
+            System.out.print(out);
+
         } catch (Exception e) {
             // print error msg to console w/stack trace
             System.out.println("[HeapPrinter : printArray] Error processing ride array: " + e);
@@ -212,6 +240,113 @@ public class HeapPrinter {
 
     } // end void
 
+    /**
+     * Function to print only the top levels of a 'Ride' arrays timestamps as they would be positioned in a heap structure
+     * @param rideArray The ride array to iterate through for the timestamps
+     * @param levels The number of levels to print, starting from the root
+     * @Note: Only the printed nodes are visited, so this can be used on heaps that are too wide to print in full
+     */
+    public static void printTop(Ride[] rideArray, int levels) {
+        try {
+            System.out.println("\nPrinting the top " + levels + " levels of Ride times as a heap diagram...\n");
+            // builds the whole diagram before printing it so the console is only written to once
+            StringBuilder out = new StringBuilder();
+            render(rideArray, getAccessor("time"), 1, getWindowLevels(rideArray, 1, levels), -1, -1, null, null, out);
+            System.out.print(out);
+
+        } catch (Exception e) {
+            // prints error msg to the console w/stack trace
+            System.out.println("[HeapPrinter : printTop] Error processing ride array: " + e);
+            e.printStackTrace();
+
+        } // end try
+
+    } // end void
+
+    /**
+     * Function to print only the top levels of a heaps timestamps
+     * @param heap The heap containing the ride array to iterate through for the timestamps
+     * @param levels The number of levels to print, starting from the root
+     */
+    public static void printTop(MinHeap heap, int levels) {
+        printTop(heap.rides, levels);
+
+    } // end void
+
+    /**
+     * Function to print the subtree rooted at the passed index of a 'Ride' arrays timestamps, with the subtree root painted cyan
+     * @param rideArray The ride array to iterate through for the timestamps
+     * @param index The index of the node at the root of the subtree
+     * @param levels The maximum number of levels to print, starting from the subtree root
+     * @Note: Only the printed nodes are visited, so this can be used on heaps that are too wide to print in full
+     */
+    public static void printSubtree(Ride[] rideArray, int index, int levels) {
+        try {
+            System.out.println("\nPrinting the subtree of Ride times at index " + index + " as a heap diagram...\n");
+            // sets the subtree root to cyan when printing
+            String colorCyan = "\033[0;36m";
+            // builds the whole diagram before printing it so the console is only written to once
+            StringBuilder out = new StringBuilder();
+            render(rideArray, getAccessor("time"), index, getWindowLevels(rideArray, index, levels), index, -1, colorCyan, null, out);
+            System.out.print(out);
+
+        } catch (Exception e) {
+            // prints error msg to the console w/stack trace
+            System.out.println("[HeapPrinter : printSubtree] Error processing ride array: " + e);
+            e.printStackTrace();
+
+        } // end try
+
+    } // end void
+
+    /**
+     * Function to print the whole subtree rooted at the passed index of a 'Ride' arrays timestamps
+     * @param rideArray The ride array to iterate through for the timestamps
+     * @param index The index of the node at the root of the subtree
+     */
+    public static void printSubtree(Ride[] rideArray, int index) {
+        printSubtree(rideArray, index, Integer.MAX_VALUE);
+
+    } // end void
+
+    /**
+     * Function to print the path from the root to the passed index of a 'Ride' arrays timestamps, along with the sibling of each
+     * node on the path. The node at the passed index is painted cyan and its parent is painted purple
+     * @param rideArray The ride array to iterate through for the timestamps
+     * @param index The index of the node at the bottom of the path
+     * @Note: Only the nodes on the path and their siblings are visited, so this is cheap even for very large heaps
+     */
+    public static void printPath(Ride[] rideArray, int index) {
+        try {
+            System.out.println("\nPrinting the path of Ride times to index " + index + "...\n");
+            // sets child to cyan when printing
+            String colorCyan = "\033[0;36m";
+            // sets parent to purple when printing
+            String colorPurple = "\033[0;35m";
+            // builds the whole path before printing it so the console is only written to once
+            StringBuilder out = new StringBuilder();
+            renderPath(rideArray, getAccessor("time"), index, colorCyan, colorPurple, out);
+            System.out.print(out);
+
+        } catch (Exception e) {
+            // prints error msg to the console w/stack trace
+            System.out.println("[HeapPrinter : printPath] Error processing ride array: " + e);
+            e.printStackTrace();
+
+        } // end try
+
+    } // end void
+
+    /**
+     * Function to print the path from the root to the passed index of a heaps timestamps, along with the sibling of each node on the path
+     * @param heap The heap containing the ride array to iterate through for the timestamps
+     * @param index The index of the node at the bottom of the path
+     */
+    public static void printPath(MinHeap heap, int index) {
+        printPath(heap.rides, index);
+
+    } // end void
+
     /**
      * Function to print each element of a 'Ride' arrays ID's + timestamps as they would be positioned in a heap structure,
      * as well as each element in the array along with their index positions.
@@ -235,6 +370,74 @@ public class HeapPrinter {
 
     } // end void
 
+    /**
+     * Renders the field value (rideField) of each element in the passed 'Ride' array as a heap diagram and returns it as a string
+     * @param rideArray The ride array to iterate through
+     * @param rideField The field in the 'Ride' class being rendered (i.e., "id", "time", "startId" or "endId")
+     * @return A string containing the heap diagram, or null if the diagram could not be rendered
+     */
+    public static String render(Ride[] rideArray, String rideField) {
+        try {
+            StringBuilder out = new StringBuilder();
+            render(rideArray, getAccessor(rideField), 1, getLevels(rideArray), -1, -1, null, null, out);
+            return out.toString();
+
+        } catch (Exception e) {
+            // prints error msg to the console w/stack trace
+            System.out.println("[HeapPrinter : render] Error processing ride array: " + e);
+            e.printStackTrace();
+            return null;
+
+        } // end try
+
+    } // end String
+
+    /**
+     * Renders the field value (rideField) of each element in the passed 'Ride' array as a heap diagram and appends it to the passed target
+     * @param rideArray The ride array to iterate through
+     * @param rideField The field in the 'Ride' class being rendered (i.e., "id", "time", "startId" or "endId")
+     * @param out The target the diagram is appended to (e.g., a StringBuilder or Writer)
+     * @return True if the diagram was successfully written, else returns false
+     */
+    public static boolean writeTo(Ride[] rideArray, String rideField, Appendable out) {
+        try {
+            // renders into a buffer first so the target is only written to once
+            StringBuilder diagram = new StringBuilder();
+            render(rideArray, getAccessor(rideField), 1, getLevels(rideArray), -1, -1, null, null, diagram);
+            out.append(diagram);
+            return true;
+
+        } catch (Exception e) {
+            // prints error msg to the console w/stack trace
+            System.out.println("[HeapPrinter : writeTo] Error processing ride array: " + e);
+            e.printStackTrace();
+            return false;
+
+        } // end try
+
+    } // end boolean
+
+    /**
+     * Renders the field value (rideField) of each element in the passed 'Ride' array as a heap diagram and writes it to the passed file
+     * @param rideArray The ride array to iterate through
+     * @param rideField The field in the 'Ride' class being rendered (i.e., "id", "time", "startId" or "endId")
+     * @param file The file the diagram is written to, any existing content is replaced
+     * @return True if the diagram was successfully written, else returns false
+     */
+    public static boolean writeTo(Ride[] rideArray, String rideField, Path file) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            return writeTo(rideArray, rideField, writer);
+
+        } catch (IOException e) {
+            // prints error msg to the console w/stack trace
+            System.out.println("[HeapPrinter : writeTo] Error writing to file: " + e);
+            e.printStackTrace();
+            return false;
+
+        } // end try
+
+    } // end boolean
+
     /**
      * Prints the field value (rideField) of each element in the passed 'Ride' array in a heap diagram format
      * @param rideArray The ride array to iterate through
@@ -247,89 +450,232 @@ public class HeapPrinter {
      */
     private static void print(Ride[] rideArray, String rideField, int index1, int index2, String indexColor1, String indexColor2) {
         try {
-            // the default color, used to reset the color after a change
-            String colorDefault = "\033[0m";
-            // the current color being used
-            String colorCurrent = colorDefault;
-            // sets the color for the first passed index
-            String color1 = indexColor1 == null ? colorDefault : indexColor1;
-            // sets the second color
-            String color2 = indexColor2 == null ? colorDefault : indexColor2;
-
-            // if the passed rideArray is empty
-            if (isNullOrEmpty(rideArray))
-                throw new IndexOutOfBoundsException();
-
-            Field field = Ride.class.getDeclaredField(rideField);
-            // calculates the amount of levels required to display this heap diagram
-            int levels = (int) (Math.log(rideArray.length) / Math.log(2)) + 1;
-            // stores the max length of each line
-            int maxLength = 0;
-
-            // iterates through each 'Ride' object in the array
-            for (Ride ride : rideArray) {
-                // fetches the Ride objects field value based on the passed "rideField" string
-                rideField = (ride == null ? "null" : field.get(ride).toString());
-                // calculates the longest string length in the array
-                maxLength = Math.max(maxLength, rideField.length());
+            // builds the whole diagram before printing it so the console is only written to once
+            StringBuilder out = new StringBuilder();
+            render(rideArray, getAccessor(rideField), 1, getLevels(rideArray), index1, index2, indexColor1, indexColor2, out);
+            System.out.print(out);
+
+        } catch (Exception e) {
+            // prints error msg to the console w/stack trace
+            System.out.println("[HeapPrinter : print] Error processing ride array: " + e);
+            e.printStackTrace();
+
+        } // end try
+
+    } // end void
+
+    /**
+     * Appends the value of each element in a window of the passed 'Ride' array to the passed builder in a heap diagram format.
+     * Only the nodes inside the window are visited, so the cost is proportional to the rendered nodes rather than the heap size
+     * @param rideArray The ride array to iterate through
+     * @param accessor The function used to fetch the value being rendered from each ride
+     * @param indexRoot The index of the node at the top of the window (1 for the whole heap)
+     * @param levels The number of levels to render below and including the window root
+     * @param index1 The index of the first value to be colored
+     * @param index2 The index of the second value to be colored
+     * @param indexColor1 The color to paint the value at index1
+     * @param indexColor2 The color to paint the value at index2
+     * @param out The builder the diagram is appended to
+     */
+    private static void render(Ride[] rideArray, Function<Ride, String> accessor, int indexRoot, int levels, int index1, int index2,
+                               String indexColor1, String indexColor2, StringBuilder out) {
+        // sets the color for the first passed index
+        String color1 = indexColor1 == null ? COLOR_DEFAULT : indexColor1;
+        // sets the second color
+        String color2 = indexColor2 == null ? COLOR_DEFAULT : indexColor2;
+
+        // if the passed rideArray is empty
+        if (isNullOrEmpty(rideArray))
+            throw new IndexOutOfBoundsException();
+
+        // if the window root is outside the array, there is nothing to render
+        if (indexRoot < 1 || indexRoot >= rideArray.length)
+            throw new IndexOutOfBoundsException("Window root " + indexRoot + " is outside of the ride array");
+
+        // stores the max length of each line, never narrower than a "null" node
+        int maxLength = "null".length();
+
+        // calculates the longest value in the window
+        for (int level = 0; level < levels; level++) {
+            // takes the first and last index of this level of the window
+            long first = (long) indexRoot << level;
+            long last = Math.min(first + (1L << level), rideArray.length);
+
+            for (long i = first; i < last; i++)
+                maxLength = Math.max(maxLength, getValue(rideArray[(int) i], accessor).length());
+
+        } // end for
+
+        // for each level in this window
+        for (int level = 0; level < levels; level++) {
+            // calculate the level width
+            int levelWidth = 1 << level;
+            // takes the index of the first node on this level of the window
+            long currentIndex = (long) indexRoot << level;
+            // calculates the space between subtrees on the given level
+            int subtreeSpacing = (maxLength + 2) * (1 << (levels - level - 1)) - 1;
+            // calculates the space between each child of a subtree
+            int childSpacing = subtreeSpacing - maxLength + 1;
+
+            // adds blank spaces until the desire subtree spacing has been met
+            appendSpaces(out, subtreeSpacing / 2);
+
+            // adds each child to the diagram including any necessary spacing
+            for (int i = 0; i < levelWidth && currentIndex < rideArray.length; i++, currentIndex++) {
+                String value = getValue(rideArray[(int) currentIndex], accessor);
+
+                // set text color
+                out.append(getColor((int) currentIndex, index1, index2, color1, color2));
+
+                // adds this ride object to the diagram, right aligned to the longest value
+                out.append(' ');
+                appendSpaces(out, maxLength - value.length());
+                out.append(value).append(' ');
+                // adds child spacing too before moving to the next element
+                appendSpaces(out, childSpacing);
 
             } // end for
 
-            // starts printing from index 1 instead of 0 since it is usually not used in heaps
-            int currentIndex = 1;
-            // for each level in this heap
-            for (int level = 0; level < levels; level++) {
-                // calculate the level width
-                int levelWidth = (int) Math.pow(2, level);
-                // calculates the space between subtrees on the given level
-                int subtreeSpacing = (maxLength + 2) * ((int) Math.pow(2, levels - level - 1)) - 1;
-                // calculates the space between each child of a subtree
-                int childSpacing = subtreeSpacing - maxLength + 1;
-
-                // adds blank spaces until the desire subtree spacing has been met
-                for (int i = 0; i < subtreeSpacing / 2; i++)
-                    System.out.print(" ");
-
-                // adds each child to the diagram including any necessary spacing
-                for (int i = 0; i < levelWidth && currentIndex < rideArray.length; i++) {
-                    // takes the current 'Ride' object being iterated over
-                    Ride ride = rideArray[currentIndex++];
-                    rideField = (ride == null ? "null" : field.get(ride).toString());
-                    // takes the length of this 'Ride' objects value
-                    int strLength = rideField.length();
-                    // calculates the padding for this 'Ride' object
-                    int padding = Math.max(maxLength - strLength, 0);
-
-                    // set text color
-                    if (currentIndex == index1 + 1)
-                        colorCurrent = color1;
-                    else if (currentIndex == index2 + 1)
-                        colorCurrent = color2;
-                    else
-                        colorCurrent = colorDefault;
-
-                    // prints this ride object to the console along with its padding
-                    System.out.printf(colorCurrent + " %" + (padding / 2 + strLength + padding - padding / 2) + "s ", rideField);
-                    // adds child spacing to the console too before moving to the next element
-                    for (int j = 0; j < childSpacing; j++)
-                        System.out.print(" ");
-
-                } // end for
-
-                // shifts down in the console to print the next level
-                System.out.println();
+            // shifts down a line to print the next level
+            out.append(System.lineSeparator());
+
+        } // end for
+
+        // adds a blank line for diagram clarity
+        out.append(System.lineSeparator());
+
+    } // end void
+
+    /**
+     * Appends the path from the root down to the passed index to the passed builder, one level per line, showing each ancestor next to its sibling
+     * @param rideArray The ride array to iterate through
+     * @param accessor The function used to fetch the value being rendered from each ride
+     * @param index The index of the highlighted node at the bottom of the path
+     * @param colorIndex The color to paint the highlighted node
+     * @param colorParent The color to paint the parent of the highlighted node
+     * @param out The builder the path is appended to
+     */
+    private static void renderPath(Ride[] rideArray, Function<Ride, String> accessor, int index,
+                                   String colorIndex, String colorParent, StringBuilder out) {
+        // if the passed rideArray is empty
+        if (isNullOrEmpty(rideArray))
+            throw new IndexOutOfBoundsException();
+
+        // if the highlighted index is outside the array, there is no path to render
+        if (index < 1 || index >= rideArray.length)
+            throw new IndexOutOfBoundsException("Index " + index + " is outside of the ride array");
+
+        // the number of levels between the root and the highlighted index
+        int depth = 31 - Integer.numberOfLeadingZeros(index);
+
+        for (int level = 0; level <= depth; level++) {
+            // takes the ancestor of the highlighted index on this level and its sibling
+            int ancestor = index >> (depth - level);
+            int sibling = ancestor ^ 1;
+
+            out.append(COLOR_DEFAULT).append("Level ").append(level).append(": ");
+            // adds the nodes in their heap order (left child first)
+            for (int node : (ancestor < sibling ? new int[] {ancestor, sibling} : new int[] {sibling, ancestor})) {
+                // the root has no sibling
+                if (node < 1 || node >= rideArray.length || (level == 0 && node != ancestor))
+                    continue;
+
+                String value = getValue(rideArray[node], accessor);
+                out.append(getColor(node, index, index / 2, colorIndex, colorParent));
+                // marks the ancestors in square brackets so the path is visible without color
+                out.append(node == ancestor ? "[" + value + "]" : " " + value + " ").append(' ');
 
             } // end for
 
-            // prints a blank line in the console for diagram clarity
-            System.out.println();
+            out.append(COLOR_DEFAULT).append(System.lineSeparator());
 
-        } catch (Exception e) {
-            // prints error msg to the console w/stack trace
-            System.out.println("[HeapPrinter : print] Error processing ride array: " + e);
-            e.printStackTrace();
+        } // end for
 
-        } // end try
+        // adds a blank line for diagram clarity
+        out.append(System.lineSeparator());
+
+    } // end void
+
+    /**
+     * Returns the color a node should be painted with
+     * @param index The index of the node being painted
+     * @param index1 The index of the first colored node
+     * @param index2 The index of the second colored node
+     * @param color1 The color of the first colored node
+     * @param color2 The color of the second colored node
+     * @return The color of the passed node, or the default color if it is not colored
+     */
+    private static String getColor(int index, int index1, int index2, String color1, String color2) {
+        if (index == index1)
+            return color1;
+        else if (index == index2)
+            return color2;
+
+        return COLOR_DEFAULT;
+
+    } // end String
+
+    /**
+     * Returns the value of the passed ride, or "null" if there is no ride
+     * @param ride The ride whose value is being fetched
+     * @param accessor The function used to fetch the value
+     * @return A string value representing the passed ride
+     */
+    private static String getValue(Ride ride, Function<Ride, String> accessor) {
+        return ride == null ? "null" : accessor.apply(ride);
+
+    } // end String
+
+    /**
+     * Calculates the number of levels needed to display the whole of the passed array as a heap diagram
+     * @param rideArray The ride array being displayed
+     * @return An integer value denoting the number of levels in the diagram
+     */
+    private static int getLevels(Ride[] rideArray) {
+        return rideArray == null || rideArray.length == 0 ? 0 : (int) (Math.log(rideArray.length) / Math.log(2)) + 1;
+
+    } // end int
+
+    /**
+     * Calculates the number of non-empty levels in the window rooted at the passed index, up to the passed maximum
+     * @param rideArray The ride array being displayed
+     * @param indexRoot The index of the node at the top of the window
+     * @param maxLevels The maximum number of levels to display
+     * @return An integer value denoting the number of levels in the window
+     */
+    private static int getWindowLevels(Ride[] rideArray, int indexRoot, int maxLevels) {
+        int levels = 0;
+        // counts each level until the first index of the next level falls outside the array
+        while (levels < maxLevels && levels < 31 && ((long) indexRoot << levels) < rideArray.length)
+            levels++;
+
+        return levels;
+
+    } // end int
+
+    /**
+     * Returns the accessor used to fetch the passed field from a 'Ride' object
+     * @param rideField The name of the 'Ride' field being fetched
+     * @return The function that fetches the passed field as a string
+     * @throws IllegalArgumentException if the passed field cannot be printed
+     */
+    private static Function<Ride, String> getAccessor(String rideField) {
+        Function<Ride, String> accessor = rideField == null ? null : FIELDS.get(rideField);
+        if (accessor == null)
+            throw new IllegalArgumentException("Unknown ride field: " + rideField);
+
+        return accessor;
+
+    } // end Function
+
+    /**
+     * Appends the passed number of blank spaces to the passed builder
+     * @param out The builder being appended to
+     * @param count The number of spaces to append, nothing is appended if this is less than 1
+     */
+    private static void appendSpaces(StringBuilder out, int count) {
+        for (int i = 0; i < count; i++)
+            out.append(' ');
 
     } // end void
 
@@ -0,0 +1,276 @@
+import java.io.PrintStream;
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Differential regression gate that checks 'MinHeap' against 'java.util.PriorityQueue'. Identical randomised operation
+ * sequences are run against both and every result is compared (once with the pooling scan running on every insert and
+ * once with pooling disabled), then the throughput of each is measured at several size tiers and the gate fails if the
+ * heap falls below a set fraction of the JDK baseline at any tier. Both the heap and the queue are O(log n) per operation,
+ * so a linear scan creeping back into the hot path (e.g., in isSmaller or hasRide) drags the ratio down further at every
+ * larger tier
+ *
+ * @Note: Example usage:<br>
+ * java HeapRegressionGate [minimum ratio] [tier sizes...]<br>
+ * <br>The process exits with status 1 if any check fails, so the gate can run as its own build step (it times the heap,
+ * so it is kept out of the unit tests). Pooled rides have no counterpart in a plain priority queue, so the pooling check
+ * gives every ride its own route: the scan runs on every insert but never merges, which checks the scan leaves the order
+ * alone rather than checking pooled rides themselves. The scan is linear by design, so that check is capped at 10,000
+ * rides and the throughput is measured with pooling disabled. The heap does more bookkeeping per operation than the
+ * baseline (the ID index, metrics and events), so it usually sits at 0.15 - 0.7 of the baseline, while a linear scan on
+ * every insert drops it to around 0.01 by 10,000 rides
+ */
+public final class HeapRegressionGate {
+    /**
+     * The default heap sizes the throughput is measured at
+     */
+    public static final int[] DEFAULT_TIERS = {1_000, 10_000, 100_000};
+    /**
+     * The default lowest fraction of the JDK baseline's throughput the heap may reach
+     */
+    public static final double DEFAULT_MIN_RATIO = 0.1;
+    /**
+     * The number of random operations in each poll order check
+     */
+    private static final int CHECK_OPS = 20_000;
+    /**
+     * The largest size the poll order is checked at with pooling enabled, since every insert then scans the whole heap
+     */
+    private static final int POOLING_CHECK_SIZE = 10_000;
+    /**
+     * The number of insert, peek and poll rounds timed at each tier
+     */
+    private static final int MEASURE_OPS = 200_000;
+    /**
+     * The number of timed runs at each tier, the fastest run of each structure is kept
+     */
+    private static final int MEASURE_RUNS = 3;
+    /**
+     * The range of ride times in milliseconds, kept to a single hour in the poll order checks so times collide often
+     */
+    private static final long TIME_RANGE = 3_600_000L;
+    /**
+     * Orders the baseline queue the same way as the heap, earliest time first
+     */
+    private static final Comparator<Ride> BY_TIME = Comparator.comparingLong(ride -> ride.time.getTime());
+
+    /**
+     * Prevents this class from being instantiated, it only holds static helpers
+     */
+    private HeapRegressionGate() {}
+
+    /**
+     * Runs the poll order checks and the throughput tiers and prints the results
+     * @param args Optionally the minimum throughput ratio, followed by the tier sizes
+     */
+    public static void main(String[] args) {
+        double minRatio = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_MIN_RATIO;
+        int[] tiers = DEFAULT_TIERS;
+        if (args.length > 1) {
+            tiers = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+                tiers[i - 1] = Integer.parseInt(args[i]);
+        }
+
+        if (!run(tiers, minRatio, System.out))
+            System.exit(1);
+    }
+
+    /**
+     * Runs the poll order checks (with pooling enabled and disabled) and the throughput check at each tier
+     * @param tiers The heap sizes the checks are run at
+     * @param minRatio The lowest fraction of the JDK baseline's throughput the heap may reach
+     * @param out The stream the results are printed to
+     * @return A boolean value that is true if every check passed, else returns false
+     */
+    public static boolean run(int[] tiers, double minRatio, PrintStream out) {
+        boolean isPassed = true;
+        out.printf("%-10s %-16s %-16s %14s %14s %8s%n", "tier", "order (scan)", "order (no scan)", "heap ops/s", "jdk ops/s", "ratio");
+        for (int size : tiers) {
+            String scanned = checkPollOrder(Math.min(size, POOLING_CHECK_SIZE), CHECK_OPS, size, true);
+            String plain = checkPollOrder(size, CHECK_OPS, size, false);
+            Tier tier = measure(size, MEASURE_OPS, size, false);
+            boolean isTierPassed = scanned == null && plain == null && tier.ratio() >= minRatio;
+
+            out.printf("%-10d %-16s %-16s %14.0f %14.0f %8.2f %s%n", size, scanned == null ? "identical" : "MISMATCH",
+                    plain == null ? "identical" : "MISMATCH", tier.heapOpsPerSecond, tier.queueOpsPerSecond, tier.ratio(),
+                    isTierPassed ? "" : "FAIL");
+
+            if (scanned != null)
+                out.println("  pooling scan: " + scanned);
+            if (plain != null)
+                out.println("  no pooling: " + plain);
+
+            isPassed &= isTierPassed;
+        }
+
+        return isPassed;
+    }
+
+    /**
+     * Runs the same random sequence of inserts, polls, peeks and removes against a heap and a priority queue that both start
+     * with the passed number of rides, comparing the result of every operation. With pooling enabled each ride gets its own
+     * route, so the pooling scan runs on every insert but never merges a ride (this checks the scan leaves the order alone,
+     * not how pooled rides are ordered). With pooling disabled rides share a few routes and close times, so they would be
+     * pooled if it were on
+     * @param size The number of rides each structure starts with
+     * @param operations The number of random operations run
+     * @param seed The seed of the random sequence
+     * @param isPooling True if the heap should run the pooling scan (on rides it can never pool), else false
+     * @return A description of the first difference, or null if every result matched
+     */
+    public static String checkPollOrder(int size, int operations, long seed, boolean isPooling) {
+        SplittableRandom random = new SplittableRandom(seed);
+        MinHeap heap = new MinHeap(size + operations);
+        heap.setPooling(isPooling);
+        PriorityQueue<Ride> queue = new PriorityQueue<>(BY_TIME);
+        List<Ride> booked = new ArrayList<>();
+        int ids = 0;
+
+        for (int i = 0; i < size + operations; i++) {
+            // the operations only start once both structures have been filled
+            int op = i < size ? 0 : random.nextInt(10);
+            String step = "step " + i + ": ";
+
+            if (op < 5) {
+                int id = ++ids;
+                Ride ride = new Ride(id, new Time(random.nextLong(TIME_RANGE)), "Passenger " + id, isPooling ? id : id % 3, 0);
+                booked.add(ride);
+                if (!heap.insert(ride) || !queue.add(ride) || !heap.hasRide(ride))
+                    return step + "ride " + id + " was not inserted as its own node";
+
+            } else if (op < 8) {
+                Ride polled = heap.poll();
+                Ride expected = queue.poll();
+                if (expected == null ? polled != null : polled == null || polled.time.getTime() != expected.time.getTime())
+                    return step + "poll returned " + describe(polled) + " but the baseline returned " + describe(expected);
+
+            } else if (op < 9) {
+                Ride peeked = heap.peek();
+                Ride expected = queue.peek();
+                if (expected == null ? peeked != null : peeked == null || peeked.time.getTime() != expected.time.getTime())
+                    return step + "peek returned " + describe(peeked) + " but the baseline returned " + describe(expected);
+
+            } else if (!booked.isEmpty()) {
+                // removes a random booked ride, which may already have been polled from both
+                Ride ride = booked.remove(random.nextInt(booked.size()));
+                boolean isRemoved = heap.remove(ride);
+                if (isRemoved != queue.remove(ride))
+                    return step + "remove of ride " + ride.id + " returned " + isRemoved + " but the baseline disagreed";
+            }
+
+            if (heap.size() != queue.size())
+                return step + "heap holds " + heap.size() + " rides but the baseline holds " + queue.size();
+        }
+
+        // drains both to check the remaining rides come out in the same order
+        Ride expected;
+        while ((expected = queue.poll()) != null) {
+            Ride polled = heap.poll();
+            if (polled == null || polled.time.getTime() != expected.time.getTime())
+                return "drain: poll returned " + describe(polled) + " but the baseline returned " + describe(expected);
+        }
+
+        return heap.isEmpty() ? null : "drain: heap still holds " + heap.size() + " rides after the baseline was empty";
+    }
+
+    /**
+     * Measures the throughput of the heap and the priority queue holding the passed number of rides, timing rounds of an
+     * insert, a peek and a poll so the size stays the same throughout
+     * @param size The number of rides each structure holds
+     * @param operations The number of rounds timed
+     * @param seed The seed of the ride times
+     * @param isPooling True if the heap should have pooling enabled (which makes every insert scan the heap), else false
+     * @return The operations per second of each structure
+     */
+    public static Tier measure(int size, int operations, long seed, boolean isPooling) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Ride[] rides = new Ride[size + operations];
+        for (int i = 0; i < rides.length; i++)
+            rides[i] = new Ride(i + 1, new Time(random.nextLong(24 * TIME_RANGE)), "Passenger " + (i + 1), i + 1, 0);
+
+        long heapNanos = Long.MAX_VALUE;
+        long queueNanos = Long.MAX_VALUE;
+        for (int run = 0; run < MEASURE_RUNS; run++) {
+            MinHeap heap = new MinHeap(rides.length);
+            heap.setPooling(isPooling);
+            for (int i = 0; i < size; i++)
+                heap.insert(rides[i]);
+
+            long start = System.nanoTime();
+            for (int i = size; i < rides.length; i++) {
+                heap.insert(rides[i]);
+                heap.peek();
+                heap.poll();
+            }
+
+            heapNanos = Math.min(heapNanos, System.nanoTime() - start);
+
+            PriorityQueue<Ride> queue = new PriorityQueue<>(rides.length, BY_TIME);
+            for (int i = 0; i < size; i++)
+                queue.add(rides[i]);
+
+            start = System.nanoTime();
+            for (int i = size; i < rides.length; i++) {
+                queue.add(rides[i]);
+                queue.peek();
+                queue.poll();
+            }
+
+            queueNanos = Math.min(queueNanos, System.nanoTime() - start);
+        }
+
+        return new Tier(size, 3e9 * operations / heapNanos, 3e9 * operations / queueNanos);
+    }
+
+    /**
+     * Describes a ride by its ID and time for a mismatch message
+     * @param ride The ride being described
+     * @return The ride's ID and time, or "null"
+     */
+    private static String describe(Ride ride) {
+        return ride == null ? "null" : "ride " + ride.id + " at " + ride.time.getTime();
+    }
+
+    /**
+     * The throughput of the heap and the priority queue at a single size tier
+     */
+    public static final class Tier {
+        /**
+         * The number of rides each structure held
+         */
+        public final int size;
+        /**
+         * The heap's operations per second
+         */
+        public final double heapOpsPerSecond;
+        /**
+         * The priority queue's operations per second
+         */
+        public final double queueOpsPerSecond;
+
+        /**
+         * Constructs a new tier result
+         * @param size The number of rides each structure held
+         * @param heapOpsPerSecond The heap's operations per second
+         * @param queueOpsPerSecond The priority queue's operations per second
+         */
+        Tier(int size, double heapOpsPerSecond, double queueOpsPerSecond) {
+            this.size = size;
+            this.heapOpsPerSecond = heapOpsPerSecond;
+            this.queueOpsPerSecond = queueOpsPerSecond;
+        }
+
+        /**
+         * Returns the heap's throughput as a fraction of the priority queue's
+         * @return A double value denoting the throughput ratio, 1 when the heap is as fast as the baseline
+         */
+        public double ratio() {
+            return heapOpsPerSecond / queueOpsPerSecond;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Creates a hot-standby copy of a primary's heap by tailing the primary's 'MutationLog' file and applying each record to
+ * a local 'MinHeap' as it appears. If the primary fails, the replica is promoted: it applies whatever is left in the log
+ * and hands over its heap, which can then be wrapped in a new 'MutationLog' to carry on as the primary
+ *
+ * @Note: Example usage:<br>
+ * HeapReplica replica = new HeapReplica(logFile, 10000);<br>
+ * replica.start(10);&nbsp;&nbsp;// checks the log every 10 milliseconds<br>
+ * ...<br>
+ * MinHeap heap = replica.promote();&nbsp;&nbsp;// on failover<br>
+ * <br>The local heap must be configured like the primary's (capacity, lazy deletion, bounce removal, compaction ratio)
+ * so the replayed operations behave identically. A record that is still being written is left for the next check.
+ * The replication lag is reported through the heap's metrics (and over JMX once the heap is registered)
+ */
+public class HeapReplica implements AutoCloseable {
+    /**
+     * The local copy of the primary's heap
+     */
+    private final MinHeap heap;
+    /**
+     * The primary's log file, opened for reading
+     */
+    private final FileChannel channel;
+    /**
+     * Holds log bytes that have been read but not yet applied, grown if a record needs more room
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    /**
+     * The position in the log file up to which every record has been applied
+     */
+    private long position;
+    /**
+     * The number of records applied
+     */
+    private long appliedCount;
+    /**
+     * The thread tailing the log, or null if the log is only checked when catchUp() is called
+     */
+    private Thread thread;
+    /**
+     * False once the tailing thread has been asked to stop
+     */
+    private volatile boolean isTailing;
+    /**
+     * The error that stopped the tailing thread, or null if it has not failed
+     */
+    private volatile Exception failure;
+
+    /**
+     * Constructs a new replica with an empty heap of the passed capacity
+     * @param file The primary's log file, which must already exist
+     * @param maxRides The maximum number of rides the heap can hold, which must match the primary's
+     * @throws IOException if the log file could not be opened
+     */
+    public HeapReplica(Path file, int maxRides) throws IOException {
+        this(file, new MinHeap(maxRides));
+    }
+
+    /**
+     * Constructs a new replica that applies the log to the passed heap
+     * @param file The primary's log file, which must already exist
+     * @param heap The heap the log is applied to, empty and configured like the primary's
+     * @throws IOException if the log file could not be opened
+     */
+    public HeapReplica(Path file, MinHeap heap) throws IOException {
+        this.heap = heap;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Starts a daemon thread that applies new records every time the passed interval passes
+     * @param intervalMillis The time between checks of the log in milliseconds
+     * @throws IllegalArgumentException if the interval is less than 1 millisecond
+     * @throws IllegalStateException if the replica is already tailing the log
+     */
+    public synchronized void start(long intervalMillis) {
+        if (intervalMillis < 1)
+            throw new IllegalArgumentException("Unable to start replica! Invalid interval: " + intervalMillis);
+
+        if (thread != null)
+            throw new IllegalStateException("Unable to start replica! Replica is already tailing the log...");
+
+        isTailing = true;
+        thread = new Thread(() -> {
+            try {
+                while (isTailing) {
+                    catchUp();
+                    Thread.sleep(intervalMillis);
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } catch (IOException | RuntimeException e) {
+                // the replica can no longer be trusted, so it stops and reports the error on promotion
+                failure = e;
+            }
+        }, "HeapReplica");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Applies every complete record that has been added to the log since the last check
+     * @return The number of records applied
+     * @throws IOException if the log could not be read or holds an unknown record
+     * @throws IllegalStateException if a record could not be applied, meaning the replica no longer matches the primary
+     */
+    public synchronized int catchUp() throws IOException {
+        int applied = 0;
+        while (true) {
+            // reads on from the end of the bytes already buffered
+            int read = channel.read(buffer, position + buffer.position());
+            buffer.flip();
+
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt(buffer.position());
+                if (length < MutationLog.HEADER_BYTES - Integer.BYTES)
+                    throw new IOException("Invalid log record length at position " + position + ": " + length);
+
+                if (buffer.remaining() < Integer.BYTES + length)
+                    break;
+
+                apply(length);
+                position += Integer.BYTES + length;
+                applied++;
+            }
+
+            // grows the buffer when a single record is larger than it
+            if (buffer.remaining() >= Integer.BYTES && Integer.BYTES + buffer.getInt(buffer.position()) > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(Integer.BYTES + buffer.getInt(buffer.position())) << 1);
+                larger.put(buffer);
+                buffer = larger;
+
+            } else {
+                buffer.compact();
+            }
+
+            // stops once the end of the log has been reached
+            if (read <= 0)
+                break;
+        }
+
+        appliedCount += applied;
+        recordLag();
+        return applied;
+    }
+
+    /**
+     * Stops tailing, applies every record left in the log and hands over the heap, which is then up to date with the primary
+     * @return The replica's heap, ready to take over as the primary
+     * @throws IOException if the log could not be read
+     * @throws IllegalStateException if the tailing thread failed, since the heap may no longer match the primary
+     */
+    public MinHeap promote() throws IOException {
+        stop();
+        if (failure != null)
+            throw new IllegalStateException("Unable to promote replica! Applying the log failed...", failure);
+
+        catchUp();
+        close();
+        return heap;
+    }
+
+    /**
+     * Returns the replica's heap, which must not be changed directly and is only safe to read while the log is not being tailed
+     * @return The replica's heap
+     */
+    public MinHeap getHeap() {
+        return heap;
+    }
+
+    /**
+     * Returns the number of records applied
+     * @return A long value denoting the number of records applied
+     */
+    public synchronized long getAppliedCount() {
+        return appliedCount;
+    }
+
+    /**
+     * Returns how long the oldest record not yet applied has been waiting, as of the last check
+     * @return A long value denoting the replication lag in milliseconds, 0 if the replica had caught up
+     */
+    public long getLagMillis() {
+        return heap.getMetrics().getReplicationLagMillis();
+    }
+
+    /**
+     * Returns the number of log bytes not yet applied, as of the last check
+     * @return A long value denoting the replication lag in bytes, 0 if the replica had caught up
+     */
+    public long getLagBytes() {
+        return heap.getMetrics().getReplicationLagBytes();
+    }
+
+    /**
+     * Stops tailing the log and closes the log file, the heap is left as it is
+     * @throws IOException if the log file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        stop();
+        channel.close();
+    }
+
+    /**
+     * Stops the tailing thread and waits for it to finish, if it is running
+     */
+    private void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = this.thread;
+            this.thread = null;
+            isTailing = false;
+        }
+
+        if (thread == null)
+            return;
+
+        // the thread is not interrupted, since an interrupted read would close the log file
+        try {
+            thread.join();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies the complete record at the start of the buffer to the heap and moves the buffer past it
+     * @param length The record's length, not counting the length itself
+     * @throws IOException if the record holds an unknown operation or a payload that was cut short
+     */
+    private void apply(int length) throws IOException {
+        int start = buffer.position() + MutationLog.HEADER_BYTES;
+        int payloadBytes = length - (MutationLog.HEADER_BYTES - Integer.BYTES);
+        byte op = buffer.get(start - 1);
+        buffer.position(start + payloadBytes);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array(), start, payloadBytes));
+
+        // the primary only logs mutations that succeeded, so one that fails here means the heaps have diverged
+        boolean isApplied;
+        switch (op) {
+            case MutationLog.OP_INSERT:
+                isApplied = heap.insert(RideCodec.read(in));
+                break;
+
+            case MutationLog.OP_REMOVE:
+                Ride held = heap.getRide(in.readInt());
+                isApplied = held != null && heap.remove(held);
+                break;
+
+            case MutationLog.OP_POLL:
+                isApplied = heap.poll() != null;
+                break;
+
+            default:
+                throw new IOException("Unknown log operation at position " + position + ": " + op);
+        }
+
+        if (!isApplied)
+            throw new IllegalStateException("Unable to apply log record at position " + position + "! Replica no longer matches the primary...");
+    }
+
+    /**
+     * Reports the replication lag to the heap's metrics, timed from when the oldest unapplied record was written
+     * @throws IOException if the size of the log could not be read
+     */
+    private void recordLag() throws IOException {
+        long bytes = channel.size() - position;
+        long millis = 0;
+        // a record whose header has not fully arrived is still being written, so it has not waited at all
+        if (buffer.position() >= Integer.BYTES + Long.BYTES)
+            millis = Math.max(0, System.currentTimeMillis() - buffer.getLong(Integer.BYTES));
+
+        heap.getMetrics().recordReplicationLag(millis, bytes);
+    }
+}
@@ -0,0 +1,401 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Serves a single 'MinHeap' to many client processes over a compact binary protocol, on a loopback TCP port or a Unix domain
+ * socket. A single NIO thread owns the heap, so no locking is needed. Clients may pipeline requests (send many before reading
+ * any responses), and every response produced from one read is sent back in a single write. While a connection has more
+ * than 1MB of responses waiting to be sent, the server stops reading its requests until the client catches up
+ *
+ * @Note: Example usage:<br>
+ * try (HeapServer server = HeapServer.start(heap, HeapServer.loopback(0));<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;HeapClient client = new HeapClient(server.getAddress())) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;client.insert(ride);<br>
+ * }<br>
+ * <br>Every frame starts with its length (an int, not counting itself). A request is then: byte op, int request ID, payload.
+ * A response is: int request ID, byte status, payload. Rides use the 'RideCodec' format. Payloads are:<br>
+ * INSERT: ride -&gt; none<br>
+ * REMOVE: int ride ID -&gt; none<br>
+ * PEEK: none -&gt; ride (status OK) or none (status EMPTY)<br>
+ * DRAIN: int max rides -&gt; int count, then each ride in time order<br>
+ * <br>The heap must not be used directly while the server is running
+ */
+public class HeapServer implements AutoCloseable {
+    /**
+     * Inserts a ride
+     */
+    public static final byte OP_INSERT = 1;
+    /**
+     * Removes a ride by its ID
+     */
+    public static final byte OP_REMOVE = 2;
+    /**
+     * Returns the earliest ride without removing it
+     */
+    public static final byte OP_PEEK = 3;
+    /**
+     * Removes and returns up to a maximum number of the earliest rides
+     */
+    public static final byte OP_DRAIN = 4;
+    /**
+     * The request succeeded
+     */
+    public static final byte STATUS_OK = 0;
+    /**
+     * The heap rejected the request (e.g., a full heap or a ride that is not held)
+     */
+    public static final byte STATUS_REJECTED = 1;
+    /**
+     * The heap was empty
+     */
+    public static final byte STATUS_EMPTY = 2;
+    /**
+     * The request could not be understood, or the heap failed while handling it
+     */
+    public static final byte STATUS_ERROR = 3;
+    /**
+     * The largest frame accepted, a connection that sends a larger frame is closed
+     */
+    static final int MAX_FRAME = (1 << 16) - Integer.BYTES;
+    /**
+     * The most response bytes a connection may have waiting before the server stops reading its requests
+     */
+    static final int MAX_BACKLOG = 1 << 20;
+    /**
+     * The heap being served
+     */
+    private final MinHeap heap;
+    /**
+     * Accepts new connections
+     */
+    private final ServerSocketChannel server;
+    /**
+     * Waits for connections that are ready to read or write
+     */
+    private final Selector selector;
+    /**
+     * Runs the event loop
+     */
+    private final Thread thread;
+    /**
+     * The address the server is bound to
+     */
+    private final SocketAddress address;
+    /**
+     * False once the server has been closed
+     */
+    private volatile boolean isRunning = true;
+
+    /**
+     * Constructs a new server bound to the passed address
+     * @param heap The heap being served
+     * @param address The loopback or Unix domain socket address to bind to
+     * @throws IOException if the address could not be bound
+     */
+    private HeapServer(MinHeap heap, SocketAddress address) throws IOException {
+        this.heap = heap;
+        server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        this.address = server.getLocalAddress();
+
+        selector = Selector.open();
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "HeapServer");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts a new server for the passed heap on its own thread
+     * @param heap The heap being served, which must not be used directly while the server is running
+     * @param address The loopback or Unix domain socket address to bind to
+     * @return The running server
+     * @throws IOException if the address could not be bound
+     */
+    public static HeapServer start(MinHeap heap, SocketAddress address) throws IOException {
+        HeapServer server = new HeapServer(heap, address);
+        server.thread.start();
+        return server;
+    }
+
+    /**
+     * Creates a loopback TCP address, so the server can only be reached from the same machine
+     * @param port The port to bind to, or 0 for any free port
+     * @return The loopback address
+     */
+    public static SocketAddress loopback(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Creates a Unix domain socket address, for the lowest overhead between processes on the same machine
+     * @param path The path of the socket file, which must not already exist
+     * @return The Unix domain socket address
+     */
+    public static SocketAddress unixDomain(Path path) {
+        return UnixDomainSocketAddress.of(path);
+    }
+
+    /**
+     * Returns the address the server is bound to (e.g., the port chosen when binding to port 0)
+     * @return The bound address
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * Stops the server and closes every connection
+     * @throws IOException if the server could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        isRunning = false;
+        selector.wakeup();
+        try {
+            thread.join();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (SelectionKey key : selector.keys())
+            key.channel().close();
+
+        selector.close();
+        server.close();
+        // a Unix domain socket leaves its file behind
+        if (address instanceof UnixDomainSocketAddress)
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+    }
+
+    /**
+     * Runs the event loop until the server is closed
+     */
+    private void run() {
+        try {
+            while (isRunning) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+
+                        if (key.isReadable())
+                            ((Connection) key.attachment()).read(key);
+                        if (key.isValid() && key.isWritable())
+                            ((Connection) key.attachment()).write(key);
+
+                    } catch (IOException | RuntimeException e) {
+                        // a failed connection is dropped, the other connections carry on
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+            }
+
+        } catch (IOException | ClosedSelectorException e) {
+            // the selector was closed, so the server is shutting down
+        }
+    }
+
+    /**
+     * Accepts a new connection and registers it for reading
+     * @throws IOException if the connection could not be accepted
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    /**
+     * Handles a single request and writes its response
+     * @param op The request's operation
+     * @param in The request's payload
+     * @param out The output the response payload is written to
+     * @return The response status
+     * @throws IOException if the payload could not be read
+     */
+    private byte handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case OP_INSERT:
+                Ride r = RideCodec.read(in);
+                return r != null && heap.insert(r) ? STATUS_OK : STATUS_REJECTED;
+
+            case OP_REMOVE:
+                Ride held = heap.getRide(in.readInt());
+                return held != null && heap.remove(held) ? STATUS_OK : STATUS_REJECTED;
+
+            case OP_PEEK:
+                Ride top = heap.peek();
+                if (top == null)
+                    return STATUS_EMPTY;
+
+                RideCodec.write(out, top);
+                return STATUS_OK;
+
+            case OP_DRAIN:
+                int max = in.readInt();
+                int count = Math.max(0, Math.min(max, heap.size()));
+                out.writeInt(count);
+                for (int i = 0; i < count; i++)
+                    RideCodec.write(out, heap.poll());
+
+                return STATUS_OK;
+
+            default:
+                return STATUS_ERROR;
+        }
+    }
+
+    /**
+     * The buffers of a single client connection
+     */
+    private final class Connection {
+        /**
+         * The client's channel
+         */
+        private final SocketChannel channel;
+        /**
+         * Holds request bytes until a whole frame has arrived
+         */
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_FRAME + Integer.BYTES);
+        /**
+         * Collects the responses to every request in one read, so they are sent back in a single write
+         */
+        private final ByteArrayOutputStream responses = new ByteArrayOutputStream();
+        /**
+         * Collects the payload of the response being built
+         */
+        private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        /**
+         * Responses that could not be written straight away, or null if everything has been written
+         */
+        private ByteBuffer pending;
+
+        /**
+         * Constructs a new connection
+         * @param channel The client's channel
+         */
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads whatever the client has sent, handles every complete request, then sends back all of their responses together
+         * @param key The connection's selection key
+         * @throws IOException if the connection failed or sent an invalid frame
+         */
+        private void read(SelectionKey key) throws IOException {
+            if (channel.read(in) < 0)
+                throw new IOException("Connection closed by client");
+
+            in.flip();
+            DataOutputStream frames = new DataOutputStream(responses);
+            DataOutputStream out = new DataOutputStream(payload);
+
+            // handles every complete frame, a partial frame is left for the next read
+            while (in.remaining() >= Integer.BYTES) {
+                int length = in.getInt(in.position());
+                if (length < 1 + Integer.BYTES || length > MAX_FRAME)
+                    throw new IOException("Invalid frame length: " + length);
+
+                if (in.remaining() < Integer.BYTES + length)
+                    break;
+
+                in.getInt();
+                byte op = in.get();
+                int requestId = in.getInt();
+                int start = in.position();
+                in.position(start + length - 1 - Integer.BYTES);
+
+                payload.reset();
+                byte status;
+                try {
+                    status = handle(op, new DataInputStream(new ByteArrayInputStream(in.array(), start, length - 1 - Integer.BYTES)), out);
+
+                } catch (IOException | RuntimeException e) {
+                    // a payload that was cut short, or a heap that failed, is reported rather than dropping the connection
+                    payload.reset();
+                    status = STATUS_ERROR;
+                }
+
+                frames.writeInt(Integer.BYTES + 1 + payload.size());
+                frames.writeInt(requestId);
+                frames.writeByte(status);
+                payload.writeTo(frames);
+            }
+
+            in.compact();
+            write(key);
+        }
+
+        /**
+         * Writes as much of the pending responses as the channel will take, waiting for the channel to be writable for the rest
+         * @param key The connection's selection key
+         * @throws IOException if the connection failed
+         */
+        private void write(SelectionKey key) throws IOException {
+            while (true) {
+                // responses built while waiting to write are sent next
+                if (pending == null && responses.size() > 0) {
+                    pending = ByteBuffer.wrap(responses.toByteArray());
+                    responses.reset();
+                }
+
+                if (pending == null)
+                    break;
+
+                channel.write(pending);
+                if (pending.hasRemaining())
+                    break;
+
+                pending = null;
+            }
+
+            // keeps reading while the backlog is small, so a client that sends a large pipeline before reading cannot deadlock
+            // with the server, but stops once it is large, so a client that never reads cannot grow server memory without limit
+            int ops = pending == null ? 0 : SelectionKey.OP_WRITE;
+            if (getBacklog() < MAX_BACKLOG)
+                ops |= SelectionKey.OP_READ;
+
+            key.interestOps(ops);
+        }
+
+        /**
+         * Returns the number of response bytes waiting to be sent
+         * @return An integer value denoting the bytes waiting, both written to the pending buffer and still being collected
+         */
+        private int getBacklog() {
+            return responses.size() + (pending == null ? 0 : pending.remaining());
+        }
+    }
+}
@@ -0,0 +1,437 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Creates a ride queue that can hold more rides than fit in memory. Near-term rides (within the window after the dispatch
+ * clock) are kept in an in-memory 'MinHeap', while far-future rides, and any rides that arrive once the heap is full, are
+ * spilled to time-sorted segment files in the binary ride format. As the dispatch clock advances, rides that come within the
+ * window are moved back into memory
+ *
+ * @Note: Example instantiation:<br>
+ * try (HybridRideQueue queue = new HybridRideQueue(100_000, Duration.ofHours(2).toMillis(), spillDir)) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;queue.insert(ride);<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;Ride next = queue.poll();<br>
+ * }<br>
+ * <br>The memory budget counts the rides held in memory by the heap and the spill buffer, and a share is set aside for the
+ * open segments (each holds its head ride and a small read buffer). Once there are more segments than that share covers,
+ * they are merged into one, so the number of open files and the cost of finding the earliest spilled ride stay bounded.
+ * Every poll returns the earliest ride across both tiers, so the order is exact wherever a ride is held. Duplicate IDs are
+ * only rejected while the first ride is in memory. This class is not thread-safe
+ */
+public class HybridRideQueue implements AutoCloseable {
+    /**
+     * The size of the read buffer of each open segment in bytes, kept small since every segment holds one open
+     */
+    private static final int SEGMENT_BUFFER_BYTES = 1 << 12;
+    /**
+     * The rough size of a ride held in memory in bytes (the ride, its time and its passenger names), used to count each
+     * segment's read buffer against the memory budget in rides
+     */
+    private static final int RIDE_BYTES = 512;
+    /**
+     * The number of rides each open segment is counted as: its head ride plus its read buffer
+     */
+    private static final int SEGMENT_RIDES = 1 + SEGMENT_BUFFER_BYTES / RIDE_BYTES;
+    /**
+     * The fewest segments allowed before they are merged, so a small budget still merges two segments rather than one
+     */
+    private static final int MIN_SEGMENTS = 2;
+    /**
+     * Holds the near-term rides
+     */
+    private final MinHeap memory;
+    /**
+     * Collects spilled rides in time order until there are enough to write a segment
+     */
+    private final PriorityHeap<Ride> spillBuffer;
+    /**
+     * The time-sorted segment files holding the spilled rides
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    /**
+     * The length of the near-term window after the dispatch clock in milliseconds
+     */
+    private final long window;
+    /**
+     * The directory the segment files are written to
+     */
+    private final Path spillDir;
+    /**
+     * The most segments held open before they are merged into one
+     */
+    private final int maxSegments;
+    /**
+     * The time of the last ride polled, rides before the clock plus the window are near-term
+     */
+    private long clock = Long.MIN_VALUE;
+    /**
+     * The number of rides held in segment files
+     */
+    private long diskRides;
+    /**
+     * The number of rides that have been spilled out of memory
+     */
+    private long spillCount;
+    /**
+     * The number of rides that have been moved from disk back into memory
+     */
+    private long refillCount;
+    /**
+     * The number of times the segments have been merged into one
+     */
+    private long mergeCount;
+
+    /**
+     * Constructs a new hybrid queue
+     * @param memoryBudget The maximum number of rides held in memory, at least 2 (a quarter of it is used by the spill buffer,
+     *                     and another quarter by the open segments)
+     * @param window The length of the near-term window after the dispatch clock in milliseconds
+     * @param spillDir The directory the segment files are written to
+     * @throws IllegalArgumentException if the memory budget is less than 2 or the window is negative
+     */
+    public HybridRideQueue(int memoryBudget, long window, Path spillDir) {
+        if (memoryBudget < 2 || memoryBudget == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unable to create queue! Invalid memory budget: " + memoryBudget);
+
+        if (window < 0)
+            throw new IllegalArgumentException("Unable to create queue! Invalid window: " + window);
+
+        int bufferRides = Math.max(1, memoryBudget / 4);
+        int segmentRides = memoryBudget / 4;
+        memory = new MinHeap(memoryBudget - bufferRides - segmentRides);
+        maxSegments = Math.max(MIN_SEGMENTS, segmentRides / SEGMENT_RIDES);
+        spillBuffer = PriorityHeap.forRides(bufferRides);
+        this.window = window;
+        this.spillDir = spillDir;
+    }
+
+    /**
+     * Adds the passed ride to the queue, in memory if it is near-term and there is room, else on disk
+     * @param r The ride object being added to the queue
+     * @return A boolean value that is true if the ride was added, else returns false if it was null, invalid or already held in memory
+     * @throws UncheckedIOException if a segment file could not be written
+     */
+    public boolean insert(Ride r) {
+        if (r == null || !r.isValid || memory.hasRide(r))
+            return false;
+
+        if (isNearTerm(r) && memory.size() < memory.MAX_CAPACITY - 1)
+            return memory.insert(r);
+
+        spill(r);
+        return true;
+    }
+
+    /**
+     * Returns the earliest ride in the queue without removing it
+     * @return The earliest ride, or null if the queue is empty
+     */
+    public Ride peek() {
+        Ride inMemory = memory.peek();
+        Ride onDisk = peekDisk();
+        if (onDisk == null || (inMemory != null && inMemory.time.getTime() <= onDisk.time.getTime()))
+            return inMemory;
+
+        return onDisk;
+    }
+
+    /**
+     * Removes and returns the earliest ride in the queue, advancing the dispatch clock to its time
+     * @return The earliest ride, or null if the queue is empty
+     * @throws UncheckedIOException if a segment file could not be read
+     */
+    public Ride poll() {
+        Ride inMemory = memory.peek();
+        Ride onDisk = peekDisk();
+        Ride ride;
+
+        // takes whichever tier holds the earliest ride, so order is exact even when near-term rides were spilled
+        if (onDisk == null || (inMemory != null && inMemory.time.getTime() <= onDisk.time.getTime()))
+            ride = memory.poll();
+        else
+            ride = pollDisk();
+
+        if (ride != null) {
+            clock = Math.max(clock, ride.time.getTime());
+            refill();
+        }
+
+        return ride;
+    }
+
+    /**
+     * Returns the number of rides in the queue across both tiers
+     * @return A long value denoting the number of rides
+     */
+    public long size() {
+        return memory.size() + spillBuffer.size() + diskRides;
+    }
+
+    /**
+     * Returns the number of rides held in the in-memory heap
+     * @return An integer value denoting the number of rides in memory
+     */
+    public int getMemorySize() {
+        return memory.size();
+    }
+
+    /**
+     * Returns the number of rides held in segment files
+     * @return A long value denoting the number of rides on disk
+     */
+    public long getDiskSize() {
+        return diskRides;
+    }
+
+    /**
+     * Returns the number of segment files currently open
+     * @return An integer value denoting the number of segments
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the number of times the segments have been merged into one
+     * @return A long value denoting the number of merges
+     */
+    public long getMergeCount() {
+        return mergeCount;
+    }
+
+    /**
+     * Returns the number of rides that have been spilled out of memory
+     * @return A long value denoting the number of spilled rides
+     */
+    public long getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * Returns the number of rides that have been moved from disk back into memory
+     * @return A long value denoting the number of refilled rides
+     */
+    public long getRefillCount() {
+        return refillCount;
+    }
+
+    /**
+     * Closes and deletes every segment file, discarding the rides they hold
+     * @throws IOException if a segment file could not be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments)
+            segment.close();
+
+        segments.clear();
+        diskRides = 0;
+    }
+
+    /**
+     * Checks if the passed ride falls within the near-term window after the dispatch clock
+     * @param r The ride being checked
+     * @return A boolean value that is true if the ride is near-term, else returns false
+     */
+    private boolean isNearTerm(Ride r) {
+        // before the first poll there is no clock, so only a full heap causes spilling
+        return clock == Long.MIN_VALUE || r.time.getTime() < clock + window;
+    }
+
+    /**
+     * Adds the passed ride to the spill buffer, writing the buffer out as a segment once it is full
+     * @param r The ride being spilled
+     */
+    private void spill(Ride r) {
+        if (spillBuffer.size() == spillBuffer.getCapacity())
+            flush();
+
+        spillBuffer.insert(r);
+        spillCount++;
+    }
+
+    /**
+     * Writes the spill buffer out to a new time-sorted segment file
+     */
+    private void flush() {
+        int count = spillBuffer.size();
+        try {
+            Path file = Files.createTempFile(spillDir, "rides-segment", ".bin");
+            // polling the buffer hands the rides over in time order
+            RideCodec.writeAll(file, new Iterator<Ride>() {
+                @Override
+                public boolean hasNext() {
+                    return !spillBuffer.isEmpty();
+                }
+
+                @Override
+                public Ride next() {
+                    return spillBuffer.poll();
+                }
+            });
+
+            segments.add(new Segment(file));
+            diskRides += count;
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (segments.size() > maxSegments)
+            mergeSegments();
+    }
+
+    /**
+     * Merges every segment into a single new segment file with a 'LoserTreeMerger', deleting the old segment files
+     */
+    private void mergeSegments() {
+        try {
+            Path file = Files.createTempFile(spillDir, "rides-segment", ".bin");
+            try {
+                RideCodec.writeAll(file, new LoserTreeMerger(segments));
+
+            } catch (IOException | RuntimeException e) {
+                // a merge that fails part way leaves no half-written segment behind
+                Files.deleteIfExists(file);
+                throw e;
+            }
+
+            for (Segment segment : segments)
+                segment.close();
+
+            segments.clear();
+            segments.add(new Segment(file));
+            mergeCount++;
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Moves rides that have come within the window from disk back into memory, while there is room
+     */
+    private void refill() {
+        Ride onDisk;
+        while (memory.size() < memory.MAX_CAPACITY - 1 && (onDisk = peekDisk()) != null && isNearTerm(onDisk)) {
+            // a ride that cannot go back into memory (e.g., its ID is already held) stays at the head of the disk tier,
+            // and is tried again on the next poll (it is still polled straight from disk if it becomes the earliest)
+            if (!memory.insert(onDisk))
+                return;
+
+            pollDisk();
+            refillCount++;
+        }
+    }
+
+    /**
+     * Returns the earliest spilled ride without removing it
+     * @return The earliest ride in the spill buffer or the segments, or null if nothing has been spilled
+     */
+    private Ride peekDisk() {
+        Ride earliest = spillBuffer.peek();
+        for (Segment segment : segments)
+            if (earliest == null || segment.head.time.getTime() < earliest.time.getTime())
+                earliest = segment.head;
+
+        return earliest;
+    }
+
+    /**
+     * Removes and returns the earliest spilled ride
+     * @return The earliest ride in the spill buffer or the segments, or null if nothing has been spilled
+     */
+    private Ride pollDisk() {
+        Segment earliest = null;
+        for (Segment segment : segments)
+            if (earliest == null || segment.head.time.getTime() < earliest.head.time.getTime())
+                earliest = segment;
+
+        Ride buffered = spillBuffer.peek();
+        if (earliest == null || (buffered != null && buffered.time.getTime() <= earliest.head.time.getTime()))
+            return spillBuffer.poll();
+
+        Ride ride = earliest.head;
+        diskRides--;
+        try {
+            // an exhausted segment is closed and deleted straight away
+            if (!earliest.advance()) {
+                earliest.close();
+                segments.remove(earliest);
+            }
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return ride;
+    }
+
+    /**
+     * A time-sorted segment file, read one ride at a time
+     */
+    private static final class Segment implements Iterator<Ride> {
+        /**
+         * The segment file
+         */
+        private final Path file;
+        /**
+         * Reads the rides in the segment file
+         */
+        private final RideCodec.Reader reader;
+        /**
+         * The earliest ride not yet taken from the segment
+         */
+        private Ride head;
+
+        /**
+         * Opens the passed segment file and reads its first ride
+         * @param file The segment file, which must hold at least one ride
+         * @throws IOException if the file could not be opened
+         */
+        private Segment(Path file) throws IOException {
+            this.file = file;
+            reader = RideCodec.open(file, SEGMENT_BUFFER_BYTES);
+            head = reader.next();
+        }
+
+        /**
+         * Moves on to the next ride in the segment
+         * @return A boolean value that is true if there was another ride, else returns false once the segment is exhausted
+         */
+        private boolean advance() {
+            head = reader.hasNext() ? reader.next() : null;
+            return head != null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return head != null;
+        }
+
+        @Override
+        public Ride next() {
+            if (head == null)
+                throw new NoSuchElementException();
+
+            Ride ride = head;
+            advance();
+            return ride;
+        }
+
+        /**
+         * Closes and deletes the segment file
+         * @throws IOException if the file could not be closed or deleted
+         */
+        private void close() throws IOException {
+            reader.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+
+/**
+ * Creates a fixed-memory histogram of latencies in nanoseconds with log-linear buckets (in the style of HdrHistogram). Values
+ * are grouped by their power of 2, and each power of 2 is split into the same number of linear sub-buckets, so every value is
+ * recorded to within 1% of itself however large it is, while recording is a couple of shifts and an array increment
+ *
+ * @Note: Example usage:<br>
+ * LatencyHistogram histogram = new LatencyHistogram();<br>
+ * histogram.record(System.nanoTime() - start);<br>
+ * long p99 = histogram.getValueAtPercentile(99);<br>
+ * <br>Values below 256ns are recorded exactly, and values above MAX_VALUE (about 68 seconds) are recorded as MAX_VALUE.
+ * Histograms recorded on different threads can be merged with add(LatencyHistogram). This class is not thread-safe
+ */
+public class LatencyHistogram {
+    /**
+     * The log2 number of linear sub-buckets per power of 2, 8 bits keeps every value within 1% (2 significant digits)
+     */
+    private static final int SUB_BUCKET_BITS = 8;
+    /**
+     * The number of sub-buckets used for the values that are recorded exactly
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * The number of sub-buckets used for each power of 2 above the exact values (the lower half is covered by the power below)
+     */
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >>> 1;
+    /**
+     * The log2 of the first value that is clamped to the maximum
+     */
+    private static final int MAX_BITS = 36;
+    /**
+     * The largest value recorded exactly as itself (within the bucket precision), larger values are recorded as this value
+     */
+    public static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    /**
+     * The count of values recorded in each bucket
+     */
+    private final long[] counts = new long[index(MAX_VALUE) + 1];
+    /**
+     * The number of values recorded
+     */
+    private long totalCount;
+    /**
+     * The sum of every value recorded, used for the mean
+     */
+    private long totalValue;
+    /**
+     * The smallest value recorded
+     */
+    private long min = Long.MAX_VALUE;
+    /**
+     * The largest value recorded
+     */
+    private long max;
+
+    /**
+     * Records a single latency
+     * @param nanos The latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts[index(value)]++;
+        totalCount++;
+        totalValue += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds every value recorded by the passed histogram to this histogram (e.g., to merge histograms from several threads)
+     * @param other The histogram being added, which is left unchanged
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+
+        totalCount += other.totalCount;
+        totalValue += other.totalValue;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the value that the passed percentage of recorded values are less than or equal to
+     * @param percentile The percentile between 0 and 100 (e.g., 99.9)
+     * @return The highest value in the bucket holding the percentile (capped at the largest value recorded), or 0 if nothing has been recorded
+     * @throws IllegalArgumentException if the percentile is not between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("Unable to read percentile! Invalid percentile: " + percentile);
+
+        if (totalCount == 0)
+            return 0;
+
+        // the rank of the value being looked for, at least the first value
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(max, highestValue(i));
+        }
+
+        return max;
+    }
+
+    /**
+     * Returns the number of values recorded
+     * @return A long value denoting the number of values
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the smallest value recorded
+     * @return A long value denoting the smallest latency in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest value recorded
+     * @return A long value denoting the largest latency in nanoseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the values recorded
+     * @return A double value denoting the mean latency in nanoseconds, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) totalValue / totalCount;
+    }
+
+    /**
+     * Returns the number of bytes used by the buckets, which is the same however many values are recorded
+     * @return A long value denoting the memory used in bytes
+     */
+    public long getMemoryUsed() {
+        return (long) counts.length * Long.BYTES;
+    }
+
+    /**
+     * Clears every value recorded
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalValue = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, p50=%dns, p99=%dns, p99.9=%dns, max=%dns, mean=%.1fns", totalCount,
+                getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), max, getMean());
+    }
+
+    /**
+     * Returns the bucket the passed value is counted in
+     * @param value The value, between 0 and MAX_VALUE
+     * @return The index of the value's bucket
+     */
+    static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        // shifts the value down until it fits the upper half of the sub-buckets, the shift picks the power of 2
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the highest value counted in the passed bucket
+     * @param index The index of the bucket
+     * @return The highest value in the bucket
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long lowest = (long) ((index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records how long each 'MinHeap' operation takes into a 'LatencyHistogram' per operation, so percentiles (e.g., p99.9)
+ * can be read under real load rather than averages. Each thread records into its own histograms, so recording never
+ * contends with other threads, and the histograms of every thread are merged whenever they are read
+ *
+ * @Note: Example usage:<br>
+ * heap.setLatencyRecording(true);<br>
+ * ...<br>
+ * heap.getLatencies().dump(System.out);<br>
+ * <br>Reading the histograms while other threads are still recording gives a close, but not exact, point-in-time view.
+ * Each thread uses a fixed amount of memory per operation, see LatencyHistogram.getMemoryUsed()
+ */
+public class LatencyRecorder {
+    /**
+     * The heap operations that are timed
+     */
+    public enum Op {
+        /**
+         * insert(Ride), including the pooling scan
+         */
+        INSERT,
+        /**
+         * remove(Ride)
+         */
+        REMOVE,
+        /**
+         * peek()
+         */
+        PEEK,
+        /**
+         * The pooling scan run by every insert (isOptimizable)
+         */
+        OPTIMIZE,
+        /**
+         * sort()
+         */
+        SORT
+    }
+
+    /**
+     * The operations, cached since values() copies the array on every call
+     */
+    private static final Op[] OPS = Op.values();
+    /**
+     * The histograms of every thread that has recorded an operation, one per operation
+     */
+    private final List<LatencyHistogram[]> threads = new CopyOnWriteArrayList<>();
+    /**
+     * The histograms of the current thread, created the first time the thread records an operation
+     */
+    private final ThreadLocal<LatencyHistogram[]> local = ThreadLocal.withInitial(() -> {
+        LatencyHistogram[] histograms = new LatencyHistogram[OPS.length];
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new LatencyHistogram();
+
+        threads.add(histograms);
+        return histograms;
+    });
+
+    /**
+     * Records a single operation on the current thread's histograms
+     * @param op The operation that was timed
+     * @param nanos How long the operation took in nanoseconds
+     */
+    public void record(Op op, long nanos) {
+        local.get()[op.ordinal()].record(nanos);
+    }
+
+    /**
+     * Returns the latencies of the passed operation, merged across every thread
+     * @param op The operation being read
+     * @return A new histogram holding every latency recorded for the operation
+     */
+    public LatencyHistogram getHistogram(Op op) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram[] histograms : threads)
+            merged.add(histograms[op.ordinal()]);
+
+        return merged;
+    }
+
+    /**
+     * Clears every latency recorded by every thread, which should only be done while no thread is recording
+     */
+    public void reset() {
+        for (LatencyHistogram[] histograms : threads)
+            for (LatencyHistogram histogram : histograms)
+                histogram.reset();
+    }
+
+    /**
+     * Prints a table of the count and percentiles of every operation that has been recorded, in microseconds
+     * @param out The stream the table is printed to (e.g., System.out)
+     */
+    public void dump(PrintStream out) {
+        out.printf("%-10s %12s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p99 us", "p99.9 us", "max us");
+        for (Op op : OPS) {
+            LatencyHistogram histogram = getHistogram(op);
+            if (histogram.getCount() == 0)
+                continue;
+
+            out.printf("%-10s %12d %10.2f %10.2f %10.2f %10.2f%n", op, histogram.getCount(),
+                    histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges several time-ordered ride sources into a single time-ordered stream using a loser (tournament) tree.
+ * Only the head of each source is held in memory, and each ride returned costs about log2(K) comparisons for K sources
+ *
+ * @Note: Example usage:<br>
+ * try (LoserTreeMerger merger = LoserTreeMerger.fromFiles(files)) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;while (merger.hasNext()) dispatch(merger.next());<br>
+ * }<br>
+ * <br>Each source must already be sorted by time. Rides with equal times are returned in source order
+ */
+public class LoserTreeMerger implements Iterator<Ride>, AutoCloseable {
+    /**
+     * The sources being merged
+     */
+    private final List<? extends Iterator<Ride>> sources;
+    /**
+     * The current head ride of each source, or null once the source is exhausted
+     */
+    private final Ride[] heads;
+    /**
+     * The loser tree, index 0 holds the winning source and indices 1 to K - 1 hold the loser of each match
+     */
+    private final int[] tree;
+    /**
+     * The number of comparisons performed so far
+     */
+    private long comparisons;
+
+    /**
+     * Constructs a new merger over the passed time-ordered sources
+     * @param sources The sources being merged, each sorted by time
+     */
+    public LoserTreeMerger(List<? extends Iterator<Ride>> sources) {
+        this.sources = sources;
+        int k = sources.size();
+        heads = new Ride[k];
+        tree = new int[Math.max(k, 1)];
+
+        // takes the first ride of each source
+        for (int i = 0; i < k; i++)
+            heads[i] = sources.get(i).hasNext() ? sources.get(i).next() : null;
+
+        if (k == 0) {
+            tree[0] = -1;
+            return;
+        }
+
+        // plays the first round bottom-up, leaves are the implicit nodes k to 2k - 1
+        int[] winners = new int[k * 2];
+        for (int i = 0; i < k; i++)
+            winners[k + i] = i;
+
+        for (int node = k - 1; node > 0; node--) {
+            int left = winners[node * 2];
+            int right = winners[node * 2 + 1];
+            // stores the loser in the tree and passes the winner up
+            if (beats(right, left)) {
+                tree[node] = left;
+                winners[node] = right;
+
+            } else {
+                tree[node] = right;
+                winners[node] = left;
+            }
+        }
+
+        tree[0] = k == 1 ? 0 : winners[1];
+    }
+
+    /**
+     * Creates a merger over the passed ride files, each of which must already be sorted by time
+     * @param files The ride files being merged
+     * @return A merger that reads each file one ride at a time, which must be closed once finished with
+     * @throws IOException if any file could not be opened
+     */
+    public static LoserTreeMerger fromFiles(List<Path> files) throws IOException {
+        List<RideCodec.Reader> readers = new ArrayList<>();
+        try {
+            for (Path file : files)
+                readers.add(RideCodec.open(file));
+
+        } catch (IOException e) {
+            // closes any files that were opened before the failure
+            for (RideCodec.Reader reader : readers)
+                reader.close();
+
+            throw e;
+        }
+
+        return new LoserTreeMerger(readers);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return tree[0] >= 0 && heads[tree[0]] != null;
+    }
+
+    @Override
+    public Ride next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        // takes the winning ride and replaces it with the next ride from the same source
+        int winner = tree[0];
+        Ride ride = heads[winner];
+        Iterator<Ride> source = sources.get(winner);
+        heads[winner] = source.hasNext() ? source.next() : null;
+
+        // replays the matches from the winner's leaf up to the root, only against the stored losers
+        int current = winner;
+        for (int node = (winner + heads.length) / 2; node > 0; node /= 2) {
+            if (beats(tree[node], current)) {
+                int loser = current;
+                current = tree[node];
+                tree[node] = loser;
+            }
+        }
+
+        tree[0] = current;
+        return ride;
+    }
+
+    /**
+     * Returns the number of comparisons performed so far
+     * @return A long value denoting the number of comparisons
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Closes every source that holds an open resource (e.g., a ride file)
+     * @throws IOException if any source could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (Iterator<Ride> source : sources) {
+            if (!(source instanceof AutoCloseable))
+                continue;
+
+            try {
+                ((AutoCloseable) source).close();
+
+            } catch (Exception e) {
+                // keeps closing the other sources and reports the first failure
+                if (error == null)
+                    error = e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+        }
+
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * Checks if the head of source1 should be returned before the head of source2
+     * @param source1 The first source
+     * @param source2 The second source
+     * @return A boolean value that is true if source1 wins, an exhausted source always loses and ties go to the lower source
+     */
+    private boolean beats(int source1, int source2) {
+        Ride ride1 = heads[source1];
+        Ride ride2 = heads[source2];
+
+        if (ride1 == null)
+            return false;
+        if (ride2 == null)
+            return true;
+
+        comparisons++;
+        int result = ride1.time.compareTo(ride2.time);
+        return result < 0 || (result == 0 && source1 < source2);
+    }
+}
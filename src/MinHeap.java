@@ -1,6 +1,18 @@
 import java.time.Duration;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Creates a new dynamic replaceable minimum heap data structure that can store custom 'Ride' objects ordered by their scheduled timestamps
@@ -21,14 +33,84 @@ public class MinHeap {
      */
     private boolean isDebugging = false;
     /**
-     * The number of vehicles (rides) that the company has available (i.e., the size of the heap, this is set to 21 to allow for 20 rides, since index 0 is not used
+     * The default number of rides a heap can hold when no capacity is passed to the constructor
      */
-    public final int MAX_CAPACITY = 21;
+    public static final int DEFAULT_RIDES = 20;
+    /**
+     * The number of vehicles (rides) that the company has available (i.e., the size of the heap, this is set to 21 by default to allow for 20 rides, since index 0 is not used
+     */
+    public final int MAX_CAPACITY;
+    /**
+     * The live operation counters of this heap, exposed over JMX once registered via registerMXBean(String)
+     */
+    private final MinHeapMetrics metrics = new MinHeapMetrics();
+    /**
+     * Counts the comparisons performed by the up-heap or down-heap operation currently in progress
+     */
+    private int siftComparisons;
+    /**
+     * Counts the comparisons not yet added to the metrics, they are added once per operation rather than once per comparison
+     */
+    private int pendingComparisons;
+    /**
+     * Counts the swaps not yet added to the metrics, they are added once per operation rather than once per swap
+     */
+    private int pendingSwaps;
+    /**
+     * The default fraction of the heap that may be tombstoned before the heap is compacted
+     */
+    public static final double DEFAULT_COMPACTION_RATIO = 0.25;
+    /**
+     * Indexes each live ride in the heap by its ID, so rides can be found without searching the heap
+     */
+    private final Map<Integer, Ride> ridesById = new HashMap<>();
+    /**
+     * The rides that have been removed in lazy deletion mode but are still physically in the heap
+     */
+    private final Set<Ride> tombstones = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * True if removed rides should be tombstoned and cleaned up later, else false
+     */
+    private boolean isLazyDeletion = false;
+    /**
+     * The fraction of the heap that may be tombstoned before the heap is compacted
+     */
+    private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+    /**
+     * Records every ride ID ever booked on this heap so replayed bookings can be rejected, or null if replays are not checked
+     */
+    private SeenIdFilter seenIds;
+    /**
+     * True if poll and remove should use bottom-up (bounce) removal, else the classic down heap is used
+     */
+    private boolean isBounceRemoval = true;
+    /**
+     * True if inserted rides should be pooled into matching rides already in the heap, else every ride gets its own node
+     */
+    private boolean isPooling = true;
+    /**
+     * Records how long each operation takes, or null if latency recording is disabled
+     */
+    private LatencyRecorder latencies;
 
     /**
      * Constructs a new minimum heap object and points to the first ride slot by default
      */
     public MinHeap() {
+        this(DEFAULT_RIDES);
+    }
+
+    /**
+     * Constructs a new minimum heap object that can hold the passed number of rides and points to the first ride slot by default
+     * @param maxRides The maximum number of rides this heap can hold
+     * @throws IllegalArgumentException if the passed number of rides is less than 1
+     */
+    public MinHeap(int maxRides) {
+        if (maxRides < 1 || maxRides == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unable to create heap! Invalid maximum number of rides: " + maxRides);
+
+        // adds a slot for index 0 which is not used
+        MAX_CAPACITY = maxRides + 1;
         // creates a new ride array
         rides = new Ride[MAX_CAPACITY];
         // points to the first available slot in the heap
@@ -80,6 +162,21 @@ public class MinHeap {
      * @return A boolean value that is true if the passed ride is successfully inserted into the heap, else return false
      */
     public boolean insert(Ride r) {
+        if (latencies == null)
+            return insertRide(r);
+
+        long start = System.nanoTime();
+        boolean isInserted = insertRide(r);
+        latencies.record(LatencyRecorder.Op.INSERT, System.nanoTime() - start);
+        return isInserted;
+    }
+
+    /**
+     * Adds the specified ride to the heap (maintaining heap order), without timing the insert
+     * @param r The ride object being added to the heap
+     * @return A boolean value that is true if the passed ride is successfully inserted into the heap, else return false
+     */
+    private boolean insertRide(Ride r) {
         if (r == null)
             return false;
 
@@ -89,28 +186,53 @@ public class MinHeap {
             return false;
         }
 
+        // tombstoned rides still take up slots, so they are cleared out before a full heap rejects a ride
+        if (next >= MAX_CAPACITY && !tombstones.isEmpty())
+            compact();
+
         // if maximum capacity has been reached, the passed ride cannot be added
         if (next >= MAX_CAPACITY) {
+            metrics.recordRejectedFull();
+            HeapEvents.heapFull(r, MAX_CAPACITY - 1);
             debug("Unable to insert the passed ride! Maximum ride limit has been reached...", "insert(Ride r)");
             return false;
         }
 
-        // prevents duplicate rides being added to the heap
-        if (hasRide(r) || !isUniqueId(r)) {
+        // prevents duplicate rides being added to the heap (a ride already in the heap also holds its ID, so one lookup covers both)
+        if (!isUniqueId(r)) {
             debug("Unable to insert ride! Ride was already contained in the array...", "insert(Ride r)");
             return false;
         }
 
+        // prevents a replayed booking from being added after its ride has already left the heap
+        if (seenIds != null && seenIds.isSeen(r.id)) {
+            debug("Unable to insert ride! Ride ID has already been booked...", "insert(Ride r)");
+            return false;
+        }
+
+        // a lazily removed ride that is booked again still sits in its old slot, so that slot is dropped first (its time
+        // may have changed since), the ride is still tombstoned while it is dropped so the remove is not counted twice
+        if (!tombstones.isEmpty() && tombstones.contains(r)) {
+            tombstones.remove(removeAt(getIndex(r)));
+            metrics.recordTombstones(tombstones.size(), next - 1);
+        }
+
         // if this ride in not optimizable, add it to the array
-        if (isOptimizable(r)) {
+        if (isPooling && isPooled(r)) {
+            markSeen(r);
+            metrics.recordPool();
             upHeap();
             return true;
         }
 
         // sets the next spare slot in the heap to the passed 'Ride' object
         rides[next] = r;
+        ridesById.put(r.id, r);
+        markSeen(r);
         // increments the next index pointer
         next++;
+        metrics.recordInsert();
+        HeapEvents.rideInserted(r, next - 1);
         // up-heaps to restore heap order
         upHeap();
         return true;
@@ -122,6 +244,21 @@ public class MinHeap {
      * @return A boolean value that is true if the ride was successfully removed from the heap, else returns false
      */
     public boolean remove(Ride r) {
+        if (latencies == null)
+            return removeRide(r);
+
+        long start = System.nanoTime();
+        boolean isRemoved = removeRide(r);
+        latencies.record(LatencyRecorder.Op.REMOVE, System.nanoTime() - start);
+        return isRemoved;
+    }
+
+    /**
+     * Removes the passed ride from the heap (maintaining heap order), without timing the remove
+     * @param r The ride object being removed from the heap
+     * @return A boolean value that is true if the ride was successfully removed from the heap, else returns false
+     */
+    private boolean removeRide(Ride r) {
         if (r == null || rides == null)
             return false;
 
@@ -131,8 +268,222 @@ public class MinHeap {
             return false;
         }
 
+        // in lazy deletion mode, the ride is only marked as removed and is cleaned up once it reaches the root or the heap is compacted
+        if (isLazyDeletion) {
+            tombstones.add(r);
+            ridesById.remove(r.id, r);
+            metrics.recordRemove();
+            metrics.recordTombstones(tombstones.size(), next - 1);
+
+            if (tombstones.size() > compactionRatio * (next - 1))
+                compact();
+
+            return true;
+        }
+
         // fetches the heap-index of the passed ride
-        int indexRide = getIndex(r);
+        removeAt(getIndex(r));
+        return true;
+    }
+
+    /**
+     * Removes and returns the first ride in the heap (lowest value), maintaining heap order
+     * @return The ride that was at the top of the heap, or null if the heap is empty
+     */
+    public Ride poll() {
+        // clears any tombstoned rides off the top of the heap first
+        purgeRoot();
+
+        if (rides == null || next < 2 || rides[1] == null)
+            return null;
+
+        return removeAt(1);
+    }
+
+    /**
+     * Enables or disables lazy deletion mode. In lazy deletion mode remove(Ride) only marks the ride as removed (a tombstone) in O(1),
+     * tombstoned rides are skipped by peek() and poll(), and the heap is rebuilt once the tombstoned fraction passes the compaction ratio
+     * @param isEnabled True if lazy deletion should be enabled, else false. Disabling lazy deletion compacts the heap straight away
+     */
+    public void setLazyDeletion(boolean isEnabled) {
+        isLazyDeletion = isEnabled;
+
+        // clears out any tombstones left behind so eager mode never sees them
+        if (!isEnabled && !tombstones.isEmpty())
+            compact();
+    }
+
+    /**
+     * Enables or disables bottom-up (bounce) removal for poll and remove. Instead of sifting the moved ride down and comparing
+     * both children against it at every level, bounce removal walks the path of smaller children to a leaf with one comparison
+     * per level, then sifts the moved ride back up, which is usually only a level or two since it came from the bottom
+     * @param isEnabled True if bounce removal should be used (the default), else the classic down heap is used
+     */
+    public void setBounceRemoval(boolean isEnabled) {
+        isBounceRemoval = isEnabled;
+    }
+
+    /**
+     * Enables or disables ride pooling. While pooling is enabled, every insert scans the heap for a ride on the same route
+     * within 10 minutes to merge the new ride into. While it is disabled, every ride is inserted as its own node, so the heap
+     * behaves exactly like a plain priority queue
+     * @param isEnabled True if rides should be pooled (the default), else false
+     */
+    public void setPooling(boolean isEnabled) {
+        isPooling = isEnabled;
+    }
+
+    /**
+     * Checks if inserted rides are pooled into matching rides already in the heap
+     * @return A boolean value that is true if pooling is enabled, else returns false
+     */
+    public boolean isPooling() {
+        return isPooling;
+    }
+
+    /**
+     * Sets the fraction of the heap that may be tombstoned before the heap is compacted in lazy deletion mode
+     * @param ratio The tombstone ratio that triggers a compaction, must be greater than 0 and less than or equal to 1
+     * @return A boolean value that is true if the ratio was updated, else returns false
+     */
+    public boolean setCompactionRatio(double ratio) {
+        if (!(ratio > 0 && ratio <= 1)) {
+            debug("Unable to set compaction ratio! The ratio must be greater than 0 and at most 1...", "setCompactionRatio(double)");
+            return false;
+        }
+
+        compactionRatio = ratio;
+        return true;
+    }
+
+    /**
+     * Sets the filter used to reject rides whose IDs have been booked before, even if those rides have since left the heap
+     * @param filter The filter that records every booked ride ID, or null to only check the rides currently in the heap
+     * @Note: Rides already in the heap are added to the filter, so they cannot be booked again once they leave
+     */
+    public void setSeenIdFilter(SeenIdFilter filter) {
+        seenIds = filter;
+
+        if (filter != null)
+            for (Ride ride : ridesById.values())
+                filter.add(ride.id);
+    }
+
+    /**
+     * Records the passed ride's ID as booked if a seen ID filter has been set
+     * @param r The ride that was booked
+     */
+    private void markSeen(Ride r) {
+        if (seenIds != null)
+            seenIds.add(r.id);
+    }
+
+    /**
+     * Returns the number of removed rides that are still physically in the heap waiting to be cleaned up
+     * @return An integer value denoting the number of tombstoned rides
+     */
+    public int getTombstoneCount() {
+        return tombstones.size();
+    }
+
+    /**
+     * Removes every tombstoned ride from the heap and rebuilds heap order bottom-up in O(n)
+     */
+    public void compact() {
+        if (rides == null || tombstones.isEmpty())
+            return;
+
+        // slides every live ride down into the first free slots
+        int indexLive = 1;
+        for (int i = 1; i < next; i++)
+            if (!tombstones.contains(rides[i]))
+                rides[indexLive++] = rides[i];
+
+        // clears the slots that are no longer used
+        Arrays.fill(rides, indexLive, next, null);
+        next = indexLive;
+        tombstones.clear();
+
+        // rebuilds heap order from the last parent up to the root
+        for (int i = (next - 1) / 2; i > 0; i--)
+            downHeap(i);
+
+        metrics.recordCompaction();
+        metrics.recordTombstones(0, next - 1);
+    }
+
+    /**
+     * Removes every ride that matches the passed filter in a single pass and rebuilds heap order bottom-up in O(n), rather
+     * than searching the heap for each ride in turn. Any tombstoned rides are cleared out on the way
+     * @param filter Returns true for each ride that should be removed
+     * @return A list of the rides that were removed, in heap (array) order
+     */
+    public List<Ride> removeIf(Predicate<Ride> filter) {
+        List<Ride> removed = new ArrayList<>();
+        if (rides == null || filter == null)
+            return removed;
+
+        // slides every ride that is kept down into the first free slots
+        int indexKept = 1;
+        for (int i = 1; i < next; i++) {
+            Ride ride = rides[i];
+            if (tombstones.contains(ride))
+                continue;
+
+            if (filter.test(ride)) {
+                removed.add(ride);
+                ridesById.remove(ride.id, ride);
+                metrics.recordRemove();
+
+            } else
+                rides[indexKept++] = ride;
+        }
+
+        // returns early if the heap is unchanged, so heap order does not need rebuilding
+        if (indexKept == next)
+            return removed;
+
+        // clears the slots that are no longer used
+        Arrays.fill(rides, indexKept, next, null);
+        next = indexKept;
+        tombstones.clear();
+
+        // rebuilds heap order from the last parent up to the root
+        for (int i = (next - 1) / 2; i > 0; i--)
+            downHeap(i);
+
+        metrics.recordTombstones(0, next - 1);
+        return removed;
+    }
+
+    /**
+     * Returns the number of rides that can still be inserted before the heap is full, counting tombstoned slots as free
+     * since a full heap compacts before it rejects a ride
+     * @return An integer value denoting the number of free slots
+     */
+    public int getSpareCapacity() {
+        return MAX_CAPACITY - 1 - size();
+    }
+
+    /**
+     * Removes any tombstoned rides from the top of the heap so the root is always a live ride
+     */
+    private void purgeRoot() {
+        while (!tombstones.isEmpty() && rides != null && next > 1 && tombstones.contains(rides[1])) {
+            // the tombstone is only cleared once the ride is out, so removeAt does not count the remove a second time
+            tombstones.remove(removeAt(1));
+            metrics.recordTombstones(tombstones.size(), next - 1);
+        }
+    }
+
+    /**
+     * Removes the ride at the passed index by moving the last ride into its place and restoring heap order
+     * @param indexRide The index of the ride being removed
+     * @return The ride that was removed
+     */
+    private Ride removeAt(int indexRide) {
+        Ride r = rides[indexRide];
+        ridesById.remove(r.id, r);
         // fetches the index of the last ride in the heap
         int indexLast = next - 1;
 
@@ -143,12 +494,31 @@ public class MinHeap {
 
         // delete the last element
         rides[indexLast] = null;
-        // down heap to restore heap order
-        downHeap(indexRide);
-        // decrement the next index pointer
-        next--;
 
-        return true;
+        if (isBounceRemoval) {
+            // decrement the next index pointer, then bounce the moved ride into place
+            next--;
+            if (indexRide < next)
+                bounceDown(indexRide);
+
+        } else {
+            // down heap to restore heap order
+            downHeap(indexRide);
+            // decrement the next index pointer
+            next--;
+            // the moved ride may be smaller than its new parent, in which case it has to move up instead
+            if (indexRide > 1 && indexRide < next && isSmaller(indexRide, indexRide / 2))
+                upHeap(indexRide);
+        }
+
+        // tombstoned rides were already counted when they were marked
+        if (!tombstones.contains(r))
+            metrics.recordRemove();
+
+        HeapEvents.rideRemoved(r, indexRide, next - 1);
+        flushCounters();
+
+        return r;
     }
 
     /**
@@ -156,6 +526,14 @@ public class MinHeap {
      * @return A boolean value that is true if the heap contains any rides, else returns false.
      */
     public boolean isEmpty() {
+        // tombstoned rides still fill slots but have been removed, so the heap agrees with size() while any are left
+        if (!tombstones.isEmpty())
+            return size() == 0;
+
+        // if the heap has a root it cannot be empty, this saves scanning the whole array on every insert
+        if (rides != null && rides.length > 1 && rides[1] != null)
+            return false;
+
         // checks if the default heap is empty
         return isEmpty(rides);
     }
@@ -180,25 +558,26 @@ public class MinHeap {
     }
 
     /**
-     * Iterates through the heap to see if it contains the passed ride
+     * Returns the live ride in the heap with the passed ID, using the ride ID index
+     * @param id The ID of the ride being searched for
+     * @return The ride with the passed ID, or null if the heap does not contain one (or it has been removed)
+     */
+    public Ride getRide(int id) {
+        return ridesById.get(id);
+    }
+
+    /**
+     * Checks the ride ID index to see if the heap contains the passed ride
      * @param r The ride object being searched for in the heap
-     * @return A boolean value that is true if the passed ride is already contained within the heap, else returns false
+     * @return A boolean value that is true if the passed ride is already contained within the heap (and has not been removed), else returns false
      */
     public boolean hasRide(Ride r) {
-        // if the heap is empty or the ride is null, it must not contain the passed ride
-        if (isEmpty() || r == null)
+        // if the heap is null or the ride is null, it must not contain the passed ride
+        if (rides == null || r == null)
             return false;
 
-        // sets pointers at each end of the heap
-        int left = 1;
-        int right = getRideCount();
-
-        // moves pointers inward until they intersect, returning true if the passed ride is found by either pointer
-        for (; left < right; left++, right--)
-            if (rides[left] == r || r == rides[right])
-                return true;
-
-        return false;
+        // the ride must be the exact ride indexed under its ID
+        return ridesById.get(r.id) == r;
     }
 
     /**
@@ -253,12 +632,29 @@ public class MinHeap {
      * @return A ride array sorted into ascending order
      */
     public Ride[] sort() {
+        if (latencies == null)
+            return sortRides();
+
+        long start = System.nanoTime();
+        Ride[] sorted = sortRides();
+        latencies.record(LatencyRecorder.Op.SORT, System.nanoTime() - start);
+        return sorted;
+    }
+
+    /**
+     * Heap sorts the rides in the heap into ascending order, without timing the sort
+     * @return A ride array sorted into ascending order
+     */
+    private Ride[] sortRides() {
         // return early if the default heap is null or empty
         if (rides == null || rides.length == 0 || isEmpty()) {
             debug("Unable to sort heap! Default ride array was null or empty...", "sort()");
             return null;
         }
 
+        // removed rides must not end up in the sorted heap
+        compact();
+
         // stores the value of the next index pointer for later restoration
         int next = this.next;
         // stores the index of the last ride
@@ -278,10 +674,55 @@ public class MinHeap {
         reverseHeap();
         // restores the next index pointers position
         this.next = next;
+        flushCounters();
         // return sorted array
         return rides;
     }
 
+    /**
+     * Returns a copy of the rides in the heap sorted into ascending order (i.e., next ride to last ride), leaving the heap untouched.
+     * Each ride's timestamp is packed together with its slot into a primitive key and the keys are sorted with a fork-join parallel sort,
+     * so large exports scale with the number of cores
+     * @return A new ride array sorted into ascending order starting at index 0, or an empty array if the heap is empty
+     */
+    public Ride[] toSortedArray() {
+        // copies the rides so the heap itself is never modified
+        Ride[] snapshot = snapshot();
+        int count = snapshot.length;
+
+        if (count < 2)
+            return snapshot;
+
+        // finds the earliest and latest timestamps so each key only needs to store the offset from the earliest
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (Ride ride : snapshot) {
+            minTime = Math.min(minTime, ride.time.getTime());
+            maxTime = Math.max(maxTime, ride.time.getTime());
+        }
+
+        // if the offsets are too large to share a key with the slot, fall back to sorting the rides directly
+        if (maxTime - minTime > Integer.MAX_VALUE) {
+            Arrays.parallelSort(snapshot, (ride1, ride2) -> ride1.time.compareTo(ride2.time));
+            return snapshot;
+        }
+
+        // packs the time offset into the upper 32 bits and the slot into the lower 32 bits of each key
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++)
+            keys[i] = (snapshot[i].time.getTime() - minTime) << 32 | i;
+
+        // sorts the keys in parallel, rides with equal times keep their heap order since the slot breaks the tie
+        Arrays.parallelSort(keys);
+
+        // gathers the rides in key order
+        Ride[] sorted = new Ride[count];
+        for (int i = 0; i < count; i++)
+            sorted[i] = snapshot[(int) keys[i]];
+
+        return sorted;
+    }
+
     /**
      * Returns the first ride in the heap (lowest value) without removing it
      * @return The first ride object in the top of the heap if any exists
@@ -290,9 +731,90 @@ public class MinHeap {
         if (rides == null)
             return null;
 
+        long start = latencies == null ? 0 : System.nanoTime();
+        // clears any tombstoned rides off the top of the heap first
+        purgeRoot();
+        if (latencies != null)
+            latencies.record(LatencyRecorder.Op.PEEK, System.nanoTime() - start);
+
         return rides[1];
     }
 
+    /**
+     * Returns the number of rides currently in the heap
+     * @return An integer value denoting the number of rides in the heap
+     */
+    public int size() {
+        return next - 1 - tombstones.size();
+    }
+
+    /**
+     * Returns a sequential stream over the rides in the heap, in heap (array) order
+     * @return A stream over the occupied slots of the heap
+     * @Note: The stream reads the live heap, so the heap must not be modified until the stream has finished
+     */
+    public Stream<Ride> stream() {
+        return skipTombstones(StreamSupport.stream(spliterator(), false));
+    }
+
+    /**
+     * Returns a parallel stream over the rides in the heap, which splits the occupied slots evenly across the fork-join pool
+     * @return A parallel stream over the occupied slots of the heap
+     * @Note: The stream reads the live heap, so the heap must not be modified until the stream has finished
+     */
+    public Stream<Ride> parallelStream() {
+        return skipTombstones(StreamSupport.stream(spliterator(), true));
+    }
+
+    /**
+     * Returns a sized, splittable spliterator over the occupied slots of the heap (i.e., index 1 to next - 1)
+     * @return A spliterator over the rides in the heap
+     * @Note: In lazy deletion mode this includes tombstoned rides, call compact() first or use stream() which skips them
+     */
+    public Spliterator<Ride> spliterator() {
+        // index 0 is not used, so the heap needs at least two slots to hold a ride
+        if (rides == null || rides.length < 2)
+            return Spliterators.emptySpliterator();
+
+        return Spliterators.spliterator(rides, 1, Math.min(next, rides.length), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Returns a copy of the rides in the heap, in heap (array) order, starting at index 0
+     * @return A new array containing each ride in the heap
+     */
+    public Ride[] snapshot() {
+        // index 0 is not used, so the heap needs at least two slots to hold a ride
+        if (rides == null || rides.length < 2)
+            return new Ride[0];
+
+        Ride[] snapshot = Arrays.copyOfRange(rides, 1, Math.min(next, rides.length));
+        if (tombstones.isEmpty())
+            return snapshot;
+
+        // leaves out any rides that have been removed but not cleaned up yet
+        return Arrays.stream(snapshot).filter(ride -> !tombstones.contains(ride)).toArray(Ride[]::new);
+    }
+
+    /**
+     * Filters tombstoned rides out of the passed stream if there are any
+     * @param stream The stream over the occupied slots of the heap
+     * @return A stream that skips tombstoned rides
+     */
+    private Stream<Ride> skipTombstones(Stream<Ride> stream) {
+        return tombstones.isEmpty() ? stream : stream.filter(ride -> !tombstones.contains(ride));
+    }
+
+    /**
+     * Returns a stream over a point-in-time copy of the heap, so the heap can keep being modified while the stream is consumed
+     * @param parallel True if the returned stream should be parallel, else false
+     * @return A stream over a snapshot of the rides in the heap
+     */
+    public Stream<Ride> snapshotStream(boolean parallel) {
+        Ride[] snapshot = snapshot();
+        return StreamSupport.stream(Spliterators.spliterator(snapshot, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), parallel);
+    }
+
     /**
      * Dumps the ride info of the default heap to the console by iterating through the heap and calling Ride.toString on each ride.
      */
@@ -303,7 +825,7 @@ public class MinHeap {
         }
 
         for (Ride ride : rides)
-            if (ride != null)
+            if (ride != null && !tombstones.contains(ride))
                 System.out.println(ride);
     }
 
@@ -314,25 +836,87 @@ public class MinHeap {
         isDebugging = !isDebugging;
     }
 
+    /**
+     * Enables or disables latency recording. While enabled, the time taken by every insert, remove, peek, pooling scan and
+     * sort is recorded into fixed-memory histograms, which can be read through getLatencies()
+     * @param isEnabled True if latencies should be recorded, else false. Disabling recording discards the latencies recorded so far
+     */
+    public void setLatencyRecording(boolean isEnabled) {
+        if (!isEnabled)
+            latencies = null;
+        else if (latencies == null)
+            latencies = new LatencyRecorder();
+    }
+
+    /**
+     * Returns the latencies recorded since latency recording was enabled
+     * @return The latency recorder of this heap, or null if latency recording is disabled
+     */
+    public LatencyRecorder getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Returns the live operation counters of this heap
+     * @return The metrics object that counts the operations performed on this heap
+     */
+    public MinHeapMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers the operation counters of this heap with the platform MBean server so they can be read by any JMX client
+     * @param name The name used to identify this heap in the object name (i.e., MinHeap:type=MinHeap,name=[name])
+     * @return A boolean value that is true if the counters were successfully registered, else returns false
+     */
+    public boolean registerMXBean(String name) {
+        if (!metrics.register(name)) {
+            debug("Unable to register MXBean! The passed name was invalid or already registered...", "registerMXBean(String)");
+            return false;
+        }
+
+        return true;
+    }
+
     /**
      * Performs the up heap operation on the passed heap starting from the last leaf node and continuing up the min heap until it finds a smaller parent value
      */
     private void upHeap() {
-        // gets the index of the last ride in the passed array
-        int indexChild = next - 1;
+        // starts from the last ride in the heap
+        upHeap(next - 1);
+    }
+
+    /**
+     * Performs the up heap operation starting from the passed index and continuing up the min heap until it reaches the root
+     * @param indexStart The index that the up heap should start from
+     */
+    private void upHeap(int indexStart) {
+        // gets the index of the ride being moved up
+        int indexChild = indexStart;
+        // counts the number of levels the ride moves up
+        int levels = 0;
+        siftComparisons = 0;
 
         // while we have not hit the root node
         while (indexChild > 1) {
             // get index of current nodes parent
             int indexParent = indexChild / 2;
 
-            // if the child's node value is smaller than the parent's node value, swap them
-            if (isSmaller(indexChild, indexParent))
-                swap(indexChild, indexParent);
+            // once the child is not smaller than its parent it is in place, since everything above is already in heap order
+            if (!isSmaller(indexChild, indexParent))
+                break;
+
+            // the child's node value is smaller than the parent's node value, so swap them
+            swap(indexChild, indexParent);
+            levels++;
 
             // move up to the next parent
             indexChild = indexParent;
         }
+
+        metrics.recordSift(levels);
+        HeapEvents.siftCompleted("up", indexStart, levels, siftComparisons);
+        flushCounters();
     }
 
     /**
@@ -340,18 +924,21 @@ public class MinHeap {
      * @param indexStart The index that the down heap should start from
      */
     private void downHeap(int indexStart) {
-        // stores the index of the smaller child
-        int indexSmallest = -1;
         // stores the index of the parent
         int indexParent = indexStart;
+        // counts the number of levels the ride moves down
+        int levels = 0;
+        siftComparisons = 0;
 
         while (true) {
             // sets pointers to the left child and its parent
             int indexLeftChild = indexParent * 2;
             int indexRightChild = indexLeftChild + 1;
+            // stores the index of the smallest of the parent and its children, starting with the parent
+            int indexSmallest = indexParent;
 
             // if left child is valid and left value is smaller than parent value
-            if (isValidIndex(indexLeftChild) && isSmaller(indexLeftChild, indexParent)) {
+            if (isValidIndex(indexLeftChild) && isSmaller(indexLeftChild, indexSmallest)) {
                 indexSmallest = indexLeftChild;
             }
 
@@ -361,12 +948,67 @@ public class MinHeap {
             }
 
             // if the parent value is not the smallest, swap and continue, else break the loop
-            if (isSmaller(indexSmallest, indexParent)) {
+            if (indexSmallest != indexParent) {
                 swap(indexSmallest, indexParent);
                 indexParent = indexSmallest;
+                levels++;
 
             } else break;
         }
+
+        metrics.recordSift(levels);
+        HeapEvents.siftCompleted("down", indexStart, levels, siftComparisons);
+        flushCounters();
+    }
+
+    /**
+     * Restores heap order after a remove using Floyd's bottom-up strategy. The ride at the passed index is moved down the path
+     * of smaller children all the way to a leaf (one comparison per level, since the ride itself is not compared), then moved
+     * back up until its parent is smaller. The ride came from the bottom of the heap, so it rarely has to move back far
+     * @param indexStart The index of the ride that was moved into the vacated slot
+     */
+    private void bounceDown(int indexStart) {
+        int index = indexStart;
+        // counts the number of levels the ride moves down, less any it moves back up
+        int levels = 0;
+        siftComparisons = 0;
+
+        // walks the smaller-child path to a leaf
+        while (index * 2 < next) {
+            int indexChild = index * 2;
+            if (indexChild + 1 < next && isSmaller(indexChild + 1, indexChild))
+                indexChild++;
+
+            swap(index, indexChild);
+            index = indexChild;
+            levels++;
+        }
+
+        // bounces the ride back up until its parent is smaller, when removing below the root this can go past the vacated slot
+        while (index > 1 && isSmaller(index, index / 2)) {
+            swap(index, index / 2);
+            index /= 2;
+            levels--;
+        }
+
+        metrics.recordSift(Math.abs(levels));
+        HeapEvents.siftCompleted("bounce", indexStart, Math.abs(levels), siftComparisons);
+        flushCounters();
+    }
+
+    /**
+     * Runs the pooling scan for the passed ride, timing it if latency recording is enabled
+     * @param r The ride being checked for optimization capability
+     * @return A boolean value that is true if the ride was successfully optimized, else returns false
+     */
+    private boolean isPooled(Ride r) {
+        if (latencies == null)
+            return isOptimizable(r);
+
+        long start = System.nanoTime();
+        boolean isPooled = isOptimizable(r);
+        latencies.record(LatencyRecorder.Op.OPTIMIZE, System.nanoTime() - start);
+        return isPooled;
     }
 
     /**
@@ -379,28 +1021,49 @@ public class MinHeap {
         if (isEmpty())
             return false;
 
-        // for each ride in the array, compare location id's
-        for(Ride ride : rides) {
-            // if the ride is null, there must be no rides left to check
-            if (ride == null)
+        // for each ride in the heap, compare location id's (slots past the last ride are always empty)
+        for(int i = 1; i < next && i < rides.length; i++) {
+            Ride ride = rides[i];
+            // if the ride is null or this rides location doesn't match the new rides location, check next ride
+            // (the locations are checked first since comparing two ints is far cheaper than comparing the times)
+            if (ride == null || ride.startId != r.startId || ride.endId != r.endId)
                 continue;
 
-            // if this ride is not booked within 10 minutes of the passed right, check next ride
-            if (getTimeDiff(r, ride) > 10)
+            // if the ride has been removed, it cannot be pooled with
+            if (tombstones.contains(ride))
                 continue;
 
-            // if this rides location doesn't match the new rides location, check next ride
-            if (ride.startId == r.startId && ride.endId == r.endId) {
+            // if this ride is booked within 10 minutes of the passed ride, pool them
+            if (getTimeDiff(r, ride) <= 10) {
                 // updates this rides time to the later time
                 ride.time = r.compareTo(ride) < 0 ? ride.time : r.time;
-                System.out.println("The passed ride was successfully optimized with a new time of " + ride.getTime() + "");
                 // try merge passengers, if this doesn't work, this will return false
-                return ride.addPassenger(r.passengers);
+                boolean isMerged = ride.addPassenger(r.passengers);
+                HeapEvents.ridePooled(r, ride, isMerged);
+                if (isDebugging)
+                    debug("The passed ride was successfully optimized with a new time of " + ride.getTime(), "isOptimizable(Ride r)");
+
+                return isMerged;
             }
         }
         return false;
     }
 
+    /**
+     * Adds the comparisons and swaps counted so far to the metrics, so the metrics are only updated once per operation
+     */
+    private void flushCounters() {
+        if (pendingComparisons > 0) {
+            metrics.recordComparisons(pendingComparisons);
+            pendingComparisons = 0;
+        }
+
+        if (pendingSwaps > 0) {
+            metrics.recordSwaps(pendingSwaps);
+            pendingSwaps = 0;
+        }
+    }
+
     /**
      * Swaps the elements at index1 and index2 with each other
      * @param index1 The index of the element being swapped with that at index2
@@ -409,7 +1072,9 @@ public class MinHeap {
     private void swap(int index1, int index2) {
         // validates the passed indices
         if (!isValidIndexes(index1, index2)) {
-            debug(String.format("Unable to swap values! Index was out of bounds... Index1 = %d, Index2 = %d, RideArray Length = %d, Rides = %d", index1, index2, rides.length, getRideCount()), "swap(int index1, int index2)");
+            // only builds the message when it is going to be printed
+            if (isDebugging)
+                debug(String.format("Unable to swap values! Index was out of bounds... Index1 = %d, Index2 = %d, RideArray Length = %d, Rides = %d", index1, index2, rides.length, getRideCount()), "swap(int index1, int index2)");
             return;
         }
 
@@ -425,6 +1090,7 @@ public class MinHeap {
         Ride tempChild = child;
         rides[index1] = parent;
         rides[index2] = tempChild;
+        pendingSwaps++;
     }
 
     /**
@@ -471,38 +1137,25 @@ public class MinHeap {
      * @return An integer value denoting the index of the passed ride if it is found, else returns -1 if it is not.
      */
     private int getIndex(Ride r) {
-        // gets the index of the last ride in the passed array
-        int indexLast = getRideCount();
+        // takes the index of the last ride (counting the rides would scan the whole array before the search even starts)
+        int indexLast = next - 1;
 
         // iterate through the heap to fetch the index of the passed 'Ride'
         for(int i = 1; i <= indexLast; i++)
-            // if the ride is found, returns its index
-            if (rides[i] != null && rides[i].compareTo(r) == 0)
+            // if the ride is found, returns its index (compared by reference, since different rides can share a timestamp)
+            if (rides[i] == r)
                 return i;
 
         return -1;
     }
 
     /**
-     * Iterates through the heap to ensure that the passed ride has a unique ID
+     * Checks the ride ID index to ensure that the passed ride has a unique ID
      * @param r The ride being compared
      * @return A boolean value that is true if the passed ride has a unique ID, else returns false
      */
     private boolean isUniqueId(Ride r) {
-        // if the heap is empty, the passed id must be unique
-        if (isEmpty())
-            return true;
-
-        // sets pointers at each end of the heap
-        int left = 1;
-        int right = next - 1;
-
-        // moves pointers inward until they intersect, returning true if the passed ride is found by either pointer
-        for (; left <= right; left++, right--)
-            if (rides[left].id == r.id || r.id == rides[right].id)
-                return false;
-
-        return true;
+        return !ridesById.containsKey(r.id);
     }
 
     /**
@@ -547,8 +1200,8 @@ public class MinHeap {
         if (Math.min(index1, index2) < 0 && Math.max(index1, index2) > next - 1)
             return false;
 
-        // get the total ride count
-        int indexLastRide = getRideCount();
+        // takes the index of the last ride (counting the rides here would scan the whole array on every comparison)
+        int indexLastRide = next - 1;
 
         // validate the passed indices to prevent out of bounds exception
         if (Math.max(index1, index2) > indexLastRide || Math.min(index1, index2) < 0)
@@ -558,6 +1211,12 @@ public class MinHeap {
         Ride ride1 = rides[index1];
         Ride ride2 = rides[index2];
 
+        // an empty slot (e.g., the slot vacated by a remove) is never smaller than anything
+        if (ride1 == null || ride2 == null)
+            return false;
+
+        pendingComparisons++;
+        siftComparisons++;
         return ride1.compareTo(ride2) == -1;
     }
 
@@ -574,6 +1233,8 @@ public class MinHeap {
         // resets and overrides default heap
         rides = new Ride[rideArray.length + 1];
         next = 1;
+        ridesById.clear();
+        tombstones.clear();
         insert(rideArray);
         return true;
     }
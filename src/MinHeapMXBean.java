@@ -0,0 +1,93 @@
+/**
+ * Management interface used to expose the live operation counters of a 'MinHeap' over JMX
+ *
+ * @Note: Example registration:<br>
+ * MinHeap heap = new MinHeap();<br>
+ * heap.registerMXBean("dispatch");<br>
+ * <br>The counters can then be read from any JMX client (e.g., JConsole) under the object name:<br>
+ * MinHeap:type=MinHeap,name=dispatch<br>
+ */
+public interface MinHeapMXBean {
+    /**
+     * Returns the number of rides that have been successfully inserted into the heap as a new node
+     * @return A long value denoting the number of successful inserts
+     */
+    long getInsertCount();
+
+    /**
+     * Returns the number of rides that have been successfully removed from the heap
+     * @return A long value denoting the number of successful removes
+     */
+    long getRemoveCount();
+
+    /**
+     * Returns the number of rides that were pooled (merged) into an existing ride instead of being inserted
+     * @return A long value denoting the number of pooling merges
+     */
+    long getPoolCount();
+
+    /**
+     * Returns the number of rides that were rejected because the heap had reached its maximum capacity
+     * @return A long value denoting the number of inserts rejected by a full heap
+     */
+    long getRejectedFullCount();
+
+    /**
+     * Returns the number of ride comparisons performed while maintaining heap order
+     * @return A long value denoting the number of comparisons
+     */
+    long getComparisonCount();
+
+    /**
+     * Returns the number of node swaps performed while maintaining heap order
+     * @return A long value denoting the number of swaps
+     */
+    long getSwapCount();
+
+    /**
+     * Returns the number of up-heap and down-heap operations performed
+     * @return A long value denoting the number of sift operations
+     */
+    long getSiftCount();
+
+    /**
+     * Returns the average number of levels a ride moved per up-heap or down-heap operation
+     * @return A double value denoting the average sift depth, or 0 if no sifts have been performed
+     */
+    double getAverageSiftDepth();
+
+    /**
+     * Returns the number of times the heap has been compacted in lazy deletion mode
+     * @return A long value denoting the number of compactions
+     */
+    long getCompactionCount();
+
+    /**
+     * Returns the number of removed rides still waiting in the heap to be cleaned up in lazy deletion mode
+     * @return An integer value denoting the number of tombstoned rides
+     */
+    int getTombstoneCount();
+
+    /**
+     * Returns the fraction of occupied heap slots that hold tombstoned rides
+     * @return A double value between 0 and 1 denoting the tombstone ratio
+     */
+    double getTombstoneRatio();
+
+    /**
+     * Returns how long the oldest mutation log record not yet applied by a replica has been waiting
+     * @return A long value denoting the replication lag in milliseconds, 0 for a primary or a caught-up replica
+     */
+    long getReplicationLagMillis();
+
+    /**
+     * Returns the number of mutation log bytes written by the primary that a replica has not applied yet
+     * @return A long value denoting the replication lag in bytes, 0 for a primary or a caught-up replica
+     */
+    long getReplicationLagBytes();
+
+    /**
+     * Resets every counter back to zero
+     */
+    void reset();
+}
@@ -0,0 +1,276 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Creates a set of live operation counters for a 'MinHeap' that can be registered with the platform MBean server.
+ * Each counter is a striped 'LongAdder' so that recording an operation costs close to nothing on the hot path
+ * and stays cheap even when several threads are updating the same counters.
+ */
+public class MinHeapMetrics implements MinHeapMXBean {
+    /**
+     * The domain and type used to build the JMX object name of each registered heap
+     */
+    private static final String OBJECT_NAME = "MinHeap:type=MinHeap,name=%s";
+    /**
+     * Counts the rides successfully inserted into the heap
+     */
+    private final LongAdder inserts = new LongAdder();
+    /**
+     * Counts the rides successfully removed from the heap
+     */
+    private final LongAdder removes = new LongAdder();
+    /**
+     * Counts the rides that were pooled into an existing ride
+     */
+    private final LongAdder pools = new LongAdder();
+    /**
+     * Counts the rides rejected because the heap was full
+     */
+    private final LongAdder rejectedFull = new LongAdder();
+    /**
+     * Counts the ride comparisons performed by the heap
+     */
+    private final LongAdder comparisons = new LongAdder();
+    /**
+     * Counts the node swaps performed by the heap
+     */
+    private final LongAdder swaps = new LongAdder();
+    /**
+     * Counts the up-heap and down-heap operations performed by the heap
+     */
+    private final LongAdder sifts = new LongAdder();
+    /**
+     * Sums the number of levels moved by every up-heap and down-heap operation
+     */
+    private final LongAdder siftLevels = new LongAdder();
+    /**
+     * Counts the number of times the heap has been compacted in lazy deletion mode
+     */
+    private final LongAdder compactions = new LongAdder();
+    /**
+     * The number of tombstoned rides last reported by the heap
+     */
+    private volatile int tombstones;
+    /**
+     * The number of occupied heap slots (live and tombstoned) last reported by the heap
+     */
+    private volatile int slots;
+    /**
+     * The replication lag in milliseconds last reported by a replica
+     */
+    private volatile long replicationLagMillis;
+    /**
+     * The replication lag in bytes last reported by a replica
+     */
+    private volatile long replicationLagBytes;
+    /**
+     * The object name this set of counters is registered under, or null if it is not registered
+     */
+    private ObjectName objectName;
+
+    @Override
+    public long getInsertCount() {
+        return inserts.sum();
+    }
+
+    @Override
+    public long getRemoveCount() {
+        return removes.sum();
+    }
+
+    @Override
+    public long getPoolCount() {
+        return pools.sum();
+    }
+
+    @Override
+    public long getRejectedFullCount() {
+        return rejectedFull.sum();
+    }
+
+    @Override
+    public long getComparisonCount() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getSwapCount() {
+        return swaps.sum();
+    }
+
+    @Override
+    public long getSiftCount() {
+        return sifts.sum();
+    }
+
+    @Override
+    public double getAverageSiftDepth() {
+        // takes the sift count first so a concurrent sift can never cause a division by zero
+        long count = sifts.sum();
+        return count == 0 ? 0 : (double) siftLevels.sum() / count;
+    }
+
+    @Override
+    public long getCompactionCount() {
+        return compactions.sum();
+    }
+
+    @Override
+    public int getTombstoneCount() {
+        return tombstones;
+    }
+
+    @Override
+    public double getTombstoneRatio() {
+        int slots = this.slots;
+        return slots == 0 ? 0 : (double) tombstones / slots;
+    }
+
+    @Override
+    public long getReplicationLagMillis() {
+        return replicationLagMillis;
+    }
+
+    @Override
+    public long getReplicationLagBytes() {
+        return replicationLagBytes;
+    }
+
+    @Override
+    public void reset() {
+        inserts.reset();
+        removes.reset();
+        pools.reset();
+        rejectedFull.reset();
+        comparisons.reset();
+        swaps.reset();
+        sifts.reset();
+        siftLevels.reset();
+        compactions.reset();
+    }
+
+    /**
+     * Registers these counters with the platform MBean server under the passed name
+     * @param name The name used to identify the heap these counters belong to (e.g., "dispatch")
+     * @return A boolean value that is true if the counters were successfully registered, else returns false
+     */
+    public synchronized boolean register(String name) {
+        // a set of counters can only be registered once
+        if (name == null || name.isBlank() || objectName != null)
+            return false;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(String.format(OBJECT_NAME, name));
+            server.registerMBean(this, objectName);
+            this.objectName = objectName;
+            return true;
+
+        } catch (Exception e) {
+            // the name was malformed or is already taken by another heap
+            return false;
+        }
+    }
+
+    /**
+     * Removes these counters from the platform MBean server if they have been registered
+     * @return A boolean value that is true if the counters were successfully unregistered, else returns false
+     */
+    public synchronized boolean unregister() {
+        if (objectName == null)
+            return false;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            return true;
+
+        } catch (Exception e) {
+            return false;
+
+        } finally {
+            objectName = null;
+        }
+    }
+
+    /**
+     * Records a successful insert
+     */
+    void recordInsert() {
+        inserts.increment();
+    }
+
+    /**
+     * Records a successful remove
+     */
+    void recordRemove() {
+        removes.increment();
+    }
+
+    /**
+     * Records a ride being pooled into an existing ride
+     */
+    void recordPool() {
+        pools.increment();
+    }
+
+    /**
+     * Records an insert being rejected by a full heap
+     */
+    void recordRejectedFull() {
+        rejectedFull.increment();
+    }
+
+    /**
+     * Records a batch of ride comparisons
+     * @param count The number of comparisons performed
+     */
+    void recordComparisons(int count) {
+        comparisons.add(count);
+    }
+
+    /**
+     * Records a batch of node swaps
+     * @param count The number of swaps performed
+     */
+    void recordSwaps(int count) {
+        swaps.add(count);
+    }
+
+    /**
+     * Records a completed up-heap or down-heap operation
+     * @param levels The number of levels the ride moved during the operation
+     */
+    void recordSift(int levels) {
+        sifts.increment();
+        siftLevels.add(levels);
+    }
+
+    /**
+     * Records a compaction of the heap
+     */
+    void recordCompaction() {
+        compactions.increment();
+    }
+
+    /**
+     * Records the current number of tombstoned rides and occupied slots in the heap
+     * @param tombstones The number of tombstoned rides
+     * @param slots The number of occupied slots, including tombstoned rides
+     */
+    void recordTombstones(int tombstones, int slots) {
+        this.tombstones = tombstones;
+        this.slots = slots;
+    }
+
+    /**
+     * Records how far a replica is behind the primary's mutation log
+     * @param millis How long the oldest unapplied record has been waiting in milliseconds
+     * @param bytes The number of unapplied bytes in the log
+     */
+    void recordReplicationLag(long millis, long bytes) {
+        replicationLagMillis = millis;
+        replicationLagBytes = bytes;
+    }
+}
@@ -1,9 +1,29 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Time;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 /**
  * Test suite for the MinHeap class, used to test each function is operating correctly and producing the expected outputs
@@ -1839,6 +1859,1841 @@ public class MinHeapTest {
         assertTrue(isOrdered);
     }
 
+// Test class: MinHeapMetrics.java
+// Test section: getMetrics()
+
+    /**
+     * Tests to ensure that the insert and remove counters are updated by successful inserts and removes
+     */
+    @Test
+    @DisplayName("Test getMetrics(): Insert and remove rides, check counters")
+    public void testMetricsInsertRemove() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+        heap.remove(ride2);
+
+        // define expected and actual counters
+        MinHeapMetrics metrics = heap.getMetrics();
+
+        // check insert and remove counts
+        assertEquals(4, metrics.getInsertCount());
+        assertEquals(1, metrics.getRemoveCount());
+    }
+
+    /**
+     * Tests to ensure that a pooled ride is counted as a pool rather than an insert
+     */
+    @Test
+    @DisplayName("Test getMetrics(): Insert a pair of optimizable rides, check pool count")
+    public void testMetricsPool() {
+        // create two rides on the same route within 10 minutes of each other
+        Ride rideA = new Ride(10, Time.valueOf("08:00:00"), "Passenger A", 5, 6);
+        Ride rideB = new Ride(11, Time.valueOf("08:05:00"), "Passenger B", 5, 6);
+
+        // insert both rides
+        heap.insert(rideA);
+        heap.insert(rideB);
+        MinHeapMetrics metrics = heap.getMetrics();
+
+        // check only the first ride was inserted and the second was pooled
+        assertEquals(1, metrics.getInsertCount());
+        assertEquals(1, metrics.getPoolCount());
+    }
+
+    /**
+     * Tests to ensure that inserts rejected by a full heap are counted
+     */
+    @Test
+    @DisplayName("Test getMetrics(): Insert into a full heap, check rejected count")
+    public void testMetricsRejectedFull() {
+        // fill the heap with rides that cannot be pooled
+        for (int i = 1; i < heap.MAX_CAPACITY; i++)
+            heap.insert(new Ride(i, Time.valueOf(String.format("%02d:00:00", i)), "Passenger " + i, i, i));
+
+        // attempt to insert one more ride
+        heap.insert(new Ride(99, Time.valueOf("23:30:00"), "Passenger 99", 99, 99));
+
+        // check the rejected insert was counted
+        assertEquals(1, heap.getMetrics().getRejectedFullCount());
+    }
+
+    /**
+     * Tests to ensure that an insert which up-heaps to the root records its comparisons, swaps and sift depth
+     */
+    @Test
+    @DisplayName("Test getMetrics(): Insert rides in descending order, check comparisons and swaps")
+    public void testMetricsSift() {
+        // insert rides in descending order so each new ride moves to the root
+        heap.insert(ride4);
+        heap.insert(ride3);
+        heap.insert(ride2);
+        MinHeapMetrics metrics = heap.getMetrics();
+
+        // check every insert compared and swapped its way to the root
+        assertEquals(2, metrics.getComparisonCount());
+        assertEquals(2, metrics.getSwapCount());
+        assertTrue(metrics.getAverageSiftDepth() > 0);
+
+        // reset the counters and check they have been cleared
+        metrics.reset();
+        assertEquals(0, metrics.getComparisonCount());
+    }
+
+    /**
+     * Tests to ensure that registerMXBean(String) publishes the counters to the platform MBean server exactly once
+     */
+    @Test
+    @DisplayName("Test registerMXBean(String): Register twice, check second registration fails")
+    public void testRegisterMXBean() throws Exception {
+        // register the heap under a unique name
+        boolean isRegistered = heap.registerMXBean("test-" + System.nanoTime());
+        boolean isRegisteredTwice = heap.registerMXBean("test-" + System.nanoTime());
+
+        // check the first registration succeeds and the second is rejected
+        assertTrue(isRegistered);
+        assertFalse(isRegisteredTwice);
+        assertTrue(heap.getMetrics().unregister());
+    }
+
+// Test class: HeapEvents.java
+// Test section: Flight Recorder events
+
+    /**
+     * Tests to ensure that inserting and removing rides emits the matching Flight Recorder events
+     */
+    @Test
+    @DisplayName("Test HeapEvents: Insert and remove rides during a recording, check events")
+    public void testHeapEventsRecorded() throws Exception {
+        // creates a temporary file for the recording to be dumped to
+        Path file = Files.createTempFile("minheap", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            // enables only the heap events
+            recording.enable("MinHeap.RideInserted");
+            recording.enable("MinHeap.RideRemoved");
+            recording.enable("MinHeap.SiftCompleted");
+            recording.start();
+
+            // using defaultRides array...
+            heap.insert(defaultRides);
+            heap.remove(ride1);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // counts each of the recorded heap events
+        long inserted = 0, removed = 0, sifts = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            if (name.equals("MinHeap.RideInserted")) inserted++;
+            if (name.equals("MinHeap.RideRemoved")) removed++;
+            if (name.equals("MinHeap.SiftCompleted")) sifts++;
+        }
+        Files.deleteIfExists(file);
+
+        // check an event was recorded for every insert, remove and sift
+        assertEquals(4, inserted);
+        assertEquals(1, removed);
+        assertEquals(5, sifts);
+    }
+
+    /**
+     * Tests to ensure that the HeapFull event reports the number of rides the heap can hold, not the size of its array
+     */
+    @Test
+    @DisplayName("Test HeapEvents: Insert into a full heap during a recording, check capacity")
+    public void testHeapEventsHeapFull() throws Exception {
+        Path file = Files.createTempFile("minheap", ".jfr");
+        MinHeap smallHeap = new MinHeap(2);
+
+        try (Recording recording = new Recording()) {
+            recording.enable("MinHeap.HeapFull");
+            recording.start();
+
+            // using default rides 1-3...
+            smallHeap.insert(ride1);
+            smallHeap.insert(ride2);
+            smallHeap.insert(ride3);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // check the rejected ride was recorded with the heap's ride capacity
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("MinHeap.HeapFull")).collect(Collectors.toList());
+        Files.deleteIfExists(file);
+        assertEquals(1, events.size());
+        assertEquals(ride3.id, events.get(0).getInt("rideId"));
+        assertEquals(2, events.get(0).getInt("capacity"));
+    }
+
+    /**
+     * Tests to ensure that pooling a ride no longer prints to the console unless debugging is enabled
+     */
+    @Test
+    @DisplayName("Test HeapEvents: Insert a pair of optimizable rides w/o debugging, check no output")
+    public void testHeapEventsPoolSilent() {
+        // disables debugging for this test (re-enabled so the after-each toggle restores the default)
+        heap.toggleDebug();
+
+        // insert two rides on the same route within 10 minutes of each other
+        heap.insert(new Ride(10, Time.valueOf("08:00:00"), "Passenger A", 5, 6));
+        heap.insert(new Ride(11, Time.valueOf("08:05:00"), "Passenger B", 5, 6));
+        heap.toggleDebug();
+
+        // check nothing was printed to the console
+        assertEquals("", getStream());
+    }
+
+// Test class: HeapPrinter.java
+// Test section: render(Ride[], String) / writeTo(...)
+
+    /**
+     * Tests to ensure that render(Ride[], String) places the root value on the first line of the diagram
+     */
+    @Test
+    @DisplayName("Test render(Ride[], String): Render a multi-heap, check root line")
+    public void testRenderRoot() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+
+        // render the ride ids and split the diagram into lines
+        String[] lines = HeapPrinter.render(heap.rides, "time").split(System.lineSeparator());
+
+        // check the root ride is alone on the first line
+        assertEquals("01:00:00", lines[0].replace("\033[0m", "").trim());
+    }
+
+    /**
+     * Tests to ensure that render(Ride[], String) rejects a field that cannot be printed
+     */
+    @Test
+    @DisplayName("Test render(Ride[], String): Render an unknown field, check null")
+    public void testRenderUnknownField() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+
+        // check an unknown field cannot be rendered
+        assertNull(HeapPrinter.render(heap.rides, "passengers"));
+    }
+
+    /**
+     * Tests to ensure that writeTo(Ride[], String, Path) writes the same diagram that render(Ride[], String) returns
+     */
+    @Test
+    @DisplayName("Test writeTo(Ride[], String, Path): Write a multi-heap to file, check contents")
+    public void testWriteToFile() throws Exception {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+        Path file = Files.createTempFile("heap", ".txt");
+
+        // write the diagram to file
+        boolean isWritten = HeapPrinter.writeTo(heap.rides, "id", file);
+        // define expected and actual diagrams
+        String expectedOutput = HeapPrinter.render(heap.rides, "id");
+        String actualOutput = Files.readString(file);
+        Files.deleteIfExists(file);
+
+        // check the file matches the rendered diagram
+        assertTrue(isWritten);
+        assertEquals(expectedOutput, actualOutput);
+    }
+
+// Test section: printTop(Ride[], int) / printSubtree(Ride[], int) / printPath(Ride[], int)
+
+    /**
+     * Tests to ensure that printTop(Ride[], int) only prints the requested number of levels
+     */
+    @Test
+    @DisplayName("Test printTop(Ride[], int): Print top 2 levels of a multi-heap, check line count")
+    public void testPrintTopLevels() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+
+        // print the top 2 levels and remove the heading
+        HeapPrinter.printTop(heap, 2);
+        String[] lines = getStream().split("\\R");
+
+        // check the heading, blank line and exactly 2 levels were printed
+        assertEquals(4, lines.length);
+        assertTrue(lines[3].contains("02:00:00") && lines[3].contains("03:00:00"));
+        assertFalse(getStream().contains("04:00:00"));
+    }
+
+    /**
+     * Tests to ensure that printSubtree(Ride[], int) prints the subtree root followed by only its own children
+     */
+    @Test
+    @DisplayName("Test printSubtree(Ride[], int): Print subtree at index 2, check nodes")
+    public void testPrintSubtree() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+
+        // print the subtree rooted at index 2 (ride2 with ride4 as its only child)
+        HeapPrinter.printSubtree(heap.rides, 2);
+        String output = getStream();
+
+        // check only the subtree nodes were printed
+        assertTrue(output.contains("02:00:00") && output.contains("04:00:00"));
+        assertFalse(output.contains("01:00:00") || output.contains("03:00:00"));
+    }
+
+    /**
+     * Tests to ensure that printPath(Ride[], int) prints the ancestors of the passed index along with their siblings
+     */
+    @Test
+    @DisplayName("Test printPath(Ride[], int): Print path to index 4, check ancestors")
+    public void testPrintPath() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+
+        // print the path from the root to index 4
+        HeapPrinter.printPath(heap.rides, 4);
+        String output = getStream().replaceAll("\033\\[[0-9;]*m", "");
+
+        // check each ancestor is marked and its sibling is shown
+        assertTrue(output.contains("Level 0: [01:00:00]"));
+        assertTrue(output.contains("Level 1: [02:00:00]  03:00:00"));
+        assertTrue(output.contains("Level 2: [04:00:00]"));
+    }
+
+// Test section: MinHeap(int)
+
+    /**
+     * Tests to ensure that MinHeap(int) creates a heap that holds the passed number of rides
+     */
+    @Test
+    @DisplayName("Test MinHeap(int): Create a heap for 100 rides, check capacity")
+    public void testConstructorCapacity() {
+        // create a heap that can hold 100 rides
+        MinHeap bigHeap = new MinHeap(100);
+
+        // fill the heap with rides that cannot be pooled
+        for (int i = 1; i <= 100; i++)
+            bigHeap.insert(new Ride(i, Time.valueOf(String.format("%02d:%02d:00", i % 24, i % 60)), "Passenger " + i, i, i));
+
+        // check every ride was inserted and one more ride is rejected
+        assertEquals(101, bigHeap.MAX_CAPACITY);
+        assertEquals(100, bigHeap.size());
+        assertFalse(bigHeap.insert(new Ride(101, Time.valueOf("23:59:00"), "Passenger 101", 101, 101)));
+    }
+
+    /**
+     * Tests to ensure that MinHeap(int) rejects a heap that cannot hold any rides
+     */
+    @Test
+    @DisplayName("Test MinHeap(int): Create a heap for 0 rides, check exception")
+    public void testConstructorCapacityInvalid() {
+        // check a heap for 0 rides cannot be created
+        assertThrows(IllegalArgumentException.class, () -> new MinHeap(0));
+    }
+
+// Test section: stream() / parallelStream() / snapshotStream(boolean)
+
+    /**
+     * Tests to ensure that stream() visits each ride in the heap exactly once, in heap order
+     */
+    @Test
+    @DisplayName("Test stream(): Stream a multi-heap, check rides")
+    public void testStream() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+
+        // define expected and actual rides
+        Object[] expectedRides = Arrays.copyOfRange(heap.rides, 1, heap.next);
+        Object[] actualRides = heap.stream().toArray();
+
+        // check the stream matches the occupied slots of the heap
+        assertArrayEquals(expectedRides, actualRides);
+    }
+
+    /**
+     * Tests to ensure that parallelStream() can aggregate over a large heap across several threads
+     */
+    @Test
+    @DisplayName("Test parallelStream(): Count rides per start id in a large heap, check counts")
+    public void testParallelStreamGrouping() {
+        // create a large heap where each start id is used by the same number of rides
+        MinHeap bigHeap = new MinHeap(1000);
+        for (int i = 1; i <= 1000; i++)
+            bigHeap.insert(new Ride(i, new Time(i * 60_000L), "Passenger " + i, i % 4, i));
+
+        // count the rides at each start id in parallel
+        Map<Integer, Long> counts = bigHeap.parallelStream()
+                .collect(Collectors.groupingByConcurrent(ride -> ride.startId, Collectors.counting()));
+
+        // check each start id has a quarter of the rides
+        assertEquals(4, counts.size());
+        counts.values().forEach(count -> assertEquals(250L, count));
+        assertTrue(bigHeap.spliterator().hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+    }
+
+    /**
+     * Tests to ensure that snapshotStream(boolean) is not affected by changes made to the heap after it was created
+     */
+    @Test
+    @DisplayName("Test snapshotStream(boolean): Remove a ride after taking a snapshot, check count")
+    public void testSnapshotStream() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+
+        // take a snapshot stream then remove a ride from the heap
+        Stream<Ride> snapshot = heap.snapshotStream(false);
+        heap.remove(ride1);
+
+        // check the snapshot still holds every ride
+        assertEquals(4, snapshot.count());
+        assertEquals(3, heap.stream().count());
+    }
+
+// Test section: toSortedArray()
+
+    /**
+     * Tests to ensure that toSortedArray() returns the rides in ascending order without changing the heap
+     */
+    @Test
+    @DisplayName("Test toSortedArray(): Export a multi-heap, check order and heap unchanged")
+    public void testToSortedArray() {
+        // insert the default rides in reverse order
+        heap.insert(new Ride[] {ride4, ride3, ride2, ride1});
+        Ride[] heapBefore = heap.rides.clone();
+
+        // define expected and actual outputs
+        Ride[] expectedRides = {ride1, ride2, ride3, ride4};
+        Ride[] actualRides = heap.toSortedArray();
+
+        // check the export is sorted and the heap was not modified
+        assertArrayEquals(expectedRides, actualRides);
+        assertArrayEquals(heapBefore, heap.rides);
+    }
+
+    /**
+     * Tests to ensure that toSortedArray() sorts a large heap with many equal timestamps
+     */
+    @Test
+    @DisplayName("Test toSortedArray(): Export a large heap, check ascending order")
+    public void testToSortedArrayLarge() {
+        // create a large heap where many rides share the same timestamp
+        MinHeap bigHeap = new MinHeap(5000);
+        for (int i = 1; i <= 5000; i++)
+            bigHeap.insert(new Ride(i, new Time((i * 7919L % 1000) * 60_000L), "Passenger " + i, i, i));
+
+        Ride[] sorted = bigHeap.toSortedArray();
+
+        // check every ride was exported in ascending order
+        assertEquals(bigHeap.size(), sorted.length);
+        for (int i = 1; i < sorted.length; i++)
+            assertTrue(sorted[i - 1].compareTo(sorted[i]) <= 0);
+    }
+
+    /**
+     * Tests to ensure that toSortedArray() returns an empty array for an empty heap
+     */
+    @Test
+    @DisplayName("Test toSortedArray(): Export an empty heap, check empty")
+    public void testToSortedArrayEmpty() {
+        // check an empty heap exports no rides
+        assertEquals(0, heap.toSortedArray().length);
+    }
+
+// Test class: ShardedHeap.java
+// Test section: insert(Ride) / peek() / poll()
+
+    /**
+     * Tests to ensure that poll() returns rides from every shard in global time order
+     */
+    @Test
+    @DisplayName("Test ShardedHeap.poll(): Poll rides spread across shards, check global order")
+    public void testShardedHeapPollOrder() {
+        try (ShardedHeap queue = new ShardedHeap(4, 1000)) {
+            // insert rides whose times and start ids are spread across every shard
+            for (int i = 1; i <= 200; i++)
+                queue.insert(new Ride(i, new Time((i * 7919L % 200) * 60_000L), "Passenger " + i, i, 1000 + i));
+
+            // check the earliest ride is visible through peek
+            assertEquals(200, queue.size());
+            Ride first = queue.peek();
+
+            // poll every ride and check they come out in ascending order
+            Ride previous = queue.poll();
+            assertSame(first, previous);
+            for (int i = 1; i < 200; i++) {
+                Ride current = queue.poll();
+                assertTrue(previous.compareTo(current) <= 0);
+                previous = current;
+            }
+
+            // check the queue is now empty
+            assertNull(queue.poll());
+            assertNull(queue.peek());
+        }
+    }
+
+    /**
+     * Tests to ensure that rides are routed to shards by their start location and can be removed again
+     */
+    @Test
+    @DisplayName("Test ShardedHeap.remove(Ride): Remove a ride from its shard, check size")
+    public void testShardedHeapRemove() {
+        try (ShardedHeap queue = new ShardedHeap(2, 100)) {
+            // using defaultRides array...
+            for (Ride ride : defaultRides)
+                queue.insert(ride);
+
+            // remove the earliest ride and check the next earliest becomes the root
+            assertTrue(queue.remove(ride1));
+            assertFalse(queue.remove(ride1));
+            assertEquals(3, queue.size());
+            assertSame(ride2, queue.peek());
+        }
+    }
+
+    /**
+     * Tests to ensure that a shard which grows disproportionately large has a region moved to a smaller shard
+     */
+    @Test
+    @DisplayName("Test ShardedHeap.rebalance(): Fill one shard, check regions are moved")
+    public void testShardedHeapRebalance() {
+        try (ShardedHeap queue = new ShardedHeap(2, 1000)) {
+            // insert rides only into regions owned by shard 0 (even regions of 8)
+            for (int i = 1; i <= 400; i++)
+                queue.insert(new Ride(i, new Time(i * 60_000L), "Passenger " + i, (i % 2) * 2, 1000 + i));
+
+            // check rides have been moved so neither shard is empty
+            assertEquals(400, queue.size());
+            assertTrue(queue.getShardSize(0) > 0 && queue.getShardSize(1) > 0);
+
+            // check every ride still comes out in order after the move
+            Ride previous = queue.poll();
+            for (int i = 1; i < 400; i++) {
+                Ride current = queue.poll();
+                assertTrue(previous.compareTo(current) <= 0);
+                previous = current;
+            }
+        }
+    }
+
+    /**
+     * Tests to ensure that a region the smaller shard rejects a ride from is put back, rather than losing the ride
+     */
+    @Test
+    @DisplayName("Test ShardedHeap.rebalance(): Move a region the smaller shard rejects, check no ride is lost")
+    public void testShardedHeapRebalanceRejected() {
+        try (ShardedHeap queue = new ShardedHeap(2, 1000)) {
+            // shard 1 holds rides with IDs 1 and 2, which every region of shard 0 also holds a ride with
+            queue.insert(new Ride(1, new Time(0), "Passenger A", 1, 0));
+            queue.insert(new Ride(2, new Time(0), "Passenger B", 3, 0));
+            for (int i = 1; i <= 400; i++)
+                queue.insert(new Ride(i, new Time(i * 60_000L), "Passenger " + i, (i % 2) * 2, 1000 + i));
+
+            // check every move was rolled back, so every ride is still held by its own shard
+            assertFalse(queue.rebalance());
+            assertEquals(402, queue.size());
+            assertEquals(2, queue.getShardSize(1));
+
+            int polled = 0;
+            while (queue.poll() != null)
+                polled++;
+
+            assertEquals(402, polled);
+        }
+    }
+
+// Test section: poll()
+
+    /**
+     * Tests to ensure that poll() removes the rides of a heap in ascending order
+     */
+    @Test
+    @DisplayName("Test poll(): Poll a multi-heap, check order")
+    public void testPollOrder() {
+        // insert the default rides in reverse order
+        heap.insert(new Ride[] {ride4, ride3, ride2, ride1});
+
+        // check each poll returns the next earliest ride
+        assertSame(ride1, heap.poll());
+        assertSame(ride2, heap.poll());
+        assertSame(ride3, heap.poll());
+        assertSame(ride4, heap.poll());
+        assertNull(heap.poll());
+    }
+
+    /**
+     * Tests to ensure that remove(Ride) restores heap order when the ride moved into the gap is smaller than its new parent
+     */
+    @Test
+    @DisplayName("Test remove(Ride): Remove a ride from another subtree, check moved ride up-heaps")
+    public void testRemoveRideUpHeap() {
+        // build a heap where the last ride is smaller than the parent of the removed ride
+        Ride rideA = new Ride(11, Time.valueOf("01:00:00"), "A", 11, 11);
+        Ride rideB = new Ride(12, Time.valueOf("05:00:00"), "B", 12, 12);
+        Ride rideC = new Ride(13, Time.valueOf("02:00:00"), "C", 13, 13);
+        Ride rideD = new Ride(14, Time.valueOf("06:00:00"), "D", 14, 14);
+        Ride rideE = new Ride(15, Time.valueOf("07:00:00"), "E", 15, 15);
+        Ride rideF = new Ride(16, Time.valueOf("08:00:00"), "F", 16, 16);
+        Ride rideG = new Ride(17, Time.valueOf("03:00:00"), "G", 17, 17);
+        heap.insert(new Ride[] {rideA, rideB, rideC, rideD, rideE, rideF, rideG});
+
+        // remove a child of rideB, which moves rideG (03:00) below rideB (05:00)
+        heap.remove(rideD);
+
+        // check rideG moved above rideB
+        assertSame(rideG, heap.rides[2]);
+    }
+
+// Test class: LoserTreeMerger.java
+// Test section: next()
+
+    /**
+     * Tests to ensure that several sorted sources are merged into a single sorted stream with ties in source order
+     */
+    @Test
+    @DisplayName("Test LoserTreeMerger.next(): Merge 5 sorted sources, check order")
+    public void testLoserTreeMergeOrder() {
+        // create 5 sorted sources of different lengths, each sharing some timestamps with the others
+        List<Iterator<Ride>> sources = new ArrayList<>();
+        int id = 1;
+        for (int s = 0; s < 5; s++) {
+            List<Ride> source = new ArrayList<>();
+            for (int i = 0; i < 10 + s * 3; i++, id++)
+                source.add(new Ride(id, new Time((i * (s + 1)) * 60_000L), "Passenger " + id, s, id));
+
+            sources.add(source.iterator());
+        }
+
+        // merge every source
+        LoserTreeMerger merger = new LoserTreeMerger(sources);
+        List<Ride> merged = new ArrayList<>();
+        merger.forEachRemaining(merged::add);
+
+        // check every ride was returned in ascending order, with ties kept in source order
+        assertEquals(id - 1, merged.size());
+        for (int i = 1; i < merged.size(); i++) {
+            int result = merged.get(i - 1).compareTo(merged.get(i));
+            assertTrue(result < 0 || (result == 0 && merged.get(i - 1).startId <= merged.get(i).startId));
+        }
+    }
+
+    /**
+     * Tests to ensure that a merger with no sources (or only empty sources) is immediately exhausted
+     */
+    @Test
+    @DisplayName("Test LoserTreeMerger.next(): Merge empty sources, check exhausted")
+    public void testLoserTreeMergeEmpty() {
+        // check a merger with no sources and a merger with empty sources have nothing to return
+        assertFalse(new LoserTreeMerger(List.of()).hasNext());
+        assertFalse(new LoserTreeMerger(List.of(Collections.<Ride>emptyIterator(), Collections.<Ride>emptyIterator())).hasNext());
+    }
+
+    /**
+     * Tests to ensure that sorted ride files can be merged without loading them into a heap
+     */
+    @Test
+    @DisplayName("Test LoserTreeMerger.fromFiles(List): Merge two ride files, check order and fields")
+    public void testLoserTreeMergeFiles() throws Exception {
+        // write two sorted ride files
+        Path file1 = Files.createTempFile("rides", ".bin");
+        Path file2 = Files.createTempFile("rides", ".bin");
+        RideCodec.writeAll(file1, List.of(ride1, ride3).iterator());
+        RideCodec.writeAll(file2, List.of(ride2, ride4).iterator());
+
+        // merge both files
+        List<Ride> merged = new ArrayList<>();
+        try (LoserTreeMerger merger = LoserTreeMerger.fromFiles(List.of(file1, file2))) {
+            merger.forEachRemaining(merged::add);
+        }
+        Files.deleteIfExists(file1);
+        Files.deleteIfExists(file2);
+
+        // check the rides were merged in order and read back with the same fields
+        assertEquals(4, merged.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(defaultRides[i].id, merged.get(i).id);
+            assertEquals(0, defaultRides[i].compareTo(merged.get(i)));
+            assertEquals(defaultRides[i].toString(), merged.get(i).toString());
+        }
+    }
+
+    /**
+     * Tests to ensure that the byte count returned by RideCodec.write(DataOutput, Ride) matches what writeUTF actually wrote
+     */
+    @Test
+    @DisplayName("Test RideCodec.write(DataOutput, Ride): Write names with NUL and emoji, check byte count")
+    public void testRideCodecWriteBytes() throws Exception {
+        // writes a ride whose passenger names use every width of modified UTF-8
+        Ride ride = new Ride(1, new Time(0), new String[] {"A\u0000B", "\u00e9\u4e2d", "\ud83d\ude95 taxi"}, 1, 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int count = RideCodec.write(new DataOutputStream(bytes), ride);
+
+        // check the count matches the bytes written and the ride reads back the same
+        assertEquals(bytes.size(), count);
+        Ride read = RideCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertArrayEquals(Arrays.copyOf(ride.passengers, 3), Arrays.copyOf(read.passengers, 3));
+    }
+
+// Test section: setLazyDeletion(boolean)
+
+    /**
+     * Tests to ensure that in lazy deletion mode remove(Ride) leaves the ride in place but peek() and poll() skip it
+     */
+    @Test
+    @DisplayName("Test setLazyDeletion(boolean): Remove the root lazily, check peek skips it")
+    public void testLazyDeletionPeek() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+        heap.setLazyDeletion(true);
+        heap.setCompactionRatio(1);
+
+        // lazily remove the root ride
+        boolean isRemoved = heap.remove(ride1);
+
+        // check the ride is tombstoned rather than removed
+        assertTrue(isRemoved);
+        assertEquals(1, heap.getTombstoneCount());
+        assertEquals(3, heap.size());
+        assertFalse(heap.hasRide(ride1));
+        assertFalse(heap.remove(ride1));
+
+        // check peek and poll skip the tombstoned ride
+        assertSame(ride2, heap.peek());
+        assertEquals(0, heap.getTombstoneCount());
+        assertSame(ride2, heap.poll());
+    }
+
+    /**
+     * Tests to ensure that the heap is compacted once the tombstone ratio passes the compaction ratio
+     */
+    @Test
+    @DisplayName("Test setLazyDeletion(boolean): Remove past the compaction ratio, check compaction")
+    public void testLazyDeletionCompaction() {
+        // create a heap with 100 rides
+        MinHeap bigHeap = new MinHeap(100);
+        Ride[] bigRides = new Ride[100];
+        for (int i = 0; i < 100; i++) {
+            bigRides[i] = new Ride(i + 1, new Time(i * 60_000L), "Passenger " + i, i, i);
+            bigHeap.insert(bigRides[i]);
+        }
+        bigHeap.setLazyDeletion(true);
+
+        // remove every odd ride, which passes the default compaction ratio of 25%
+        for (int i = 1; i < 100; i += 2)
+            bigHeap.remove(bigRides[i]);
+
+        // check the heap has been compacted at least once and the remaining rides are still in order
+        assertTrue(bigHeap.getMetrics().getCompactionCount() > 0);
+        assertEquals(50, bigHeap.size());
+        assertTrue(bigHeap.getMetrics().getTombstoneRatio() < MinHeap.DEFAULT_COMPACTION_RATIO);
+        for (int i = 0; i < 100; i += 2)
+            assertSame(bigRides[i], bigHeap.poll());
+    }
+
+    /**
+     * Tests to ensure that a lazily removed ride is only counted once by the metrics, even once it reaches the root
+     */
+    @Test
+    @DisplayName("Test setLazyDeletion(boolean): Remove the root lazily, check remove count and isEmpty()")
+    public void testLazyDeletionMetrics() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+        heap.setLazyDeletion(true);
+        heap.setCompactionRatio(1);
+
+        // lazily remove the root, then purge it with a peek
+        heap.remove(ride1);
+        assertSame(ride2, heap.peek());
+        assertEquals(1, heap.getMetrics().getRemoveCount());
+
+        // lazily remove every other ride, check the heap is empty while the tombstones are still in place
+        heap.remove(ride3);
+        heap.remove(ride4);
+        heap.remove(ride2);
+        assertEquals(4, heap.getMetrics().getRemoveCount());
+        assertEquals(0, heap.size());
+        assertTrue(heap.isEmpty());
+
+        // check purging the tombstones does not count them again
+        assertNull(heap.poll());
+        assertEquals(4, heap.getMetrics().getRemoveCount());
+    }
+
+    /**
+     * Tests to ensure that a lazily removed ride can be inserted again and survives a compaction
+     */
+    @Test
+    @DisplayName("Test setLazyDeletion(boolean): Remove, re-insert and compact a ride, check it is kept")
+    public void testLazyDeletionReinsertCompact() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+        heap.setLazyDeletion(true);
+        heap.setCompactionRatio(1);
+
+        // lazily remove a ride, then book the same ride again
+        assertTrue(heap.remove(ride3));
+        assertTrue(heap.insert(ride3));
+        assertEquals(0, heap.getTombstoneCount());
+        assertEquals(4, heap.size());
+
+        // check compacting keeps the ride in the heap and in the ID index
+        heap.compact();
+        assertEquals(4, heap.size());
+        assertTrue(heap.hasRide(ride3));
+        assertTrue(heap.stream().anyMatch(ride -> ride == ride3));
+        assertEquals(1, heap.getMetrics().getRemoveCount());
+    }
+
+    /**
+     * Tests to ensure that a lazily removed root can be inserted again and is still indexed once the heap is purged
+     */
+    @Test
+    @DisplayName("Test setLazyDeletion(boolean): Remove and re-insert the root, check peek and getRide")
+    public void testLazyDeletionReinsertRoot() {
+        // using defaultRides array...
+        heap.insert(defaultRides);
+        heap.setLazyDeletion(true);
+        heap.setCompactionRatio(1);
+
+        // lazily remove the root, then book the same ride again
+        assertTrue(heap.remove(ride1));
+        assertTrue(heap.insert(ride1));
+
+        // check the ride is the root and is still indexed after peek purges the heap
+        assertSame(ride1, heap.peek());
+        assertSame(ride1, heap.getRide(ride1.id));
+        assertTrue(heap.hasRide(ride1));
+        assertEquals(4, heap.size());
+
+        // check every ride still comes out once, in order
+        for (Ride ride : defaultRides)
+            assertSame(ride, heap.poll());
+        assertNull(heap.poll());
+    }
+
+    /**
+     * Tests to ensure that a full heap clears out its tombstones to make room for a new ride
+     */
+    @Test
+    @DisplayName("Test setLazyDeletion(boolean): Insert into a full heap w/tombstones, check true")
+    public void testLazyDeletionFullHeap() {
+        // fill the heap with rides that cannot be pooled
+        for (int i = 1; i < heap.MAX_CAPACITY; i++)
+            heap.insert(new Ride(i, Time.valueOf(String.format("%02d:00:00", i)), "Passenger " + i, i, i));
+
+        // lazily remove a single ride
+        heap.setLazyDeletion(true);
+        heap.remove(heap.rides[heap.next - 1]);
+
+        // check a new ride can take the tombstoned ride's slot
+        assertTrue(heap.insert(new Ride(99, Time.valueOf("23:30:00"), "Passenger 99", 99, 99)));
+        assertEquals(0, heap.getTombstoneCount());
+    }
+
+    /**
+     * Tests to ensure that a removed ride's ID can be booked again
+     */
+    @Test
+    @DisplayName("Test insert(Ride): Insert a ride w/the ID of a removed ride, check true")
+    public void testInsertIdOfRemovedRide() {
+        // insert and remove ride1
+        heap.insert(ride1);
+        heap.remove(ride1);
+
+        // create a new ride w/the same ID as ride1
+        Ride rebooked = new Ride(ride1.id, Time.valueOf("05:00:00"), "Passenger 1", 1, 2);
+
+        // check the new ride can be inserted
+        assertTrue(heap.insert(rebooked));
+    }
+
+// Test class: SeenIdFilter.java
+// Test section: setSeenIdFilter(SeenIdFilter)
+
+    /**
+     * Tests to ensure that a ride whose ID was booked before cannot be inserted again after it has left the heap
+     */
+    @Test
+    @DisplayName("Test setSeenIdFilter(SeenIdFilter): Replay a departed ride, check error")
+    public void testSeenIdFilterReplay() {
+        // using default ride1...
+        heap.setSeenIdFilter(new SeenIdFilter(1 << 20, null));
+        heap.insert(ride1);
+        heap.poll();
+        // clears any output from the setup
+        stream.reset();
+
+        // replay the booking of ride1
+        Ride replayed = new Ride(ride1.id, Time.valueOf("01:00:00"), "Passenger 1", 1, 2);
+        boolean isInserted = heap.insert(replayed);
+
+        // check the replayed booking was rejected
+        assertFalse(isInserted);
+        assertEquals("[MinHeap : insert(Ride r)] Unable to insert ride! Ride ID has already been booked...", getStream());
+    }
+
+    /**
+     * Tests to ensure that dense ID ranges are stored exactly in the bitmap
+     */
+    @Test
+    @DisplayName("Test SeenIdFilter.isSeen(int): Add a dense range of IDs, check exact")
+    public void testSeenIdFilterDense() {
+        // create a filter with room for several pages
+        SeenIdFilter filter = new SeenIdFilter(4 << 20, null);
+
+        // add every even ID in a dense range
+        for (int id = 0; id < 200_000; id += 2)
+            filter.add(id);
+
+        // check every even ID is seen and every odd ID is not
+        for (int id = 0; id < 200_000; id++)
+            assertEquals(id % 2 == 0, filter.isSeen(id));
+
+        assertEquals(100_000, filter.getExactCount());
+        assertEquals(0, filter.getBloomCount());
+        assertTrue(filter.getMemoryUsed() <= 4 << 20);
+    }
+
+    /**
+     * Tests to ensure that IDs which do not fit in the bitmap budget fall back to the Bloom filter and are confirmed
+     */
+    @Test
+    @DisplayName("Test SeenIdFilter.isSeen(int): Add sparse IDs past the budget, check Bloom fallback")
+    public void testSeenIdFilterBloomFallback() {
+        // track the IDs that were really added so the confirm check can be exact
+        Set<Integer> added = new HashSet<>();
+        // create a filter that only has room for a handful of pages
+        SeenIdFilter filter = new SeenIdFilter(256 * 1024, added::contains);
+
+        // add sparse IDs, each in its own page
+        for (int i = 1; i <= 1000; i++) {
+            filter.add(i << 16);
+            added.add(i << 16);
+        }
+
+        // check every added ID is seen and IDs that were never added are not
+        for (int i = 1; i <= 1000; i++) {
+            assertTrue(filter.isSeen(i << 16));
+            assertFalse(filter.isSeen((i << 16) + 1));
+        }
+
+        assertTrue(filter.getBloomCount() > 0);
+        assertTrue(filter.getConfirmCount() >= filter.getBloomCount());
+    }
+
+// Test class: PriorityHeap.java
+// Test section: insert(T) and poll()
+
+    /**
+     * Tests to ensure that a key-ordered heap of rides polls them back in time order
+     */
+    @Test
+    @DisplayName("Test PriorityHeap.poll(): Insert shuffled rides, check time order")
+    public void testPriorityHeapRides() {
+        PriorityHeap<Ride> rides = PriorityHeap.forRides(100);
+        List<Ride> shuffled = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            shuffled.add(new Ride(i + 1, new Time(i * 60_000L), "Passenger", 1, 2));
+
+        Collections.shuffle(shuffled);
+        for (Ride r : shuffled)
+            assertTrue(rides.insert(r));
+
+        // check the heap is full and rejects another ride
+        assertFalse(rides.insert(ride1));
+        assertEquals(100, rides.size());
+        assertEquals(0, rides.peekKey());
+
+        // check the rides come back in time order
+        for (int i = 0; i < 100; i++)
+            assertEquals(i * 60_000L, rides.poll().time.getTime());
+
+        assertTrue(rides.isEmpty());
+        assertNull(rides.poll());
+    }
+
+    /**
+     * Tests to ensure that a comparator-ordered heap works for element types other than rides
+     */
+    @Test
+    @DisplayName("Test PriorityHeap.remove(T): Remove from a comparator heap, check order")
+    public void testPriorityHeapComparator() {
+        PriorityHeap<String> names = new PriorityHeap<>(10, String::compareTo);
+        for (String name : new String[] {"dave", "alice", "erin", "carol", "bob"})
+            names.insert(name);
+
+        // remove a middle element, then check the rest come back in order
+        assertEquals("alice", names.poll());
+        assertTrue(names.remove("dave"));
+        assertFalse(names.remove("zed"));
+        assertEquals("bob", names.poll());
+        assertEquals("carol", names.poll());
+        assertEquals("erin", names.poll());
+        assertThrows(IllegalStateException.class, names::peekKey);
+    }
+
+// Test class: TopKTracker.java
+// Test section: offer(T)
+
+    /**
+     * Tests to ensure that the tracker keeps exactly the K earliest rides from a shuffled stream
+     */
+    @Test
+    @DisplayName("Test TopKTracker.offer(T): Offer shuffled rides, check K earliest kept")
+    public void testTopKTrackerEarliest() {
+        TopKTracker<Ride> earliest = TopKTracker.earliestRides(5);
+        List<Ride> shuffled = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            shuffled.add(new Ride(i + 1, new Time(i * 60_000L), "Passenger", 1, 2));
+
+        Collections.shuffle(shuffled);
+        for (Ride r : shuffled)
+            earliest.offer(r);
+
+        // check only the five earliest rides were kept, earliest first
+        List<Ride> kept = earliest.toSortedList();
+        assertEquals(5, kept.size());
+        for (int i = 0; i < 5; i++)
+            assertEquals(i * 60_000L, kept.get(i).time.getTime());
+
+        // check the worst kept ride gates any new ride
+        assertEquals(4 * 60_000L, earliest.peekWorst().time.getTime());
+        assertFalse(earliest.offer(new Ride(99, new Time(10 * 60_000L), "Passenger", 1, 2)));
+    }
+
+    /**
+     * Tests to ensure that the tracker can keep the largest keys instead
+     */
+    @Test
+    @DisplayName("Test TopKTracker.offer(T): Offer keys, check K largest kept")
+    public void testTopKTrackerLargest() {
+        TopKTracker<Long> largest = new TopKTracker<>(3, Long::longValue, true);
+        for (long key : new long[] {5, Long.MIN_VALUE, 9, 1, Long.MAX_VALUE, 7})
+            largest.offer(key);
+
+        assertEquals(List.of(Long.MAX_VALUE, 9L, 7L), largest.toSortedList());
+        largest.clear();
+        assertEquals(0, largest.size());
+        assertEquals(3, largest.getK());
+    }
+
+// Test class: MinMaxHeap.java
+// Test section: pollMin() and pollMax()
+
+    /**
+     * Tests to ensure that both ends of the heap come back in order while polls from each end are interleaved
+     */
+    @Test
+    @DisplayName("Test MinMaxHeap.pollMin()/pollMax(): Interleave polls, check both ends in order")
+    public void testMinMaxHeapPoll() {
+        MinMaxHeap<Long> keys = new MinMaxHeap<>(200, Long::longValue);
+        List<Long> shuffled = new ArrayList<>();
+        for (long i = 0; i < 200; i++)
+            shuffled.add(i);
+
+        Collections.shuffle(shuffled);
+        for (long key : shuffled)
+            assertTrue(keys.insert(key));
+
+        // take from the bottom and top alternately, they should meet in the middle
+        for (long i = 0; i < 100; i++) {
+            assertEquals(i, keys.peekMin());
+            assertEquals(i, keys.pollMin());
+            assertEquals(199 - i, keys.peekMax());
+            assertEquals(199 - i, keys.pollMax());
+        }
+
+        assertTrue(keys.isEmpty());
+        assertNull(keys.pollMax());
+    }
+
+    /**
+     * Tests to ensure that a full heap evicts its latest ride to make room for an earlier one
+     */
+    @Test
+    @DisplayName("Test MinMaxHeap.offer(T): Offer rides to a full heap, check latest evicted")
+    public void testMinMaxHeapOfferEvictLatest() {
+        MinMaxHeap<Ride> queue = MinMaxHeap.forRides(3);
+        Ride early = new Ride(1, Time.valueOf("08:00:00"), "Passenger 1", 1, 2);
+        Ride middle = new Ride(2, Time.valueOf("09:00:00"), "Passenger 2", 1, 2);
+        Ride late = new Ride(3, Time.valueOf("10:00:00"), "Passenger 3", 1, 2);
+        Ride earlier = new Ride(4, Time.valueOf("07:00:00"), "Passenger 4", 1, 2);
+        Ride later = new Ride(5, Time.valueOf("11:00:00"), "Passenger 5", 1, 2);
+
+        assertNull(queue.offer(late));
+        assertNull(queue.offer(early));
+        assertNull(queue.offer(middle));
+
+        // check an earlier ride evicts the latest, and a later ride is turned away
+        assertSame(late, queue.offer(earlier));
+        assertSame(later, queue.offer(later));
+        assertEquals(1, queue.getEvictionCount());
+        assertSame(earlier, queue.peekMin());
+        assertSame(middle, queue.peekMax());
+    }
+
+// Test class: PersistentHeap.java
+// Test section: insert(T) and poll()
+
+    /**
+     * Tests to ensure that an old version of the heap is unchanged by later inserts and polls
+     */
+    @Test
+    @DisplayName("Test PersistentHeap.poll(): Mutate a new version, check old version unchanged")
+    public void testPersistentHeapVersions() {
+        PersistentHeap<Ride> version = PersistentHeap.forRides();
+        List<Ride> shuffled = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            shuffled.add(new Ride(i + 1, new Time(i * 60_000L), "Passenger", 1, 2));
+
+        Collections.shuffle(shuffled);
+        for (Ride r : shuffled)
+            version = version.insert(r);
+
+        // take a snapshot, then keep mutating
+        PersistentHeap<Ride> snapshot = version;
+        for (int i = 0; i < 50; i++)
+            version = version.poll();
+
+        version = version.insert(ride1);
+
+        // check the snapshot still holds all 100 rides in order
+        assertEquals(100, snapshot.size());
+        List<Ride> sorted = snapshot.toSortedList();
+        for (int i = 0; i < 100; i++)
+            assertEquals(i * 60_000L, sorted.get(i).time.getTime());
+
+        // check the new version only holds the later rides and ride1
+        assertEquals(51, version.size());
+        List<Ride> remaining = version.toSortedList();
+        assertTrue(remaining.remove(ride1));
+        assertEquals(50 * 60_000L, remaining.get(0).time.getTime());
+    }
+
+    /**
+     * Tests to ensure that two versions can be merged without changing either
+     */
+    @Test
+    @DisplayName("Test PersistentHeap.merge(PersistentHeap): Merge two versions, check sorted")
+    public void testPersistentHeapMerge() {
+        PersistentHeap<Long> evens = PersistentHeap.empty(Long::longValue);
+        PersistentHeap<Long> odds = PersistentHeap.empty(Long::longValue);
+        for (long i = 0; i < 20; i += 2) {
+            evens = evens.insert(i);
+            odds = odds.insert(i + 1);
+        }
+
+        PersistentHeap<Long> merged = evens.merge(odds);
+        assertEquals(20, merged.size());
+        assertEquals(0L, merged.peek());
+        assertEquals(10, evens.size());
+        for (long i = 0; i < 20; i++) {
+            assertEquals(i, merged.peek());
+            merged = merged.poll();
+        }
+
+        assertTrue(merged.isEmpty());
+    }
+
+// Test class: ConcurrentMinHeap.java
+// Test section: peek() and hasRide(Ride)
+
+    /**
+     * Tests to ensure that the published minimum tracks inserts and polls
+     */
+    @Test
+    @DisplayName("Test ConcurrentMinHeap.peek(): Insert and poll, check published minimum")
+    public void testConcurrentMinHeapPeek() {
+        ConcurrentMinHeap queue = new ConcurrentMinHeap(10);
+        assertNull(queue.peek());
+
+        // using default rides 1-4...
+        queue.insert(ride3);
+        queue.insert(ride2);
+        assertSame(ride2, queue.peek());
+        queue.insert(ride1);
+        assertSame(ride1, queue.peek());
+        assertTrue(queue.hasRide(ride3));
+
+        assertSame(ride1, queue.poll());
+        assertSame(ride2, queue.peek());
+        assertFalse(queue.hasRide(ride1));
+        assertEquals(2, queue.size());
+    }
+
+    /**
+     * Tests to ensure that concurrent writers and concurrent readers leave the heap consistent
+     */
+    @Test
+    @DisplayName("Test ConcurrentMinHeap.insert(Ride): Insert from many threads, check every ride held")
+    public void testConcurrentMinHeapThreads() throws InterruptedException {
+        ConcurrentMinHeap queue = new ConcurrentMinHeap(4000);
+        List<Ride> inserted = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    Ride ride = HeapBenchmark.newRide();
+                    assertTrue(queue.insert(ride));
+                    inserted.add(ride);
+                    // reads while other threads write
+                    assertNotNull(queue.peek());
+                    assertTrue(queue.hasRide(ride));
+                }
+            });
+
+            writer.start();
+            threads.add(writer);
+        }
+
+        for (Thread thread : threads)
+            thread.join();
+
+        // check every ride is held and they come back in time order
+        assertEquals(4000, queue.size());
+        assertEquals(4000, queue.snapshot().length);
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < 4000; i++) {
+            Ride ride = queue.poll();
+            assertTrue(ride.time.getTime() >= previous);
+            previous = ride.time.getTime();
+        }
+    }
+
+// Test class: MinHeap.java
+// Test section: setBounceRemoval(boolean)
+
+    /**
+     * Tests to ensure that bounce removal polls rides in the same order as the classic down heap with fewer comparisons
+     */
+    @Test
+    @DisplayName("Test setBounceRemoval(boolean): Poll with each strategy, check order and comparisons")
+    public void testBounceRemoval() {
+        List<Ride> shuffled = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            shuffled.add(new Ride(i + 1, new Time(i * 60_000L), "Passenger", i, 0));
+
+        Collections.shuffle(shuffled);
+        long[] comparisons = new long[2];
+        for (int strategy = 0; strategy < 2; strategy++) {
+            MinHeap rides = new MinHeap(500);
+            rides.setBounceRemoval(strategy == 1);
+            for (Ride r : shuffled)
+                rides.insert(r);
+
+            // removes a ride from the middle of the heap as well as polling
+            Ride removed = shuffled.get(250);
+            assertTrue(rides.remove(removed));
+            rides.getMetrics().reset();
+
+            // check the remaining rides come back in time order
+            long previous = Long.MIN_VALUE;
+            Ride ride;
+            while ((ride = rides.poll()) != null) {
+                assertNotSame(removed, ride);
+                assertTrue(ride.time.getTime() > previous);
+                previous = ride.time.getTime();
+            }
+
+            comparisons[strategy] = rides.getMetrics().getComparisonCount();
+        }
+
+        // check bounce removal needed fewer comparisons
+        assertTrue(comparisons[1] < comparisons[0]);
+    }
+
+// Test class: BHeap.java
+// Test section: insert(long) and poll()
+
+    /**
+     * Tests to ensure that every block layout polls keys back in sorted order, including across block boundaries
+     */
+    @Test
+    @DisplayName("Test BHeap.poll(): Insert random keys into each layout, check sorted order")
+    public void testBHeapLayouts() {
+        long[] keys = new Random(7).longs(5000, 0, 1000).toArray();
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+
+        for (int blockLevels : new int[] {0, 1, BHeap.CACHE_LINE_LEVELS, BHeap.PAGE_LEVELS}) {
+            BHeap bHeap = new BHeap(keys.length, blockLevels);
+            for (long key : keys)
+                assertTrue(bHeap.insert(key));
+
+            // check the heap is full and rejects another key
+            assertFalse(bHeap.insert(0));
+            assertEquals(sorted[0], bHeap.peek());
+            for (long key : sorted)
+                assertEquals(key, bHeap.poll());
+
+            assertTrue(bHeap.isEmpty());
+            assertThrows(IllegalStateException.class, bHeap::poll);
+        }
+    }
+
+// Test class: ExternalRideSorter.java
+// Test section: sort(Path, Path)
+
+    /**
+     * Tests to ensure that a ride file larger than the memory budget is sorted through several runs and merge passes
+     */
+    @Test
+    @DisplayName("Test ExternalRideSorter.sort(Path, Path): Sort a file in many runs, check order and report")
+    public void testExternalRideSorter() throws Exception {
+        Path dir = Files.createTempDirectory("rides-sort");
+        Path input = dir.resolve("input.bin");
+        Path output = dir.resolve("output.bin");
+
+        // writes 1000 shuffled rides, with pairs sharing a time to check equal times keep their order
+        List<Ride> shuffled = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            shuffled.add(new Ride(i + 1, new Time((i / 2) * 60_000L), "Passenger " + i, i, 0));
+
+        Collections.shuffle(shuffled);
+        long inputBytes = RideCodec.writeAll(input, shuffled.iterator());
+
+        // holds 100 rides at a time and merges 4 runs at once, so 10 runs need 2 merge passes
+        ExternalRideSorter.Result result = new ExternalRideSorter(100, 4, dir).sort(input, output);
+        assertEquals(10, result.getRunCount());
+        assertEquals(2, result.getMergePasses());
+        assertEquals(inputBytes, Files.size(output));
+        assertTrue(result.getBytesWritten() >= inputBytes * 2);
+        assertTrue(result.getBytesRead() >= inputBytes * 2);
+
+        // check the output is in time order and equal times are in input order
+        List<Ride> sorted = new ArrayList<>();
+        try (RideCodec.Reader reader = RideCodec.open(output)) {
+            reader.forEachRemaining(sorted::add);
+        }
+
+        assertEquals(1000, sorted.size());
+        for (int i = 1; i < sorted.size(); i++) {
+            Ride previous = sorted.get(i - 1);
+            Ride ride = sorted.get(i);
+            assertTrue(previous.time.getTime() <= ride.time.getTime());
+            if (previous.time.getTime() == ride.time.getTime())
+                assertTrue(indexOfId(shuffled, previous.id) < indexOfId(shuffled, ride.id));
+        }
+
+        // check only the input and output are left behind
+        Files.delete(input);
+        Files.delete(output);
+        try (Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.count());
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests to ensure that a merge pass that fails leaves none of its runs behind in the temp directory
+     */
+    @Test
+    @DisplayName("Test ExternalRideSorter.sort(Iterator, Path): Fail a merge pass, check no runs left behind")
+    public void testExternalRideSorterFailedPass() throws Exception {
+        Path dir = Files.createTempDirectory("rides-sort");
+        List<Ride> rides = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            rides.add(new Ride(i + 1, new Time(i * 60_000L), "Passenger " + i, i, 0));
+
+        // deletes every spilled run once the input runs out, so the first merge pass cannot open them
+        Iterator<Ride> source = rides.iterator();
+        Iterator<Ride> input = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (source.hasNext())
+                    return true;
+
+                try (Stream<Path> runs = Files.list(dir)) {
+                    runs.forEach(run -> run.toFile().delete());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+
+                return false;
+            }
+
+            @Override
+            public Ride next() {
+                return source.next();
+            }
+        };
+
+        // check the sort fails and the run the failed pass created has been deleted
+        Path output = Files.createTempFile("rides-sorted", ".bin");
+        assertThrows(Exception.class, () -> new ExternalRideSorter(100, 4, dir).sort(input, output));
+        try (Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.count());
+        }
+        Files.delete(dir);
+        Files.delete(output);
+    }
+
+// Test class: HybridRideQueue.java
+// Test section: insert(Ride) and poll()
+
+    /**
+     * Tests to ensure that a queue much larger than its memory budget still polls every ride in time order
+     */
+    @Test
+    @DisplayName("Test HybridRideQueue.poll(): Insert past the memory budget, check order and spilling")
+    public void testHybridRideQueue() throws Exception {
+        Path dir = Files.createTempDirectory("rides-spill");
+        List<Ride> shuffled = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            shuffled.add(new Ride(i + 1, new Time(i * 60_000L), "Passenger " + i, i, 0));
+
+        Collections.shuffle(shuffled);
+        // holds 8 rides in memory with a 10 minute near-term window
+        try (HybridRideQueue queue = new HybridRideQueue(8, 10 * 60_000L, dir)) {
+            for (Ride r : shuffled.subList(0, 100))
+                assertTrue(queue.insert(r));
+
+            // check most rides were spilled to segment files
+            assertEquals(100, queue.size());
+            assertTrue(queue.getDiskSize() > 0);
+            assertTrue(queue.getSegmentCount() > 0);
+
+            // polls half the rides, then books the rest while the clock is running
+            long previous = Long.MIN_VALUE;
+            for (int i = 0; i < 50; i++) {
+                Ride ride = queue.poll();
+                assertTrue(ride.time.getTime() >= previous);
+                previous = ride.time.getTime();
+            }
+
+            for (Ride r : shuffled.subList(100, 200))
+                queue.insert(r);
+
+            // check every remaining ride comes back in time order
+            previous = Long.MIN_VALUE;
+            int polled = 0;
+            Ride ride;
+            while ((ride = queue.poll()) != null) {
+                assertTrue(ride.time.getTime() >= previous);
+                previous = ride.time.getTime();
+                polled++;
+            }
+
+            assertEquals(150, polled);
+            assertTrue(queue.getRefillCount() > 0);
+            assertEquals(0, queue.getDiskSize());
+        }
+
+        // check every segment file was deleted
+        try (Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.count());
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests to ensure that a steady stream of spilled rides is merged into a bounded number of segments
+     */
+    @Test
+    @DisplayName("Test HybridRideQueue.insert(Ride): Spill many segments, check they are merged")
+    public void testHybridRideQueueMerge() throws Exception {
+        Path dir = Files.createTempDirectory("rides-spill");
+        List<Ride> shuffled = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            shuffled.add(new Ride(i + 1, new Time(i * 60_000L), "Passenger " + i, i, 0));
+
+        Collections.shuffle(shuffled, new Random(1));
+        // a budget of 8 rides allows 2 open segments, each holding 2 spilled rides
+        try (HybridRideQueue queue = new HybridRideQueue(8, 10 * 60_000L, dir)) {
+            for (Ride r : shuffled) {
+                assertTrue(queue.insert(r));
+                assertTrue(queue.getSegmentCount() <= 2);
+            }
+
+            // check the segments were merged and every ride still comes back in time order
+            assertTrue(queue.getMergeCount() > 0);
+            for (int i = 0; i < 500; i++)
+                assertEquals(i + 1, queue.poll().id);
+
+            assertNull(queue.poll());
+        }
+
+        try (Stream<Path> left = Files.list(dir)) {
+            assertEquals(0, left.count());
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Tests to ensure that a spilled ride that cannot go back into memory waits at the head of the disk tier
+     */
+    @Test
+    @DisplayName("Test HybridRideQueue.poll(): Refill a ride whose ID is held in memory, check it is retried")
+    public void testHybridRideQueueRefillRejected() throws Exception {
+        Path dir = Files.createTempDirectory("rides-spill");
+        try (HybridRideQueue queue = new HybridRideQueue(8, 10 * 60_000L, dir)) {
+            // starts the clock, then books a far-future ride that shares its ID with a near-term ride in memory
+            queue.insert(new Ride(1, new Time(0), "Passenger A", 1, 0));
+            assertEquals(1, queue.poll().id);
+            queue.insert(new Ride(2, new Time(6 * 60_000L), "Passenger B", 2, 0));
+            queue.insert(new Ride(3, new Time(8 * 60_000L), "Passenger C", 3, 0));
+            queue.insert(new Ride(3, new Time(15 * 60_000L), "Passenger D", 4, 0));
+            queue.insert(new Ride(5, new Time(16 * 60_000L), "Passenger E", 5, 0));
+            assertEquals(2, queue.getSpillCount());
+
+            // the clock reaches the spilled rides while ride 3 is still in memory, so the refill waits
+            assertEquals(2, queue.poll().id);
+            assertEquals(0, queue.getRefillCount());
+
+            // check both spilled rides are refilled once ride 3 leaves, without being spilled again
+            assertEquals(3, queue.poll().id);
+            assertEquals(2, queue.getRefillCount());
+            assertEquals(2, queue.getSpillCount());
+            assertEquals("Passenger D", queue.poll().passengers[0]);
+            assertEquals(5, queue.poll().id);
+            assertNull(queue.poll());
+        }
+
+        Files.delete(dir);
+    }
+
+// Test class: HeapServer.java
+// Test section: HeapClient
+
+    /**
+     * Tests to ensure that a client can insert, peek, remove and drain rides on a server heap over loopback TCP
+     */
+    @Test
+    @DisplayName("Test HeapServer: Call each operation over loopback, check results")
+    public void testHeapServerLoopback() throws Exception {
+        try (HeapServer server = HeapServer.start(new MinHeap(100), HeapServer.loopback(0));
+             HeapClient client = new HeapClient(server.getAddress())) {
+            assertNull(client.peek());
+
+            // using default rides 1-4...
+            assertTrue(client.insert(ride3));
+            assertTrue(client.insert(ride1));
+            assertTrue(client.insert(ride2));
+            assertFalse(client.insert(ride1));
+
+            // check the rides arrive with every field intact
+            Ride top = client.peek();
+            assertEquals(ride1.id, top.id);
+            assertEquals(ride1.time, top.time);
+            assertEquals(ride1.toString(), top.toString());
+
+            assertTrue(client.remove(ride2.id));
+            assertFalse(client.remove(ride2.id));
+
+            List<Ride> drained = client.drain(10);
+            assertEquals(List.of(ride1.id, ride3.id), drained.stream().map(ride -> ride.id).collect(Collectors.toList()));
+            assertTrue(client.drain(10).isEmpty());
+        }
+    }
+
+    /**
+     * Tests to ensure that pipelined requests from several clients over a Unix domain socket are all answered in order
+     */
+    @Test
+    @DisplayName("Test HeapServer: Pipeline requests from two clients over a Unix socket, check responses")
+    public void testHeapServerPipelining() throws Exception {
+        Path socket = Files.createTempDirectory("heap-server").resolve("heap.sock");
+        try (HeapServer server = HeapServer.start(new MinHeap(2000), HeapServer.unixDomain(socket));
+             HeapClient client1 = new HeapClient(server.getAddress());
+             HeapClient client2 = new HeapClient(server.getAddress())) {
+
+            // sends every insert before reading any response
+            List<Integer> requestIds = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                HeapClient client = i % 2 == 0 ? client1 : client2;
+                requestIds.add(client.sendInsert(new Ride(i + 1, new Time((999 - i) * 60_000L), "Passenger " + i, i, 0)));
+            }
+
+            client1.flush();
+            client2.flush();
+
+            // check every response arrives in the order its client sent it
+            for (int i = 0; i < 1000; i++) {
+                HeapClient.Response response = (i % 2 == 0 ? client1 : client2).receive();
+                assertEquals(requestIds.get(i), response.requestId);
+                assertEquals(HeapServer.STATUS_OK, response.status);
+            }
+
+            // check a large drain comes back in time order
+            List<Ride> drained = client2.drain(1000);
+            assertEquals(1000, drained.size());
+            for (int i = 0; i < 1000; i++)
+                assertEquals(i * 60_000L, drained.get(i).time.getTime());
+        }
+
+        // check the socket file was cleaned up
+        assertFalse(Files.exists(socket));
+        Files.delete(socket.getParent());
+    }
+
+    /**
+     * Tests to ensure that a heap that throws while handling a request answers an error and keeps serving
+     */
+    @Test
+    @DisplayName("Test HeapServer: Throw from the heap, check error status and the next request")
+    public void testHeapServerHeapFailure() throws Exception {
+        MinHeap failing = new MinHeap(10) {
+            @Override
+            public boolean insert(Ride r) {
+                if (r.id == ride2.id)
+                    throw new IllegalStateException("Unable to insert ride! Test failure...");
+
+                return super.insert(r);
+            }
+        };
+
+        try (HeapServer server = HeapServer.start(failing, HeapServer.loopback(0));
+             HeapClient client = new HeapClient(server.getAddress())) {
+            client.sendInsert(ride2);
+            client.flush();
+            assertEquals(HeapServer.STATUS_ERROR, client.receive().status);
+
+            // check the event loop survived and still serves the connection
+            assertTrue(client.insert(ride1));
+            assertEquals(ride1.id, client.peek().id);
+        }
+    }
+
+// Test class: HeapReplica.java
+// Test section: catchUp() and promote()
+
+    /**
+     * Tests to ensure that a replica tailing the mutation log ends up with the same rides in the same order as the primary
+     */
+    @Test
+    @DisplayName("Test HeapReplica.catchUp(): Apply a logged heap, check rides, lag and a partial record")
+    public void testHeapReplicaCatchUp() throws Exception {
+        Path log = Files.createTempFile("heap-mutations", ".log");
+        MinHeap heap = new MinHeap(100);
+        try (MutationLog primary = new MutationLog(heap, log);
+             HeapReplica replica = new HeapReplica(log, 100)) {
+            // inserts rides that pool, then removes and polls some of them
+            Ride[] rides = new Ride[20];
+            for (int i = 0; i < rides.length; i++) {
+                rides[i] = new Ride(i + 1, new Time((i % 10) * 3_600_000L), "Passenger " + i, i % 10, 0);
+                primary.insert(rides[i]);
+            }
+
+            primary.remove(rides[3]);
+            primary.poll();
+            primary.poll();
+
+            // check the replica applies every logged mutation and ends up with the same rides in the same order
+            assertEquals(primary.getRecordCount(), replica.catchUp());
+            assertEquals(0, replica.getLagBytes());
+            assertEquals(0, replica.getLagMillis());
+            assertEquals(Arrays.toString(heap.toSortedArray()), Arrays.toString(replica.getHeap().toSortedArray()));
+
+            // check a record that is only partly written is left for the next check
+            Files.write(log, new byte[] {0, 0}, StandardOpenOption.APPEND);
+            assertEquals(0, replica.catchUp());
+            assertEquals(2, replica.getLagBytes());
+        }
+
+        Files.delete(log);
+    }
+
+    /**
+     * Tests to ensure that a replica tailing on its own thread can be promoted and carry on as the primary
+     */
+    @Test
+    @DisplayName("Test HeapReplica.promote(): Tail a busy primary, promote, check rides and next poll")
+    public void testHeapReplicaPromote() throws Exception {
+        Path log = Files.createTempFile("heap-mutations", ".log");
+        MutationLog primary = new MutationLog(new MinHeap(5000), log);
+        HeapReplica replica = new HeapReplica(log, 5000);
+        replica.start(1);
+
+        for (int i = 0; i < 3000; i++) {
+            primary.insert(new Ride(i + 1, new Time(i * 60_000L), "Passenger " + i, i, 0));
+            if (i % 3 == 0)
+                primary.poll();
+        }
+
+        // check the promoted replica holds exactly the primary's rides and can carry on as the primary
+        primary.close();
+        MinHeap promoted = replica.promote();
+        assertEquals(4000, replica.getAppliedCount());
+        assertEquals(primary.size(), promoted.size());
+        assertEquals(primary.peek().id, promoted.peek().id);
+        try (MutationLog next = new MutationLog(promoted, log)) {
+            assertEquals(1001, next.poll().id);
+        }
+
+        Files.delete(log);
+    }
+
+// Test class: LatencyHistogram.java
+// Test section: getValueAtPercentile(double)
+
+    /**
+     * Tests to ensure that merged histogram percentiles stay within 1% of the exact value and memory never grows
+     */
+    @Test
+    @DisplayName("Test LatencyHistogram.getValueAtPercentile(double): Merge two histograms, check percentiles")
+    public void testLatencyHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram other = new LatencyHistogram();
+        long memory = histogram.getMemoryUsed();
+
+        // records 1us to 1000us on one histogram and 1000 outliers of 1 second on the other
+        for (int i = 1; i <= 99_000; i++)
+            histogram.record((i % 1000 + 1) * 1000L);
+        for (int i = 0; i < 1000; i++)
+            other.record(1_000_000_000L);
+
+        histogram.add(other);
+
+        // check the merged percentiles are each within 1% of the exact value
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(505_000, histogram.getValueAtPercentile(50), 5_050);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(98.9), 10_000);
+        assertEquals(1_000_000_000, histogram.getValueAtPercentile(99.9), 10_000_000);
+        assertEquals(1000, histogram.getMin());
+        assertEquals(1_000_000_000, histogram.getMax());
+
+        // check small values are exact and the memory used never grows
+        histogram.reset();
+        histogram.record(37);
+        assertEquals(37, histogram.getValueAtPercentile(100));
+        assertEquals(memory, histogram.getMemoryUsed());
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+
+// Test class: MinHeap.java
+// Test section: setLatencyRecording(boolean)
+
+    /**
+     * Tests to ensure that every timed operation is recorded, including operations on other threads
+     */
+    @Test
+    @DisplayName("Test setLatencyRecording(boolean): Time each operation, check counts and dump")
+    public void testMinHeapLatencyRecording() throws InterruptedException {
+        MinHeap heap = new MinHeap(100);
+        heap.insert(new Ride(1, Time.valueOf("10:00:00"), "Passenger 1", 1, 0));
+        assertNull(heap.getLatencies());
+
+        heap.setLatencyRecording(true);
+        heap.insert(new Ride(2, Time.valueOf("11:00:00"), "Passenger 2", 2, 0));
+        heap.remove(heap.peek());
+
+        // check operations on another thread are merged in
+        Thread thread = new Thread(() -> heap.peek());
+        thread.start();
+        thread.join();
+        heap.sort();
+
+        LatencyRecorder latencies = heap.getLatencies();
+        assertEquals(1, latencies.getHistogram(LatencyRecorder.Op.INSERT).getCount());
+        assertEquals(1, latencies.getHistogram(LatencyRecorder.Op.OPTIMIZE).getCount());
+        assertEquals(1, latencies.getHistogram(LatencyRecorder.Op.REMOVE).getCount());
+        assertEquals(2, latencies.getHistogram(LatencyRecorder.Op.PEEK).getCount());
+        assertEquals(1, latencies.getHistogram(LatencyRecorder.Op.SORT).getCount());
+
+        // check the dump lists every recorded operation
+        latencies.dump(System.out);
+        String dump = getStream();
+        for (LatencyRecorder.Op op : LatencyRecorder.Op.values())
+            assertTrue(dump.contains(op.name()));
+
+        heap.setLatencyRecording(false);
+        assertNull(heap.getLatencies());
+    }
+
+// Test class: RideWorkload.java
+// Test section: drive(MinHeap, long, int)
+
+    /**
+     * Tests to ensure that a seeded workload is repeatable and every booking it drives is accounted for
+     */
+    @Test
+    @DisplayName("Test RideWorkload.drive(MinHeap, long, int): Drive 3000 bookings, check report")
+    public void testRideWorkloadDrive() {
+        // check the same seed always gives the same stream of rides
+        RideWorkload first = new RideWorkload(7);
+        RideWorkload second = new RideWorkload(7);
+        for (int i = 0; i < 100; i++)
+            assertEquals(first.nextRide().toString(), second.nextRide().toString());
+
+        RideWorkload workload = new RideWorkload(42);
+        workload.setArrivalRate(2);
+        MinHeap heap = new MinHeap(5000);
+        RideWorkload.Report report = workload.drive(heap, 60_000, 3000);
+
+        // check every booking is accounted for as held, pooled, rejected, cancelled or dispatched
+        assertEquals(3000, report.getBookings());
+        assertTrue(report.getPooled() > 0 && report.getCancellations() > 0 && report.getReschedules() > 0 && report.getDispatches() > 0);
+        assertEquals(heap.size(), report.getHeapSize());
+        assertEquals(report.getBookings() - report.getPooled() - report.getRejected() - report.getCancellations() - report.getDispatches(), heap.size());
+
+        // check the heap's latencies were recorded for the drive
+        assertEquals(3000 + report.getReschedules(), report.getLatencies().getHistogram(LatencyRecorder.Op.INSERT).getCount());
+        assertTrue(report.getThroughput() > 0);
+        assertThrows(IllegalArgumentException.class, () -> workload.setCancelRate(1.5));
+    }
+
+// Test class: TraceReplayer.java
+// Test section: replay(MinHeap, double, long)
+
+    /**
+     * Tests to ensure that a recorded trace is replayed exactly, at full speed and at its original timing
+     */
+    @Test
+    @DisplayName("Test TraceReplayer.replay(MinHeap, double, long): Replay a trace, check heap and intervals")
+    public void testTraceReplayer() throws Exception {
+        // records a trace with a pause in the middle, like a quiet spell in production
+        Path trace = Files.createTempFile("heap-trace", ".log");
+        MinHeap recorded = new MinHeap(500);
+        try (MutationLog primary = new MutationLog(recorded, trace)) {
+            for (int i = 0; i < 300; i++) {
+                primary.insert(new Ride(i + 1, new Time((i % 50) * 300_000L), "Passenger " + i, i % 7, 0));
+                if (i == 150)
+                    Thread.sleep(60);
+                if (i % 10 == 0)
+                    primary.remove(recorded.getRide(i / 2 + 1));
+                if (i % 4 == 0)
+                    primary.poll();
+            }
+        }
+
+        // check a replay as fast as possible rebuilds the recorded heap exactly
+        TraceReplayer replayer = new TraceReplayer(trace);
+        MinHeap replayed = new MinHeap(500);
+        TraceReplayer.Report fast = replayer.replay(replayed, 0, 1000);
+        assertEquals(0, fast.getMissed());
+        assertFalse(fast.isTruncated());
+        assertEquals(Arrays.toString(recorded.toSortedArray()), Arrays.toString(replayed.toSortedArray()));
+
+        // check a replay at the original timing keeps the pause, and every operation lands in an interval
+        TraceReplayer.Report timed = replayer.replay(new MinHeap(500), 1, 20);
+        assertEquals(fast.getOperations(), timed.getOperations());
+        assertTrue(timed.getIntervals().size() >= 3);
+        assertEquals(timed.getOperations(), timed.getIntervals().stream().mapToLong(TraceReplayer.Interval::getOperations).sum());
+        assertEquals(recorded.size(), timed.getIntervals().get(timed.getIntervals().size() - 1).getDepth());
+        assertTrue(timed.getIntervals().stream().anyMatch(interval -> interval.getOperations() == 0));
+
+        // check a record cut short at the end of the trace ends the replay
+        Files.write(trace, new byte[] {0, 0, 0, 20, 1}, StandardOpenOption.APPEND);
+        assertTrue(replayer.replay(new MinHeap(500), 0, 1000).isTruncated());
+        assertThrows(IllegalArgumentException.class, () -> replayer.replay(new MinHeap(500), -1, 1000));
+        Files.delete(trace);
+    }
+
+// Test class: HeapRegressionGate.java
+// Test section: checkPollOrder(int, int, long, boolean)
+
+    /**
+     * Tests to ensure that the heap polls in the same order as java.util.PriorityQueue for the same random operations
+     */
+    @Test
+    @DisplayName("Test HeapRegressionGate.checkPollOrder(int, int, long, boolean): Run random operations, check no mismatch")
+    public void testHeapRegressionGate() {
+        // check the heap polls in the same order as the JDK baseline, with the pooling scan running and with pooling disabled
+        // (the throughput ratios depend on the machine, so they are gated by running HeapRegressionGate as its own build step)
+        assertNull(HeapRegressionGate.checkPollOrder(500, 5_000, 7, true));
+        assertNull(HeapRegressionGate.checkPollOrder(500, 5_000, 7, false));
+        assertNull(HeapRegressionGate.checkPollOrder(0, 2_000, 11, false));
+    }
+
     /**
      * Reads the console, trims the string of new lines and whitespace and returns the output message as a string
      */
@@ -1853,4 +3708,14 @@ public class MinHeapTest {
         return stream.toString();
     }
 
+    /**
+     * Returns the position of the ride with the passed ID in the passed list
+     */
+    private int indexOfId(List<Ride> rides, int id) {
+        for (int i = 0; i < rides.size(); i++)
+            if (rides.get(i).id == id)
+                return i;
+
+        return -1;
+    }
 }
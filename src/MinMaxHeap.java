@@ -0,0 +1,309 @@
+import java.util.function.ToLongFunction;
+
+/**
+ * Creates a double-ended heap that gives both the smallest and the largest element in O(1), and removes either in O(log n).
+ * Levels alternate between min and max levels: the root is the smallest element, one of its two children is the largest,
+ * and each element is no larger (min level) or no smaller (max level) than everything below it
+ *
+ * @Note: Example instantiation:<br>
+ * MinMaxHeap&lt;Ride&gt; queue = MinMaxHeap.forRides(1000);<br>
+ * Ride turnedAway = queue.offer(ride);<br>
+ * <br>Once the heap is full, offer() evicts the latest element to make room for an earlier one, so a full queue always
+ * holds the earliest rides booked. Like PriorityHeap, keys are extracted once and cached, and index 0 is not used
+ * @param <T> The type of element stored in the heap
+ */
+public class MinMaxHeap<T> {
+    /**
+     * The elements in the heap, stored from index 1 onwards
+     */
+    private final Object[] elements;
+    /**
+     * The cached key of the element in each slot
+     */
+    private final long[] keys;
+    /**
+     * Extracts the key of each element
+     */
+    private final ToLongFunction<? super T> keyExtractor;
+    /**
+     * Points to the next free slot in the heap
+     */
+    private int next = 1;
+    /**
+     * The number of elements evicted to make room for earlier ones
+     */
+    private long evictionCount;
+
+    /**
+     * Constructs a new min-max heap ordered by the key extracted from each element
+     * @param maxElements The maximum number of elements the heap can hold
+     * @param keyExtractor Extracts the key of each element, which is cached for as long as the element is in the heap
+     * @throws IllegalArgumentException if the maximum number of elements is less than 1
+     */
+    public MinMaxHeap(int maxElements, ToLongFunction<? super T> keyExtractor) {
+        if (maxElements < 1 || maxElements == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unable to create heap! Invalid maximum number of elements: " + maxElements);
+
+        elements = new Object[maxElements + 1];
+        keys = new long[maxElements + 1];
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Creates a min-max heap of rides ordered by their scheduled timestamps
+     * @param maxRides The maximum number of rides the heap can hold
+     * @return A new heap that orders rides by time
+     */
+    public static MinMaxHeap<Ride> forRides(int maxRides) {
+        return new MinMaxHeap<>(maxRides, ride -> ride.time.getTime());
+    }
+
+    /**
+     * Adds the passed element to the heap (maintaining heap order)
+     * @param element The element being added
+     * @return A boolean value that is true if the element was added, else returns false if it was null or the heap is full
+     */
+    public boolean insert(T element) {
+        if (element == null || next >= elements.length)
+            return false;
+
+        elements[next] = element;
+        keys[next] = keyExtractor.applyAsLong(element);
+        pushUp(next++);
+        return true;
+    }
+
+    /**
+     * Adds the passed element to the heap, evicting the latest element if the heap is full and the new element is earlier
+     * @param element The element being added
+     * @return The element that was turned away (either the evicted latest element or the passed element itself), or null if
+     * the element fit without evicting anything
+     */
+    public T offer(T element) {
+        if (element == null)
+            return null;
+
+        if (next < elements.length) {
+            insert(element);
+            return null;
+        }
+
+        // only an element strictly earlier than the latest one earns a place
+        if (keyExtractor.applyAsLong(element) >= keys[indexMax()])
+            return element;
+
+        T evicted = pollMax();
+        insert(element);
+        evictionCount++;
+        return evicted;
+    }
+
+    /**
+     * Returns the smallest element in the heap without removing it
+     * @return The smallest element, or null if the heap is empty
+     */
+    public T peekMin() {
+        return next > 1 ? elementAt(1) : null;
+    }
+
+    /**
+     * Returns the largest element in the heap without removing it
+     * @return The largest element, or null if the heap is empty
+     */
+    public T peekMax() {
+        return next > 1 ? elementAt(indexMax()) : null;
+    }
+
+    /**
+     * Removes and returns the smallest element in the heap
+     * @return The smallest element, or null if the heap is empty
+     */
+    public T pollMin() {
+        return next > 1 ? removeAt(1) : null;
+    }
+
+    /**
+     * Removes and returns the largest element in the heap
+     * @return The largest element, or null if the heap is empty
+     */
+    public T pollMax() {
+        return next > 1 ? removeAt(indexMax()) : null;
+    }
+
+    /**
+     * Returns the number of elements in the heap
+     * @return An integer value denoting the number of elements in the heap
+     */
+    public int size() {
+        return next - 1;
+    }
+
+    /**
+     * Checks if the heap contains any elements
+     * @return A boolean value that is true if the heap is empty, else returns false
+     */
+    public boolean isEmpty() {
+        return next == 1;
+    }
+
+    /**
+     * Returns the number of elements evicted by offer() to make room for earlier ones
+     * @return A long value denoting the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the index of the largest element, which is the root or one of its two children
+     * @return The index of the largest element
+     */
+    private int indexMax() {
+        if (next <= 2)
+            return 1;
+        if (next == 3)
+            return 2;
+
+        return keys[3] > keys[2] ? 3 : 2;
+    }
+
+    /**
+     * Removes the element at the passed index (the root or the max index) by moving the last element into its place
+     * @param index The index of the element being removed
+     * @return The element that was removed
+     */
+    private T removeAt(int index) {
+        T removed = elementAt(index);
+        int last = --next;
+
+        elements[index] = elements[last];
+        keys[index] = keys[last];
+        elements[last] = null;
+
+        if (index < last)
+            pushDown(index);
+
+        return removed;
+    }
+
+    /**
+     * Checks if the passed index is on a min level (the root's level is a min level)
+     * @param index The index being checked
+     * @return A boolean value that is true if the index is on a min level, else returns false
+     */
+    private static boolean isMinLevel(int index) {
+        return ((31 - Integer.numberOfLeadingZeros(index)) & 1) == 0;
+    }
+
+    /**
+     * Moves a newly added element up to its place, first settling which kind of level it belongs on
+     * @param index The index of the element being moved up
+     */
+    private void pushUp(int index) {
+        int parent = index >>> 1;
+        if (isMinLevel(index)) {
+            // an element larger than its max-level parent belongs among the max levels
+            if (parent >= 1 && keys[index] > keys[parent]) {
+                swap(index, parent);
+                pushUpGrandparents(parent, false);
+
+            } else {
+                pushUpGrandparents(index, true);
+            }
+
+        } else {
+            // an element smaller than its min-level parent belongs among the min levels
+            if (parent >= 1 && keys[index] < keys[parent]) {
+                swap(index, parent);
+                pushUpGrandparents(parent, true);
+
+            } else {
+                pushUpGrandparents(index, false);
+            }
+        }
+    }
+
+    /**
+     * Moves an element up through its grandparents, which are on the same kind of level as it
+     * @param index The index of the element being moved up
+     * @param isMin True if the element is on a min level, else it is on a max level
+     */
+    private void pushUpGrandparents(int index, boolean isMin) {
+        int grandparent = index >>> 2;
+        while (grandparent >= 1 && (isMin ? keys[index] < keys[grandparent] : keys[index] > keys[grandparent])) {
+            swap(index, grandparent);
+            index = grandparent;
+            grandparent = index >>> 2;
+        }
+    }
+
+    /**
+     * Moves an element down through its children and grandchildren until heap order is restored
+     * @param index The index of the element being moved down
+     */
+    private void pushDown(int index) {
+        boolean isMin = isMinLevel(index);
+        while (index << 1 < next) {
+            // finds the smallest (or largest on a max level) of the children and grandchildren
+            int best = index << 1;
+            if (best + 1 < next && isBetter(best + 1, best, isMin))
+                best++;
+
+            int grandchild = index << 2;
+            for (int candidate = grandchild; candidate < grandchild + 4 && candidate < next; candidate++)
+                if (isBetter(candidate, best, isMin))
+                    best = candidate;
+
+            if (!isBetter(best, index, isMin))
+                return;
+
+            swap(best, index);
+            // a child ends the walk, since its own subtree is already in order
+            if (best >>> 1 == index)
+                return;
+
+            // a grandchild may now be on the wrong side of its parent, which is on the other kind of level
+            int parent = best >>> 1;
+            if (isBetter(parent, best, isMin))
+                swap(best, parent);
+
+            index = best;
+        }
+    }
+
+    /**
+     * Checks if the element at the first index should be nearer the top than the element at the second index
+     * @param index1 The index of the first element
+     * @param index2 The index of the second element
+     * @param isMin True to compare as a min level (smaller is better), else as a max level (larger is better)
+     * @return A boolean value that is true if the first element is better, else returns false
+     */
+    private boolean isBetter(int index1, int index2, boolean isMin) {
+        return isMin ? keys[index1] < keys[index2] : keys[index1] > keys[index2];
+    }
+
+    /**
+     * Swaps the elements (and cached keys) at the two passed indices
+     * @param index1 The index of the first element
+     * @param index2 The index of the second element
+     */
+    private void swap(int index1, int index2) {
+        Object element = elements[index1];
+        elements[index1] = elements[index2];
+        elements[index2] = element;
+
+        long key = keys[index1];
+        keys[index1] = keys[index2];
+        keys[index2] = key;
+    }
+
+    /**
+     * Returns the element at the passed index
+     * @param index The index of the element
+     * @return The element at the index
+     */
+    @SuppressWarnings("unchecked")
+    private T elementAt(int index) {
+        return (T) elements[index];
+    }
+}
@@ -0,0 +1,283 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Wraps the primary's 'MinHeap' and appends every successful mutation (insert, remove, poll) to a log file, so a
+ * 'HeapReplica' in another process can tail the file and keep an identical copy of the heap as a hot standby
+ *
+ * @Note: Example usage:<br>
+ * try (MutationLog primary = new MutationLog(new MinHeap(10000), logFile)) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;primary.insert(ride);<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;Ride next = primary.poll();<br>
+ * }<br>
+ * <br>Each record is: int length (not counting itself), long time written (milliseconds), byte op, then the payload
+ * (a ride in the 'RideCodec' format for INSERT, an int ride ID for REMOVE, nothing for POLL). Each record is handed to
+ * the operating system in a single write as soon as it is made, so a replica sees it straight away. Only successful
+ * mutations are logged, so replaying the log on an identically configured heap reproduces the same state, pooling
+ * included. The heap must already hold the state the log describes (i.e., empty for a new log) and must not be used
+ * directly once it has been wrapped. This class is not thread-safe
+ */
+public class MutationLog implements AutoCloseable {
+    /**
+     * Logs an inserted ride
+     */
+    public static final byte OP_INSERT = 1;
+    /**
+     * Logs a removed ride by its ID
+     */
+    public static final byte OP_REMOVE = 2;
+    /**
+     * Logs a poll of the earliest ride
+     */
+    public static final byte OP_POLL = 3;
+    /**
+     * The bytes at the start of every record that come before the payload: length, time written and op
+     */
+    static final int HEADER_BYTES = Integer.BYTES + Long.BYTES + 1;
+    /**
+     * The heap being logged
+     */
+    private final MinHeap heap;
+    /**
+     * The log file, opened for appending
+     */
+    private final FileChannel channel;
+    /**
+     * Collects the record being built
+     */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    /**
+     * Writes into the record being built
+     */
+    private final DataOutputStream out = new DataOutputStream(record);
+    /**
+     * The number of records written since the log was opened
+     */
+    private long recordCount;
+
+    /**
+     * Opens the passed log file for appending, creating it if it does not exist
+     * @param heap The heap being logged, which must already hold the state the log describes
+     * @param file The log file
+     * @throws IOException if the log file could not be opened
+     */
+    public MutationLog(MinHeap heap, Path file) throws IOException {
+        this.heap = heap;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Adds the passed ride to the heap (maintaining heap order), logging it if it was inserted
+     * @param r The ride object being added to the heap
+     * @return A boolean value that is true if the ride was successfully added to the heap, else returns false
+     * @throws UncheckedIOException if the record could not be written
+     */
+    public boolean insert(Ride r) {
+        if (!heap.insert(r))
+            return false;
+
+        try {
+            RideCodec.write(out, r);
+            append(OP_INSERT);
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes the passed ride from the heap (maintaining heap order), logging it if it was removed
+     * @param r The ride object being removed from the heap
+     * @return A boolean value that is true if the ride was successfully removed from the heap, else returns false
+     * @throws UncheckedIOException if the record could not be written
+     */
+    public boolean remove(Ride r) {
+        if (!heap.remove(r))
+            return false;
+
+        try {
+            out.writeInt(r.id);
+            append(OP_REMOVE);
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes and returns the first ride in the heap (lowest value), logging the poll if a ride was returned
+     * @return The ride that was at the top of the heap, or null if the heap is empty
+     * @throws UncheckedIOException if the record could not be written
+     */
+    public Ride poll() {
+        Ride ride = heap.poll();
+        if (ride == null)
+            return null;
+
+        try {
+            append(OP_POLL);
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return ride;
+    }
+
+    /**
+     * Returns the first ride in the heap (lowest value) without removing it
+     * @return The ride at the top of the heap, or null if the heap is empty
+     */
+    public Ride peek() {
+        return heap.peek();
+    }
+
+    /**
+     * Returns the number of rides in the heap
+     * @return An integer value denoting the number of rides
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Returns the number of records written since the log was opened
+     * @return A long value denoting the number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Forces every record written so far onto the storage device, so they survive a crash of the machine as well as the process
+     * @throws IOException if the log file could not be synced
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Closes the log file, the heap is left as it is
+     * @throws IOException if the log file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the next record from the passed log input (e.g., to replay a log as a trace)
+     * @param in The input the record is read from
+     * @return The record that was read, or null if the end of the input has been reached
+     * @throws EOFException if the record was cut short (e.g., the primary stopped part way through writing it)
+     * @throws IOException if the record could not be read or holds an unknown operation
+     */
+    public static Record read(DataInput in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+
+        } catch (EOFException e) {
+            // a clean end of input falls between two records
+            return null;
+        }
+
+        if (length < HEADER_BYTES - Integer.BYTES)
+            throw new IOException("Invalid log record length: " + length);
+
+        byte[] body = new byte[length];
+        in.readFully(body);
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+        long time = record.readLong();
+        byte op = record.readByte();
+
+        switch (op) {
+            case OP_INSERT:
+                Ride ride = RideCodec.read(record);
+                if (ride == null)
+                    throw new EOFException("Log record was cut short");
+
+                return new Record(time, op, ride, ride.id);
+
+            case OP_REMOVE:
+                return new Record(time, op, null, record.readInt());
+
+            case OP_POLL:
+                return new Record(time, op, null, 0);
+
+            default:
+                throw new IOException("Unknown log operation: " + op);
+        }
+    }
+
+    /**
+     * Frames the payload built so far as a record and writes it to the log file in a single write
+     * @param op The record's operation
+     * @throws IOException if the record could not be written
+     */
+    private void append(byte op) throws IOException {
+        int payloadBytes = record.size();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payloadBytes);
+        buffer.putInt(HEADER_BYTES - Integer.BYTES + payloadBytes);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.put(op);
+        buffer.put(record.toByteArray());
+        record.reset();
+        buffer.flip();
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+
+        recordCount++;
+    }
+
+    /**
+     * A single mutation read back from a log
+     */
+    public static final class Record {
+        /**
+         * The time the primary wrote the record in milliseconds
+         */
+        public final long time;
+        /**
+         * The record's operation, one of the OP constants
+         */
+        public final byte op;
+        /**
+         * The inserted ride for an INSERT, else null
+         */
+        public final Ride ride;
+        /**
+         * The ID of the inserted or removed ride, or 0 for a POLL
+         */
+        public final int rideId;
+
+        /**
+         * Constructs a new record
+         * @param time The time the primary wrote the record in milliseconds
+         * @param op The record's operation
+         * @param ride The inserted ride, or null
+         * @param rideId The ID of the inserted or removed ride, or 0
+         */
+        private Record(long time, byte op, Ride ride, int rideId) {
+            this.time = time;
+            this.op = op;
+            this.ride = ride;
+            this.rideId = rideId;
+        }
+    }
+}
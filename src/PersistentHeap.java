@@ -0,0 +1,218 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Creates an immutable (persistent) minimum heap, where every insert or poll returns a new version of the heap and leaves
+ * the old version untouched. Versions share all unchanged nodes, so a mutation only copies the O(log n) nodes along one
+ * path, and any number of reader threads can hold and walk old versions without locks or copying
+ *
+ * @Note: Example usage:<br>
+ * volatile PersistentHeap&lt;Ride&gt; current = PersistentHeap.forRides();<br>
+ * current = current.insert(ride);&nbsp;&nbsp;// writer publishes a new version<br>
+ * PersistentHeap&lt;Ride&gt; view = current;&nbsp;&nbsp;// reader takes a point-in-time view<br>
+ * <br>The heap is a leftist heap: every node's right path is no longer than its left, so the right path (where merges
+ * happen) is at most log2(n + 1) nodes long. Keys are extracted once on insert and stored in the node
+ * @param <T> The type of element stored in the heap
+ */
+public final class PersistentHeap<T> {
+    /**
+     * The root node of this version, or null if this version is empty
+     */
+    private final Node<T> root;
+    /**
+     * Extracts the key of each element, shared by every version of the heap
+     */
+    private final ToLongFunction<? super T> keyExtractor;
+
+    /**
+     * Constructs a version of the heap around the passed root
+     * @param root The root node of the version, or null if it is empty
+     * @param keyExtractor Extracts the key of each element
+     */
+    private PersistentHeap(Node<T> root, ToLongFunction<? super T> keyExtractor) {
+        this.root = root;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Creates an empty heap ordered by the key extracted from each element
+     * @param keyExtractor Extracts the key of each element
+     * @param <T> The type of element stored in the heap
+     * @return A new empty heap
+     */
+    public static <T> PersistentHeap<T> empty(ToLongFunction<? super T> keyExtractor) {
+        return new PersistentHeap<>(null, keyExtractor);
+    }
+
+    /**
+     * Creates an empty heap of rides ordered by their scheduled timestamps
+     * @return A new empty heap that orders rides by time, earliest first
+     */
+    public static PersistentHeap<Ride> forRides() {
+        return empty(ride -> ride.time.getTime());
+    }
+
+    /**
+     * Returns a new version of the heap that also holds the passed element, leaving this version unchanged
+     * @param element The element being added
+     * @return The new version of the heap, or this version if the element is null
+     */
+    public PersistentHeap<T> insert(T element) {
+        if (element == null)
+            return this;
+
+        Node<T> node = new Node<>(keyExtractor.applyAsLong(element), element, null, null);
+        return new PersistentHeap<>(merge(root, node), keyExtractor);
+    }
+
+    /**
+     * Returns a new version of the heap without its smallest element, leaving this version unchanged
+     * @return The new version of the heap, or this version if it is empty
+     */
+    public PersistentHeap<T> poll() {
+        if (root == null)
+            return this;
+
+        return new PersistentHeap<>(merge(root.left, root.right), keyExtractor);
+    }
+
+    /**
+     * Returns a new version of the heap holding the elements of both this version and the passed version
+     * @param other The version being merged in, which must use the same ordering
+     * @return The new merged version of the heap
+     */
+    public PersistentHeap<T> merge(PersistentHeap<T> other) {
+        return new PersistentHeap<>(merge(root, other.root), keyExtractor);
+    }
+
+    /**
+     * Returns the smallest element in this version of the heap
+     * @return The smallest element, or null if this version is empty
+     */
+    public T peek() {
+        return root == null ? null : root.element;
+    }
+
+    /**
+     * Returns the number of elements in this version of the heap
+     * @return An integer value denoting the number of elements
+     */
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    /**
+     * Checks if this version of the heap holds any elements
+     * @return A boolean value that is true if this version is empty, else returns false
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Returns every element in this version of the heap, smallest first. The version itself is not changed
+     * @return A new list holding the elements in sorted order
+     */
+    public List<T> toSortedList() {
+        List<T> list = new ArrayList<>(size());
+        // walks the version with a small frontier heap of nodes, since every node is no smaller than its parent
+        PriorityHeap<Node<T>> frontier = new PriorityHeap<>(Math.max(1, size()), node -> node.key);
+        if (root != null)
+            frontier.insert(root);
+
+        while (!frontier.isEmpty()) {
+            Node<T> node = frontier.poll();
+            list.add(node.element);
+            frontier.insert(node.left);
+            frontier.insert(node.right);
+        }
+
+        return list;
+    }
+
+    /**
+     * Merges two leftist heaps by copying the nodes along their right paths, every other node is shared
+     * @param a The root of the first heap, or null
+     * @param b The root of the second heap, or null
+     * @param <T> The type of element stored in the heap
+     * @return The root of the merged heap
+     */
+    private static <T> Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+
+        // keeps the smaller root on top
+        if (b.key < a.key) {
+            Node<T> node = a;
+            a = b;
+            b = node;
+        }
+
+        Node<T> merged = merge(a.right, b);
+        // keeps the longer path on the left so the right path stays short
+        if (rank(a.left) >= rank(merged))
+            return new Node<>(a.key, a.element, a.left, merged);
+
+        return new Node<>(a.key, a.element, merged, a.left);
+    }
+
+    /**
+     * Returns the length of the right path of the passed node
+     * @param node The node being checked, or null
+     * @param <T> The type of element stored in the heap
+     * @return The rank of the node, 0 for null
+     */
+    private static <T> int rank(Node<T> node) {
+        return node == null ? 0 : node.rank;
+    }
+
+    /**
+     * An immutable node of a leftist heap
+     * @param <T> The type of element stored in the node
+     */
+    private static final class Node<T> {
+        /**
+         * The cached key of the element
+         */
+        private final long key;
+        /**
+         * The element held by the node
+         */
+        private final T element;
+        /**
+         * The left child, whose rank is at least that of the right child
+         */
+        private final Node<T> left;
+        /**
+         * The right child
+         */
+        private final Node<T> right;
+        /**
+         * The length of the right path from this node
+         */
+        private final int rank;
+        /**
+         * The number of elements in the subtree rooted at this node
+         */
+        private final int size;
+
+        /**
+         * Constructs a new node
+         * @param key The cached key of the element
+         * @param element The element held by the node
+         * @param left The left child, or null
+         * @param right The right child, or null
+         */
+        private Node(long key, T element, Node<T> left, Node<T> right) {
+            this.key = key;
+            this.element = element;
+            this.left = left;
+            this.right = right;
+            this.rank = rank(right) + 1;
+            this.size = 1 + (left == null ? 0 : left.size) + (right == null ? 0 : right.size);
+        }
+    }
+}
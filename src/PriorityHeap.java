@@ -0,0 +1,366 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Creates a generic minimum heap that can order any type of element, either by a primitive long key or by a comparator.
+ * When a key extractor is used, each element's key is extracted once on insert and cached alongside it, so sifting only
+ * compares primitive longs and never calls back into the element (e.g., no compareTo calls on each level)
+ *
+ * @Note: Example instantiation:<br>
+ * PriorityHeap&lt;Ride&gt; rides = PriorityHeap.forRides(1000);<br>
+ * PriorityHeap&lt;Driver&gt; drivers = new PriorityHeap&lt;&gt;(500, driver -> driver.freeAt);<br>
+ * PriorityHeap&lt;Surge&gt; surges = new PriorityHeap&lt;&gt;(500, Comparator.comparing(Surge::getPrice));<br>
+ * <br>Like MinHeap, index 0 is not used and the heap has a fixed maximum number of elements
+ * @param <T> The type of element stored in the heap
+ */
+public class PriorityHeap<T> {
+    /**
+     * The elements in the heap, stored from index 1 onwards
+     */
+    private final Object[] elements;
+    /**
+     * The cached key of the element in each slot, only used when the heap was created with a key extractor
+     */
+    private final long[] keys;
+    /**
+     * Extracts the key of each element, or null if the heap is ordered by a comparator
+     */
+    private final ToLongFunction<? super T> keyExtractor;
+    /**
+     * Orders the elements, or null if the heap is ordered by a key extractor
+     */
+    private final Comparator<? super T> comparator;
+    /**
+     * Points to the next free slot in the heap
+     */
+    private int next = 1;
+    /**
+     * The number of element comparisons performed so far
+     */
+    private long comparisons;
+
+    /**
+     * Constructs a new heap ordered by the primitive key extracted from each element (smallest key first)
+     * @param maxElements The maximum number of elements the heap can hold
+     * @param keyExtractor Extracts the key of each element, which is cached for as long as the element is in the heap
+     * @throws IllegalArgumentException if the maximum number of elements is less than 1
+     */
+    public PriorityHeap(int maxElements, ToLongFunction<? super T> keyExtractor) {
+        this(maxElements, keyExtractor, null);
+    }
+
+    /**
+     * Constructs a new heap ordered by the passed comparator (smallest element first)
+     * @param maxElements The maximum number of elements the heap can hold
+     * @param comparator Orders the elements in the heap
+     * @throws IllegalArgumentException if the maximum number of elements is less than 1
+     */
+    public PriorityHeap(int maxElements, Comparator<? super T> comparator) {
+        this(maxElements, null, comparator);
+    }
+
+    /**
+     * Constructs a new heap ordered by either a key extractor or a comparator
+     * @param maxElements The maximum number of elements the heap can hold
+     * @param keyExtractor Extracts the key of each element, or null to use the comparator
+     * @param comparator Orders the elements in the heap, or null to use the key extractor
+     */
+    private PriorityHeap(int maxElements, ToLongFunction<? super T> keyExtractor, Comparator<? super T> comparator) {
+        if (maxElements < 1 || maxElements == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unable to create heap! Invalid maximum number of elements: " + maxElements);
+
+        if (keyExtractor == null && comparator == null)
+            throw new IllegalArgumentException("Unable to create heap! A key extractor or comparator is required...");
+
+        elements = new Object[maxElements + 1];
+        // keys are only needed when the heap is ordered by key
+        keys = keyExtractor == null ? null : new long[maxElements + 1];
+        this.keyExtractor = keyExtractor;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Creates a heap of rides ordered by their scheduled timestamps
+     * @param maxRides The maximum number of rides the heap can hold
+     * @return A new heap that orders rides by time, earliest first
+     */
+    public static PriorityHeap<Ride> forRides(int maxRides) {
+        return new PriorityHeap<>(maxRides, ride -> ride.time.getTime());
+    }
+
+    /**
+     * Adds the passed element to the heap (maintaining heap order)
+     * @param element The element being added
+     * @return A boolean value that is true if the element was added, else returns false if it was null or the heap is full
+     */
+    public boolean insert(T element) {
+        if (element == null || next >= elements.length)
+            return false;
+
+        // caches the key of the new element so it is only ever extracted once
+        if (keys != null)
+            keys[next] = keyExtractor.applyAsLong(element);
+
+        elements[next] = element;
+        upHeap(next++);
+        return true;
+    }
+
+    /**
+     * Returns the smallest element in the heap without removing it
+     * @return The element at the top of the heap, or null if the heap is empty
+     */
+    public T peek() {
+        return next > 1 ? elementAt(1) : null;
+    }
+
+    /**
+     * Returns the cached key of the smallest element in the heap
+     * @return The key at the top of the heap, or Long.MAX_VALUE if the heap is empty
+     * @throws IllegalStateException if the heap is ordered by a comparator
+     */
+    public long peekKey() {
+        if (keys == null)
+            throw new IllegalStateException("Unable to peek key! Heap is ordered by a comparator...");
+
+        return next > 1 ? keys[1] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Removes and returns the smallest element in the heap
+     * @return The element that was at the top of the heap, or null if the heap is empty
+     */
+    public T poll() {
+        return next > 1 ? removeAt(1) : null;
+    }
+
+    /**
+     * Removes the passed element from the heap (maintaining heap order)
+     * @param element The element being removed, compared by reference
+     * @return A boolean value that is true if the element was found and removed, else returns false
+     */
+    public boolean remove(T element) {
+        if (element == null)
+            return false;
+
+        for (int i = 1; i < next; i++) {
+            if (elements[i] == element) {
+                removeAt(i);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of elements in the heap
+     * @return An integer value denoting the number of elements in the heap
+     */
+    public int size() {
+        return next - 1;
+    }
+
+    /**
+     * Checks if the heap contains any elements
+     * @return A boolean value that is true if the heap is empty, else returns false
+     */
+    public boolean isEmpty() {
+        return next == 1;
+    }
+
+    /**
+     * Returns the maximum number of elements the heap can hold
+     * @return An integer value denoting the capacity of the heap
+     */
+    public int getCapacity() {
+        return elements.length - 1;
+    }
+
+    /**
+     * Removes every element from the heap
+     */
+    public void clear() {
+        for (int i = 1; i < next; i++)
+            elements[i] = null;
+
+        next = 1;
+    }
+
+    /**
+     * Returns a copy of the elements in the heap, in heap (not sorted) order
+     * @return A new list holding every element in the heap
+     */
+    public List<T> toList() {
+        List<T> list = new ArrayList<>(next - 1);
+        for (int i = 1; i < next; i++)
+            list.add(elementAt(i));
+
+        return list;
+    }
+
+    /**
+     * Returns the number of element comparisons performed so far
+     * @return A long value denoting the number of comparisons
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Replaces the smallest element with the passed element in a single sift, which is cheaper than a poll followed by an insert
+     * @param element The element replacing the top of the heap
+     * @return The element that was at the top of the heap, or null if the heap was empty (in which case the element is inserted)
+     */
+    T replaceTop(T element) {
+        if (next == 1) {
+            insert(element);
+            return null;
+        }
+
+        T top = elementAt(1);
+        elements[1] = element;
+        if (keys != null)
+            keys[1] = keyExtractor.applyAsLong(element);
+
+        downHeap(1);
+        return top;
+    }
+
+    /**
+     * Compares the passed element against the smallest element in the heap
+     * @param element The element being compared
+     * @return A negative value if the element is smaller than the top of the heap, zero if they are equal, else a positive value
+     */
+    int compareToTop(T element) {
+        comparisons++;
+        if (keys != null)
+            return Long.compare(keyExtractor.applyAsLong(element), keys[1]);
+
+        return comparator.compare(element, elementAt(1));
+    }
+
+    /**
+     * Removes the element at the passed index by moving the last element into its place and restoring heap order
+     * @param index The index of the element being removed
+     * @return The element that was removed
+     */
+    private T removeAt(int index) {
+        T removed = elementAt(index);
+        int last = --next;
+
+        // moves the last element into the gap, then sifts it whichever way it needs to go
+        elements[index] = elements[last];
+        if (keys != null)
+            keys[index] = keys[last];
+
+        elements[last] = null;
+        if (index < last) {
+            downHeap(index);
+            upHeap(index);
+        }
+
+        return removed;
+    }
+
+    /**
+     * Moves the element at the passed index up until its parent is not larger than it. The element is held aside and
+     * parents are shifted down into the hole, so each level costs one write instead of a full swap
+     * @param index The index of the element being moved up
+     */
+    private void upHeap(int index) {
+        Object element = elements[index];
+        long key = keys == null ? 0 : keys[index];
+
+        while (index > 1) {
+            int parent = index >>> 1;
+            if (!isSmaller(element, key, parent))
+                break;
+
+            // shifts the parent down into the hole
+            elements[index] = elements[parent];
+            if (keys != null)
+                keys[index] = keys[parent];
+
+            index = parent;
+        }
+
+        elements[index] = element;
+        if (keys != null)
+            keys[index] = key;
+    }
+
+    /**
+     * Moves the element at the passed index down until neither child is smaller than it, shifting children up into the hole
+     * @param index The index of the element being moved down
+     */
+    private void downHeap(int index) {
+        Object element = elements[index];
+        long key = keys == null ? 0 : keys[index];
+        int half = (next - 1) >>> 1;
+
+        // only slots up to 'half' have at least one child
+        while (index <= half) {
+            int child = index << 1;
+            int right = child + 1;
+
+            // picks the smaller of the two children
+            if (right < next && isSmaller(elements[right], keys == null ? 0 : keys[right], child))
+                child = right;
+
+            if (!isSmaller(elements[child], keys == null ? 0 : keys[child], element, key))
+                break;
+
+            // shifts the smaller child up into the hole
+            elements[index] = elements[child];
+            if (keys != null)
+                keys[index] = keys[child];
+
+            index = child;
+        }
+
+        elements[index] = element;
+        if (keys != null)
+            keys[index] = key;
+    }
+
+    /**
+     * Checks if the passed element (with its cached key) is smaller than the element at the passed index
+     * @param element The element being compared
+     * @param key The cached key of the element, ignored when ordering by comparator
+     * @param index The index of the element being compared against
+     * @return A boolean value that is true if the passed element is smaller, else returns false
+     */
+    private boolean isSmaller(Object element, long key, int index) {
+        return isSmaller(element, key, elements[index], keys == null ? 0 : keys[index]);
+    }
+
+    /**
+     * Checks if the first element (with its cached key) is smaller than the second element (with its cached key)
+     * @param element1 The first element
+     * @param key1 The cached key of the first element
+     * @param element2 The second element
+     * @param key2 The cached key of the second element
+     * @return A boolean value that is true if the first element is smaller, else returns false
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isSmaller(Object element1, long key1, Object element2, long key2) {
+        comparisons++;
+        if (keys != null)
+            return key1 < key2;
+
+        return comparator.compare((T) element1, (T) element2) < 0;
+    }
+
+    /**
+     * Returns the element at the passed index
+     * @param index The index of the element
+     * @return The element at the index
+     */
+    @SuppressWarnings("unchecked")
+    private T elementAt(int index) {
+        return (T) elements[index];
+    }
+}
@@ -105,7 +105,7 @@ public class Ride implements Comparable<Ride> {
     public int compareTo(Ride ride2) {
         // if one of the rides are invalid, do not proceed
         if (!isValid || !ride2.isValid) {
-            System.out.println("Unable to compare rides! At least one invalid ride was detected...");
+            debug("Unable to compare rides! At least one invalid ride was detected...", "compareTo(Ride)");
             return Integer.MAX_VALUE;
         }
         return time.compareTo(ride2.time);
@@ -0,0 +1,207 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Time;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads and writes 'Ride' objects in a compact binary format, used to store rides in files
+ *
+ * @Note: Each ride is written as:<br>
+ * int id, long time (milliseconds), int startId, int endId, byte passenger count, then each passenger as a UTF string<br>
+ * <br>A ride file is simply one ride after another, with no header, so files can be appended to and concatenated
+ */
+public final class RideCodec {
+    /**
+     * The size of the buffer used when reading or writing a ride file
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Prevents this class from being instantiated, it only holds static helpers
+     */
+    private RideCodec() {}
+
+    /**
+     * Writes the passed ride to the passed output
+     * @param out The output the ride is written to
+     * @param r The ride being written
+     * @return The number of bytes written
+     * @throws IOException if the ride could not be written
+     */
+    public static int write(DataOutput out, Ride r) throws IOException {
+        out.writeInt(r.id);
+        out.writeLong(r.time.getTime());
+        out.writeInt(r.startId);
+        out.writeInt(r.endId);
+        // counts the bytes written so callers can report how much data was written
+        int bytes = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES + 1;
+
+        // counts the passengers first since unused passenger slots are null
+        int count = 0;
+        for (String passenger : r.passengers)
+            if (passenger != null)
+                count++;
+
+        out.writeByte(count);
+        for (String passenger : r.passengers) {
+            if (passenger == null)
+                continue;
+
+            out.writeUTF(passenger);
+            bytes += 2 + getUtfLength(passenger);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Counts the bytes writeUTF uses to encode the passed string, which is modified UTF-8 rather than standard UTF-8
+     * (U+0000 takes 2 bytes, and a supplementary character is written as two 3 byte surrogates rather than 4 bytes)
+     * @param s The string being measured
+     * @return The number of encoded bytes, not counting the 2 byte length prefix
+     */
+    private static int getUtfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F)
+                length += 1;
+            else if (c <= 0x07FF)
+                length += 2;
+            else
+                length += 3;
+        }
+
+        return length;
+    }
+
+    /**
+     * Reads the next ride from the passed input
+     * @param in The input the ride is read from
+     * @return The ride that was read, or null if the end of the input has been reached
+     * @throws IOException if the ride could not be read or was cut short
+     */
+    public static Ride read(DataInput in) throws IOException {
+        int id;
+        try {
+            id = in.readInt();
+
+        } catch (EOFException e) {
+            // a clean end of input falls between two rides
+            return null;
+        }
+
+        Time time = new Time(in.readLong());
+        int startId = in.readInt();
+        int endId = in.readInt();
+        String[] passengers = new String[in.readUnsignedByte()];
+        for (int i = 0; i < passengers.length; i++)
+            passengers[i] = in.readUTF();
+
+        return new Ride(id, time, passengers, startId, endId);
+    }
+
+    /**
+     * Writes every ride from the passed iterator to the passed file, replacing any existing content
+     * @param file The file the rides are written to
+     * @param rides The rides being written
+     * @return The number of bytes written
+     * @throws IOException if the file could not be written
+     */
+    public static long writeAll(Path file, Iterator<Ride> rides) throws IOException {
+        long bytes = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            while (rides.hasNext())
+                bytes += write(out, rides.next());
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Opens the passed ride file for reading, one ride at a time
+     * @param file The ride file being read
+     * @return A reader that iterates over the rides in the file, which must be closed once finished with
+     * @throws IOException if the file could not be opened
+     */
+    public static Reader open(Path file) throws IOException {
+        return open(file, BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the passed ride file for reading, one ride at a time, through a read buffer of the passed size
+     * @param file The ride file being read
+     * @param bufferSize The size of the read buffer in bytes (e.g., smaller when many files are open at once)
+     * @return A reader that iterates over the rides in the file, which must be closed once finished with
+     * @throws IOException if the file could not be opened
+     */
+    public static Reader open(Path file, int bufferSize) throws IOException {
+        return new Reader(new DataInputStream(new BufferedInputStream(Files.newInputStream(file), bufferSize)));
+    }
+
+    /**
+     * Iterates over the rides in a ride file without loading the whole file into memory
+     */
+    public static final class Reader implements Iterator<Ride>, AutoCloseable {
+        /**
+         * The input the rides are read from
+         */
+        private final DataInputStream in;
+        /**
+         * The next ride to be returned, or null once the end of the file has been reached
+         */
+        private Ride next;
+        /**
+         * True once the next ride has been read ahead
+         */
+        private boolean isReadAhead;
+
+        /**
+         * Constructs a new reader over the passed input
+         * @param in The input the rides are read from
+         */
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!isReadAhead) {
+                try {
+                    next = read(in);
+
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                isReadAhead = true;
+            }
+
+            return next != null;
+        }
+
+        @Override
+        public Ride next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            isReadAhead = false;
+            return next;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
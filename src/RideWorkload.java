@@ -0,0 +1,573 @@
+import java.sql.Time;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates a realistic stream of ride bookings for load and soak testing, and drives a 'MinHeap' with it. Bookings arrive
+ * at a configurable rate that bursts during the morning and evening rush hours, routes (startId/endId) are skewed towards
+ * popular locations, a share of bookings are placed close to an earlier booking on the same route so they can be pooled,
+ * and booked rides are cancelled or rescheduled at configurable rates. Rides are dispatched (polled) as the simulated
+ * clock passes their time
+ *
+ * @Note: Example soak test:<br>
+ * RideWorkload workload = new RideWorkload(42);<br>
+ * workload.setArrivalRate(20);<br>
+ * RideWorkload.Report report = workload.drive(new MinHeap(100_000), Duration.ofHours(2).toMillis(), Long.MAX_VALUE);<br>
+ * <br>The simulated clock is independent of the wall clock, so the heap is driven as fast as it can go. The same seed and
+ * settings always give the same stream of rides. This class is not thread-safe
+ */
+public class RideWorkload {
+    /**
+     * The number of milliseconds in a day, the rush hours repeat every simulated day
+     */
+    private static final long DAY = 24 * 3_600_000L;
+    /**
+     * The simulated hours (start inclusive, end exclusive) in which bookings arrive at the rush hour rate
+     */
+    private static final int[][] RUSH_HOURS = {{7, 9}, {17, 19}};
+    /**
+     * The largest gap between a pooling-eligible booking and its partner, kept inside the heap's 10 minute pooling window
+     */
+    private static final long POOLING_GAP = 5 * 60_000L;
+    /**
+     * The number of recent bookings kept as candidates for pooling-eligible pairs
+     */
+    private static final int RECENT_RIDES = 64;
+    /**
+     * The number of bookings between samples of the memory used
+     */
+    private static final int MEMORY_SAMPLE_INTERVAL = 4096;
+    /**
+     * Draws every random choice, seeded so the stream can be repeated
+     */
+    private final SplittableRandom random;
+    /**
+     * The most recent bookings, used to place pooling-eligible pairs
+     */
+    private final Ride[] recent = new Ride[RECENT_RIDES];
+    /**
+     * The rides booked into the driven heap that have not been dispatched, cancelled or pooled
+     */
+    private final List<Ride> live = new ArrayList<>();
+    /**
+     * The position of each live ride in the live list by its ID, so rides can be dropped in O(1)
+     */
+    private final Map<Integer, Integer> liveIndex = new HashMap<>();
+    /**
+     * The average number of bookings per simulated second outside the rush hours
+     */
+    private double arrivalRate = 5;
+    /**
+     * The factor the arrival rate is multiplied by during the rush hours
+     */
+    private double rushHourFactor = 3;
+    /**
+     * The number of distinct locations routes are drawn from
+     */
+    private int locations = 200;
+    /**
+     * The Zipf exponent of location popularity, 0 for every location being equally popular
+     */
+    private double routeSkew = 1.1;
+    /**
+     * The cumulative popularity of each location, rebuilt whenever the locations or the skew change
+     */
+    private double[] popularity;
+    /**
+     * The fraction of bookings placed next to an earlier booking on the same route
+     */
+    private double poolingRate = 0.1;
+    /**
+     * The chance that a booking is followed by the cancellation of a live ride
+     */
+    private double cancelRate = 0.05;
+    /**
+     * The chance that a booking is followed by a live ride being moved to a new time
+     */
+    private double rescheduleRate = 0.05;
+    /**
+     * The average time between a booking and its ride in milliseconds
+     */
+    private long meanLeadTime = 20 * 60_000L;
+    /**
+     * The simulated time of the latest booking in milliseconds, starting at midnight
+     */
+    private long clock;
+    /**
+     * The number of bookings generated so far, used to hand out ride IDs
+     */
+    private long bookings;
+
+    /**
+     * Constructs a new workload with the default settings
+     * @param seed The seed of every random choice, the same seed always gives the same stream of rides
+     */
+    public RideWorkload(long seed) {
+        random = new SplittableRandom(seed);
+        buildPopularity();
+    }
+
+    /**
+     * Sets the average number of bookings per simulated second outside the rush hours
+     * @param ridesPerSecond The arrival rate, greater than 0
+     * @throws IllegalArgumentException if the rate is not greater than 0
+     */
+    public void setArrivalRate(double ridesPerSecond) {
+        if (!(ridesPerSecond > 0))
+            throw new IllegalArgumentException("Unable to set arrival rate! Invalid rate: " + ridesPerSecond);
+
+        arrivalRate = ridesPerSecond;
+    }
+
+    /**
+     * Sets the factor the arrival rate is multiplied by during the morning (07:00 - 09:00) and evening (17:00 - 19:00) rush hours
+     * @param factor The rush hour factor, at least 1
+     * @throws IllegalArgumentException if the factor is less than 1
+     */
+    public void setRushHourFactor(double factor) {
+        if (!(factor >= 1))
+            throw new IllegalArgumentException("Unable to set rush hour factor! Invalid factor: " + factor);
+
+        rushHourFactor = factor;
+    }
+
+    /**
+     * Sets how many locations routes are drawn from and how strongly they are skewed towards the popular ones
+     * @param locations The number of distinct locations, at least 1
+     * @param skew The Zipf exponent, 0 for uniform popularity (around 1 is typical of real cities)
+     * @throws IllegalArgumentException if there are no locations or the skew is negative
+     */
+    public void setRoutes(int locations, double skew) {
+        if (locations < 1)
+            throw new IllegalArgumentException("Unable to set routes! Invalid number of locations: " + locations);
+
+        if (!(skew >= 0))
+            throw new IllegalArgumentException("Unable to set routes! Invalid skew: " + skew);
+
+        this.locations = locations;
+        routeSkew = skew;
+        buildPopularity();
+    }
+
+    /**
+     * Sets the fraction of bookings placed within 5 minutes of an earlier booking on the same route, so they can be pooled
+     * @param rate The pooling rate between 0 and 1
+     * @throws IllegalArgumentException if the rate is not between 0 and 1
+     */
+    public void setPoolingRate(double rate) {
+        poolingRate = checkRate(rate, "pooling");
+    }
+
+    /**
+     * Sets the chance that a booking is followed by the cancellation of a random live ride
+     * @param rate The cancellation rate between 0 and 1
+     * @throws IllegalArgumentException if the rate is not between 0 and 1
+     */
+    public void setCancelRate(double rate) {
+        cancelRate = checkRate(rate, "cancel");
+    }
+
+    /**
+     * Sets the chance that a booking is followed by a random live ride being moved to a new time
+     * @param rate The reschedule rate between 0 and 1
+     * @throws IllegalArgumentException if the rate is not between 0 and 1
+     */
+    public void setRescheduleRate(double rate) {
+        rescheduleRate = checkRate(rate, "reschedule");
+    }
+
+    /**
+     * Sets the average time between a booking and its ride, lead times are drawn from an exponential distribution
+     * @param millis The mean lead time in milliseconds, at least 1
+     * @throws IllegalArgumentException if the lead time is less than 1 millisecond
+     */
+    public void setMeanLeadTime(long millis) {
+        if (millis < 1)
+            throw new IllegalArgumentException("Unable to set lead time! Invalid lead time: " + millis);
+
+        meanLeadTime = millis;
+    }
+
+    /**
+     * Returns the simulated time of the latest booking
+     * @return A long value denoting the simulated clock in milliseconds since the first midnight
+     */
+    public long getClock() {
+        return clock;
+    }
+
+    /**
+     * Generates the next booking, moving the simulated clock on to its arrival
+     * @return A new ride, timed after the simulated clock
+     */
+    public Ride nextRide() {
+        // arrivals follow a Poisson process whose rate rises during the rush hours
+        double rate = isRushHour(clock) ? arrivalRate * rushHourFactor : arrivalRate;
+        clock += Math.max(1, Math.round(-Math.log(1 - random.nextDouble()) / rate * 1000));
+
+        int id = (int) (bookings++ % Integer.MAX_VALUE) + 1;
+        Ride partner = recent[random.nextInt(RECENT_RIDES)];
+        Ride ride;
+        if (partner != null && partner.time.getTime() > clock && random.nextDouble() < poolingRate) {
+            // books the same route close enough to the partner's time to be pooled with it
+            long time = Math.max(clock + 1, partner.time.getTime() + random.nextLong(-POOLING_GAP, POOLING_GAP + 1));
+            ride = newRide(id, time, partner.startId, partner.endId);
+
+        } else {
+            int startId = location();
+            int endId = location();
+            ride = newRide(id, clock + leadTime(), startId, endId);
+        }
+
+        recent[(int) (bookings % RECENT_RIDES)] = ride;
+        return ride;
+    }
+
+    /**
+     * Drives the passed heap with bookings, cancellations, reschedules and dispatches until the time or booking limit is
+     * reached. Latency recording is enabled on the heap so the report can include per-operation percentiles
+     * @param heap The heap being driven, which may already hold rides from an earlier drive
+     * @param durationMillis The wall-clock time to run for in milliseconds
+     * @param maxBookings The maximum number of bookings made, Long.MAX_VALUE for no limit
+     * @return The operations performed, the time taken, the peak memory used and the heap's latencies
+     */
+    public Report drive(MinHeap heap, long durationMillis, long maxBookings) {
+        heap.setLatencyRecording(true);
+        Report report = new Report(heap.getLatencies());
+        Runtime runtime = Runtime.getRuntime();
+        long start = System.nanoTime();
+        long deadline = start + durationMillis * 1_000_000L;
+
+        while (report.bookings < maxBookings && System.nanoTime() < deadline) {
+            Ride ride = nextRide();
+            dispatch(heap, report);
+            book(heap, ride, report);
+            report.bookings++;
+
+            if (!live.isEmpty() && random.nextDouble() < cancelRate) {
+                Ride cancelled = live.get(random.nextInt(live.size()));
+                if (heap.remove(cancelled)) {
+                    drop(cancelled);
+                    report.cancellations++;
+                }
+            }
+
+            if (!live.isEmpty() && random.nextDouble() < rescheduleRate) {
+                Ride moved = live.get(random.nextInt(live.size()));
+                if (heap.remove(moved)) {
+                    drop(moved);
+                    report.reschedules++;
+                    // the rescheduled ride keeps its ID and route, only its time changes
+                    book(heap, newRide(moved.id, clock + leadTime(), moved.startId, moved.endId), report);
+                }
+            }
+
+            if (report.bookings % MEMORY_SAMPLE_INTERVAL == 0)
+                report.peakMemory = Math.max(report.peakMemory, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        report.elapsedNanos = System.nanoTime() - start;
+        report.peakMemory = Math.max(report.peakMemory, runtime.totalMemory() - runtime.freeMemory());
+        report.heapSize = heap.size();
+        return report;
+    }
+
+    /**
+     * Runs a soak test, printing a report every minute
+     * @param args Optionally the number of minutes to run for (default 1) and the heap's capacity (default 100,000)
+     */
+    public static void main(String[] args) {
+        int minutes = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        MinHeap heap = new MinHeap(capacity);
+        RideWorkload workload = new RideWorkload(42);
+
+        for (int minute = 1; minute <= minutes; minute++) {
+            Report report = workload.drive(heap, 60_000, Long.MAX_VALUE);
+            System.out.printf("[%3d min] %s%n", minute, report);
+        }
+
+        heap.getLatencies().dump(System.out);
+    }
+
+    /**
+     * Inserts the passed booking into the heap and tracks it as live if the heap kept it as its own node
+     * @param heap The heap being driven
+     * @param ride The ride being booked
+     * @param report The report the outcome is counted in
+     */
+    private void book(MinHeap heap, Ride ride, Report report) {
+        if (!heap.insert(ride)) {
+            report.rejected++;
+            return;
+        }
+
+        // a pooled ride was merged into another ride, so it never enters the heap itself
+        if (!heap.hasRide(ride)) {
+            report.pooled++;
+            return;
+        }
+
+        liveIndex.put(ride.id, live.size());
+        live.add(ride);
+    }
+
+    /**
+     * Polls every ride whose time the simulated clock has reached
+     * @param heap The heap being driven
+     * @param report The report the dispatches are counted in
+     */
+    private void dispatch(MinHeap heap, Report report) {
+        Ride next;
+        while ((next = heap.peek()) != null && next.time.getTime() <= clock) {
+            drop(heap.poll());
+            report.dispatches++;
+        }
+    }
+
+    /**
+     * Stops tracking the passed ride as live, moving the last live ride into its place
+     * @param ride The ride that left the heap
+     */
+    private void drop(Ride ride) {
+        Integer index = liveIndex.remove(ride.id);
+        if (index == null)
+            return;
+
+        Ride last = live.remove(live.size() - 1);
+        if (index < live.size()) {
+            live.set(index, last);
+            liveIndex.put(last.id, index);
+        }
+    }
+
+    /**
+     * Draws a location, with popular locations drawn more often
+     * @return A location ID, 0 being the most popular
+     */
+    private int location() {
+        double draw = random.nextDouble();
+        int low = 0;
+        int high = locations - 1;
+        // finds the first location whose cumulative popularity passes the draw
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (popularity[mid] < draw)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Draws the time between a booking and its ride
+     * @return A lead time in milliseconds, at least 1
+     */
+    private long leadTime() {
+        return Math.max(1, Math.round(-Math.log(1 - random.nextDouble()) * meanLeadTime));
+    }
+
+    /**
+     * Builds the cumulative Zipf popularity of each location, location k is drawn in proportion to 1 / (k + 1)^skew
+     */
+    private void buildPopularity() {
+        popularity = new double[locations];
+        double total = 0;
+        for (int k = 0; k < locations; k++) {
+            total += 1 / Math.pow(k + 1, routeSkew);
+            popularity[k] = total;
+        }
+
+        for (int k = 0; k < locations; k++)
+            popularity[k] /= total;
+    }
+
+    /**
+     * Checks if the passed simulated time falls in a rush hour
+     * @param time The simulated time in milliseconds
+     * @return A boolean value that is true if the time is in a rush hour, else returns false
+     */
+    private static boolean isRushHour(long time) {
+        long hour = time % DAY / 3_600_000L;
+        for (int[] rush : RUSH_HOURS)
+            if (hour >= rush[0] && hour < rush[1])
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Checks that the passed rate is between 0 and 1
+     * @param rate The rate being checked
+     * @param name The name of the rate, used in the error message
+     * @return The rate
+     * @throws IllegalArgumentException if the rate is not between 0 and 1
+     */
+    private static double checkRate(double rate, String name) {
+        if (!(rate >= 0 && rate <= 1))
+            throw new IllegalArgumentException("Unable to set " + name + " rate! Invalid rate: " + rate);
+
+        return rate;
+    }
+
+    /**
+     * Creates a ride with a single passenger named after its ID
+     * @param id The ride's ID
+     * @param time The ride's simulated time in milliseconds
+     * @param startId The start location ID
+     * @param endId The end location ID
+     * @return The new ride
+     */
+    private static Ride newRide(int id, long time, int startId, int endId) {
+        return new Ride(id, new Time(time), "Passenger " + id, startId, endId);
+    }
+
+    /**
+     * The outcome of a single drive of the heap
+     */
+    public static final class Report {
+        /**
+         * The per-operation latencies recorded by the heap
+         */
+        private final LatencyRecorder latencies;
+        /**
+         * The number of bookings made
+         */
+        private long bookings;
+        /**
+         * The number of bookings (including rescheduled rides) that were pooled into an existing ride
+         */
+        private long pooled;
+        /**
+         * The number of bookings (including rescheduled rides) that the heap rejected
+         */
+        private long rejected;
+        /**
+         * The number of live rides cancelled
+         */
+        private long cancellations;
+        /**
+         * The number of live rides moved to a new time
+         */
+        private long reschedules;
+        /**
+         * The number of rides dispatched (polled) once the clock reached them
+         */
+        private long dispatches;
+        /**
+         * The wall-clock time taken in nanoseconds
+         */
+        private long elapsedNanos;
+        /**
+         * The most memory seen in use by the JVM in bytes
+         */
+        private long peakMemory;
+        /**
+         * The number of rides in the heap at the end of the drive
+         */
+        private int heapSize;
+
+        /**
+         * Constructs a new, empty report
+         * @param latencies The per-operation latencies recorded by the heap
+         */
+        private Report(LatencyRecorder latencies) {
+            this.latencies = latencies;
+        }
+
+        /**
+         * Returns the number of bookings made, not counting rescheduled rides
+         * @return A long value denoting the number of bookings
+         */
+        public long getBookings() {
+            return bookings;
+        }
+
+        /**
+         * Returns the number of bookings (including rescheduled rides) that were pooled into an existing ride
+         * @return A long value denoting the number of pooled bookings
+         */
+        public long getPooled() {
+            return pooled;
+        }
+
+        /**
+         * Returns the number of bookings (including rescheduled rides) that the heap rejected (e.g., because it was full)
+         * @return A long value denoting the number of rejected bookings
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * Returns the number of live rides cancelled
+         * @return A long value denoting the number of cancellations
+         */
+        public long getCancellations() {
+            return cancellations;
+        }
+
+        /**
+         * Returns the number of live rides moved to a new time
+         * @return A long value denoting the number of reschedules
+         */
+        public long getReschedules() {
+            return reschedules;
+        }
+
+        /**
+         * Returns the number of rides dispatched (polled) once the clock reached them
+         * @return A long value denoting the number of dispatches
+         */
+        public long getDispatches() {
+            return dispatches;
+        }
+
+        /**
+         * Returns the number of heap operations per second of wall-clock time, counting each booking, cancellation,
+         * reschedule (as a remove and an insert) and dispatch
+         * @return A double value denoting the throughput in operations per second
+         */
+        public double getThroughput() {
+            long operations = bookings + cancellations + 2 * reschedules + dispatches;
+            return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the most memory seen in use by the JVM during the drive
+         * @return A long value denoting the peak memory used in bytes
+         */
+        public long getPeakMemory() {
+            return peakMemory;
+        }
+
+        /**
+         * Returns the number of rides in the heap at the end of the drive
+         * @return An integer value denoting the heap's size
+         */
+        public int getHeapSize() {
+            return heapSize;
+        }
+
+        /**
+         * Returns the per-operation latencies recorded by the heap, which are kept across drives of the same heap
+         * @return The heap's latency recorder
+         */
+        public LatencyRecorder getLatencies() {
+            return latencies;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("bookings=%d, pooled=%d, rejected=%d, cancellations=%d, reschedules=%d, dispatches=%d, "
+                            + "heapSize=%d, throughput=%.0f ops/s, insert p99=%.2fus, peakMemory=%.1fMB",
+                    bookings, pooled, rejected, cancellations, reschedules, dispatches, heapSize, getThroughput(),
+                    latencies.getHistogram(LatencyRecorder.Op.INSERT).getValueAtPercentile(99) / 1000.0, peakMemory / 1048576.0);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import java.util.function.IntPredicate;
+
+/**
+ * Creates a compact, fixed-memory record of every ride ID that has ever been booked, used to reject replayed bookings
+ * whose rides have already left the heap. Dense ID ranges are stored exactly in a paged bitmap, one bit per ID, and once
+ * the memory budget for pages runs out any further IDs fall back to a Bloom filter
+ *
+ * @Note: Example instantiation:<br>
+ * SeenIdFilter filter = new SeenIdFilter(16 * 1024 * 1024, null);<br>
+ * heap.setSeenIdFilter(filter);<br>
+ * <br>A 16MB budget holds about 117 million dense IDs exactly. A Bloom filter can report an ID as seen when it was not
+ * (a false positive), so an optional confirm check can be passed to look up the real booking in that case.
+ * Each check and add is O(1). This class is not thread-safe
+ */
+public class SeenIdFilter {
+    /**
+     * The number of bits (IDs) held by each bitmap page, as a power of 2
+     */
+    private static final int PAGE_SHIFT = 16;
+    /**
+     * The number of longs in each bitmap page
+     */
+    private static final int PAGE_LONGS = (1 << PAGE_SHIFT) / Long.SIZE;
+    /**
+     * The number of bytes used by each bitmap page
+     */
+    private static final long PAGE_BYTES = (long) PAGE_LONGS * Long.BYTES;
+    /**
+     * The fraction of the memory budget reserved for the Bloom filter
+     */
+    private static final int BLOOM_SHARE = 8;
+    /**
+     * The number of hash functions used by the Bloom filter
+     */
+    private static final int BLOOM_HASHES = 5;
+    /**
+     * The bitmap pages, indexed by the upper bits of the ID. Pages are only allocated once an ID in their range is added
+     */
+    private final long[][] pages = new long[1 << (Integer.SIZE - 1 - PAGE_SHIFT)][];
+    /**
+     * The bits of the Bloom filter
+     */
+    private final long[] bloom;
+    /**
+     * Masks a hash down to a bit index of the Bloom filter
+     */
+    private final long bloomMask;
+    /**
+     * The number of pages that can still be allocated within the memory budget
+     */
+    private long pagesLeft;
+    /**
+     * The number of pages that have been allocated
+     */
+    private long pageCount;
+    /**
+     * Checks if an ID reported by the Bloom filter has really been booked, or null to trust the Bloom filter
+     */
+    private final IntPredicate confirm;
+    /**
+     * The number of IDs stored exactly in the bitmap
+     */
+    private long exactCount;
+    /**
+     * The number of IDs stored in the Bloom filter
+     */
+    private long bloomCount;
+    /**
+     * The number of times the confirm check has been called
+     */
+    private long confirmCount;
+
+    /**
+     * Constructs a new filter that uses at most (roughly) the passed number of bytes
+     * @param memoryBudget The maximum number of bytes the bitmap pages and Bloom filter may use together
+     * @param confirm Checks if an ID the Bloom filter reports as seen has really been booked, or null to treat every Bloom filter match as seen
+     * @throws IllegalArgumentException if the budget is too small to hold a Bloom filter and a single page
+     */
+    public SeenIdFilter(long memoryBudget, IntPredicate confirm) {
+        if (memoryBudget < PAGE_BYTES + BLOOM_SHARE * Long.BYTES)
+            throw new IllegalArgumentException("Unable to create filter! Memory budget is too small: " + memoryBudget);
+
+        // sizes the Bloom filter to a power of 2 so a hash can be masked into a bit index
+        long bloomLongs = Long.highestOneBit(Math.max(1, memoryBudget / BLOOM_SHARE / Long.BYTES));
+        bloomLongs = Math.min(bloomLongs, 1 << 30);
+        bloom = new long[(int) bloomLongs];
+        bloomMask = bloomLongs * Long.SIZE - 1;
+
+        // the rest of the budget (less the page index itself) is handed out one page at a time
+        long indexBytes = (long) pages.length * Integer.BYTES;
+        pagesLeft = Math.max(0, (memoryBudget - bloomLongs * Long.BYTES - indexBytes) / PAGE_BYTES);
+        this.confirm = confirm;
+    }
+
+    /**
+     * Checks if the passed ride ID has been booked before
+     * @param id The ride ID being checked
+     * @return A boolean value that is true if the ID has been seen, else returns false
+     */
+    public boolean isSeen(int id) {
+        if (id < 0)
+            return false;
+
+        // IDs inside an allocated page are known exactly
+        long[] page = pages[id >>> PAGE_SHIFT];
+        if (page != null && (page[(id & ((1 << PAGE_SHIFT) - 1)) >>> 6] & (1L << id)) != 0)
+            return true;
+
+        // an ID that is not in the Bloom filter has definitely not been seen
+        if (!bloomContains(id))
+            return false;
+
+        // the Bloom filter may be wrong, so it is confirmed if a confirm check was passed
+        if (confirm == null)
+            return true;
+
+        confirmCount++;
+        return confirm.test(id);
+    }
+
+    /**
+     * Records the passed ride ID as booked
+     * @param id The ride ID being recorded
+     */
+    public void add(int id) {
+        if (id < 0)
+            return;
+
+        int pageIndex = id >>> PAGE_SHIFT;
+        long[] page = pages[pageIndex];
+
+        // allocates the ID's page if there is budget left, else falls back to the Bloom filter
+        if (page == null && pagesLeft > 0) {
+            page = new long[PAGE_LONGS];
+            pages[pageIndex] = page;
+            pagesLeft--;
+            pageCount++;
+        }
+
+        if (page == null) {
+            bloomAdd(id);
+            bloomCount++;
+            return;
+        }
+
+        int word = (id & ((1 << PAGE_SHIFT) - 1)) >>> 6;
+        if ((page[word] & (1L << id)) == 0) {
+            page[word] |= 1L << id;
+            exactCount++;
+        }
+    }
+
+    /**
+     * Returns the number of IDs stored exactly in the bitmap
+     * @return A long value denoting the number of exact IDs
+     */
+    public long getExactCount() {
+        return exactCount;
+    }
+
+    /**
+     * Returns the number of IDs stored in the Bloom filter
+     * @return A long value denoting the number of IDs that did not fit in the bitmap
+     */
+    public long getBloomCount() {
+        return bloomCount;
+    }
+
+    /**
+     * Returns the number of times the confirm check has been called
+     * @return A long value denoting the number of confirm calls
+     */
+    public long getConfirmCount() {
+        return confirmCount;
+    }
+
+    /**
+     * Returns the number of bytes currently used by the bitmap pages, the Bloom filter and the page index
+     * @return A long value denoting the memory used in bytes
+     */
+    public long getMemoryUsed() {
+        return pageCount * PAGE_BYTES + (long) bloom.length * Long.BYTES + (long) pages.length * Integer.BYTES;
+    }
+
+    /**
+     * Sets the Bloom filter bits for the passed ID
+     * @param id The ID being added
+     */
+    private void bloomAdd(int id) {
+        long hash = mix(id);
+        long hash1 = hash >>> 32;
+        long hash2 = hash & 0xFFFFFFFFL | 1;
+
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (hash1 + i * hash2) & bloomMask;
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks if every Bloom filter bit for the passed ID is set
+     * @param id The ID being checked
+     * @return A boolean value that is true if the ID may have been added, else returns false
+     */
+    private boolean bloomContains(int id) {
+        // an empty Bloom filter can skip the hashing entirely
+        if (bloomCount == 0)
+            return false;
+
+        long hash = mix(id);
+        long hash1 = hash >>> 32;
+        long hash2 = hash & 0xFFFFFFFFL | 1;
+
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (hash1 + i * hash2) & bloomMask;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Spreads the bits of the passed ID across a 64-bit hash (the SplitMix64 finalizer)
+     * @param id The ID being hashed
+     * @return A well-mixed 64-bit hash of the ID
+     */
+    private static long mix(int id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
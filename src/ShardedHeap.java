@@ -0,0 +1,477 @@
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Creates a ride queue that is split into several 'MinHeap' shards, partitioned by the region of each rides start location.
+ * Each shard is owned by its own thread, so rides for different regions can be inserted and removed in parallel, and a
+ * small tournament (winner) tree over the shard roots finds the earliest ride across every shard in O(log K) time
+ *
+ * @Note: Example instantiation:<br>
+ * ShardedHeap queue = new ShardedHeap(4, 10_000);<br>
+ * <br>Rides are mapped to a region using: startId mod (shards * 4), and each region is mapped to a shard.
+ * Rides on the same route always share a region, so pooling still works within each shard.
+ * When one shard grows disproportionately, a whole region is moved from the largest shard to the smallest.
+ * Call close() once the queue is no longer needed to stop the shard threads
+ */
+public class ShardedHeap implements AutoCloseable {
+    /**
+     * The number of regions created for each shard, giving the rebalancer whole regions to move between shards
+     */
+    private static final int REGIONS_PER_SHARD = 4;
+    /**
+     * How many times larger than the average of the other shards a shard must be before its regions are rebalanced
+     */
+    private static final double REBALANCE_FACTOR = 2.0;
+    /**
+     * The minimum size a shard must reach before it is considered for rebalancing
+     */
+    private static final int REBALANCE_MIN_RIDES = 64;
+    /**
+     * The heap that stores the rides of each shard
+     */
+    private final MinHeap[] shards;
+    /**
+     * The single thread that owns (and is the only thread to touch) each shard
+     */
+    private final ExecutorService[] owners;
+    /**
+     * Maps each region to the shard that currently holds its rides
+     */
+    private final int[] regionToShard;
+    /**
+     * The number of rides in each shard, published by the owning thread after each operation
+     */
+    private final AtomicIntegerArray sizes;
+    /**
+     * The root ride of each shard as last published by its owning thread, guarded by the tree lock
+     */
+    private final Ride[] roots;
+    /**
+     * The sequence number of the last root published by each shard, so an older root can never overwrite a newer one
+     */
+    private final long[] rootSeqs;
+    /**
+     * The operation sequence number of each shard, only touched by the owning thread
+     */
+    private final long[] opSeqs;
+    /**
+     * The winner tree over the shard roots, index 1 holds the shard with the earliest root and leaves start at index 'leaves'
+     */
+    private final int[] tree;
+    /**
+     * The number of leaves in the winner tree (the shard count rounded up to a power of 2)
+     */
+    private final int leaves;
+    /**
+     * Guards the tournament tree and the cached shard roots
+     */
+    private final Object treeLock = new Object();
+    /**
+     * Serializes global polls so two polls never try to take the same root
+     */
+    private final Object pollLock = new Object();
+    /**
+     * Lets inserts and removes route rides in parallel while a rebalance is moving a region between shards
+     */
+    private final ReentrantReadWriteLock regionLock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructs a new sharded queue with the passed number of shards, each owned by its own thread
+     * @param shardCount The number of shards (and owning threads) to create
+     * @param maxRidesPerShard The maximum number of rides each shard can hold
+     * @throws IllegalArgumentException if either value is less than 1
+     */
+    public ShardedHeap(int shardCount, int maxRidesPerShard) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("Unable to create sharded heap! Invalid shard count: " + shardCount);
+
+        shards = new MinHeap[shardCount];
+        owners = new ExecutorService[shardCount];
+        sizes = new AtomicIntegerArray(shardCount);
+        roots = new Ride[shardCount];
+        rootSeqs = new long[shardCount];
+        opSeqs = new long[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new MinHeap(maxRidesPerShard);
+            // names each owning thread after its shard so it is easy to find in a thread dump
+            String name = "ShardedHeap-shard-" + i;
+            owners[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // maps the regions to shards in round-robin order
+        regionToShard = new int[shardCount * REGIONS_PER_SHARD];
+        for (int region = 0; region < regionToShard.length; region++)
+            regionToShard[region] = region % shardCount;
+
+        // builds an empty tournament tree, padding leaves past the last shard are marked with -1
+        int leaves = 1;
+        while (leaves < shardCount)
+            leaves <<= 1;
+
+        this.leaves = leaves;
+        tree = new int[leaves * 2];
+        for (int i = 0; i < leaves; i++)
+            tree[leaves + i] = i < shardCount ? i : -1;
+        for (int i = leaves - 1; i > 0; i--)
+            tree[i] = winner(tree[i * 2], tree[i * 2 + 1]);
+    }
+
+    /**
+     * Adds the passed ride to the shard that owns its region (maintaining heap order)
+     * @param r The ride being added
+     * @return A boolean value that is true if the ride was successfully inserted (or pooled), else returns false
+     * @throws IllegalStateException if the rebalance this insert triggered could not put every ride back after a failed move
+     */
+    public boolean insert(Ride r) {
+        if (r == null || !r.isValid)
+            return false;
+
+        int shard;
+        Boolean isInserted;
+
+        regionLock.readLock().lock();
+        try {
+            shard = regionToShard[getRegion(r)];
+            int owner = shard;
+            isInserted = execute(shard, () -> {
+                boolean result = shards[owner].insert(r);
+                publish(owner);
+                return result;
+            });
+
+        } finally {
+            regionLock.readLock().unlock();
+        }
+
+        // rebalances if this insert left its shard disproportionately large
+        if (Boolean.TRUE.equals(isInserted) && isUnbalanced(shard))
+            rebalance();
+
+        return Boolean.TRUE.equals(isInserted);
+    }
+
+    /**
+     * Removes the passed ride from the shard that owns its region (maintaining heap order)
+     * @param r The ride being removed
+     * @return A boolean value that is true if the ride was successfully removed, else returns false
+     */
+    public boolean remove(Ride r) {
+        if (r == null || !r.isValid)
+            return false;
+
+        regionLock.readLock().lock();
+        try {
+            int shard = regionToShard[getRegion(r)];
+            return Boolean.TRUE.equals(execute(shard, () -> {
+                boolean result = shards[shard].remove(r);
+                publish(shard);
+                return result;
+            }));
+
+        } finally {
+            regionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the earliest ride across every shard without removing it
+     * @return The earliest ride in the queue, or null if every shard is empty
+     */
+    public Ride peek() {
+        synchronized (treeLock) {
+            int shard = tree[1];
+            return shard < 0 ? null : roots[shard];
+        }
+    }
+
+    /**
+     * Removes and returns the earliest ride across every shard
+     * @return The earliest ride in the queue, or null if every shard is empty
+     */
+    public Ride poll() {
+        synchronized (pollLock) {
+            int shard;
+            synchronized (treeLock) {
+                shard = tree[1];
+                if (shard < 0 || roots[shard] == null)
+                    return null;
+            }
+
+            // the owning thread takes its own root, which can only be earlier than the root the tree last saw
+            return execute(shard, () -> {
+                Ride ride = shards[shard].poll();
+                publish(shard);
+                return ride;
+            });
+        }
+    }
+
+    /**
+     * Returns the total number of rides across every shard
+     * @return An integer value denoting the number of rides in the queue
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < sizes.length(); i++)
+            size += sizes.get(i);
+
+        return size;
+    }
+
+    /**
+     * Returns the number of rides in the passed shard
+     * @param shard The index of the shard
+     * @return An integer value denoting the number of rides in the shard
+     */
+    public int getShardSize(int shard) {
+        return sizes.get(shard);
+    }
+
+    /**
+     * Returns the number of shards in this queue
+     * @return An integer value denoting the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the shard that currently holds the rides of the passed ride's region
+     * @param r The ride being looked up
+     * @return An integer value denoting the index of the shard
+     */
+    public int getShard(Ride r) {
+        regionLock.readLock().lock();
+        try {
+            return regionToShard[getRegion(r)];
+
+        } finally {
+            regionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves one region from the largest shard to the smallest shard if the largest shard is disproportionately large
+     * @return A boolean value that is true if a region was moved, else returns false
+     * @throws IllegalStateException if a failed move could not put every ride back into the largest shard
+     */
+    public boolean rebalance() {
+        // skips the rebalance if another thread is already rebalancing
+        if (!regionLock.writeLock().tryLock())
+            return false;
+
+        try {
+            synchronized (pollLock) {
+                return moveRegion();
+            }
+
+        } finally {
+            regionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the thread that owns each shard
+     */
+    @Override
+    public void close() {
+        for (ExecutorService owner : owners)
+            owner.shutdownNow();
+    }
+
+    /**
+     * Moves the region that best evens out the largest and smallest shards, must be called while holding the region write lock
+     * @return A boolean value that is true if a region was moved, else returns false
+     * @throws IllegalStateException if a failed move could not put every ride back into the largest shard
+     */
+    private boolean moveRegion() {
+        // finds the largest and smallest shard
+        int heavy = 0, light = 0;
+        for (int i = 1; i < shards.length; i++) {
+            if (sizes.get(i) > sizes.get(heavy)) heavy = i;
+            if (sizes.get(i) < sizes.get(light)) light = i;
+        }
+
+        if (heavy == light || !isUnbalanced(heavy))
+            return false;
+
+        // counts the rides in each region of the largest shard on its owning thread
+        int from = heavy;
+        Ride[] snapshot = execute(from, shards[from]::snapshot);
+        if (snapshot == null)
+            return false;
+
+        int[] regionCounts = new int[regionToShard.length];
+        for (Ride ride : snapshot)
+            regionCounts[getRegion(ride)]++;
+
+        // fetches the free slots of the smallest shard on its owning thread, so a region that would not fit is never taken out
+        int to = light;
+        Integer spare = execute(to, shards[to]::getSpareCapacity);
+        if (spare == null)
+            return false;
+
+        // picks the region that brings both shards closest to the same size, without moving the whole shard
+        int target = (sizes.get(heavy) - sizes.get(light)) / 2;
+        int region = -1;
+        for (int i = 0; i < regionCounts.length; i++)
+            if (regionToShard[i] == heavy && regionCounts[i] > 0 && regionCounts[i] < snapshot.length && regionCounts[i] <= spare
+                    && (region < 0 || Math.abs(regionCounts[i] - target) < Math.abs(regionCounts[region] - target)))
+                region = i;
+
+        if (region < 0)
+            return false;
+
+        // takes the region's rides out of the largest shard and, if the move fails, puts them back in the same task, so
+        // nothing else can run on the largest shard in between and fill the slots they were taken from
+        int moved = region;
+        int[] lost = new int[1];
+        Boolean isMoved = execute(from, () -> {
+            List<Ride> rides = shards[from].removeIf(ride -> getRegion(ride) == moved);
+
+            // puts the region's rides into the smallest shard, if any ride is rejected they are all taken back out
+            Boolean isAccepted = execute(to, () -> {
+                boolean isInserted = insertAll(shards[to], rides);
+                if (!isInserted)
+                    shards[to].removeIf(ride -> getRegion(ride) == moved);
+
+                publish(to);
+                return isInserted;
+            });
+
+            // aborts the move by putting every ride back into the largest shard, counting any that will not go back
+            if (!Boolean.TRUE.equals(isAccepted))
+                for (Ride ride : rides)
+                    if (!shards[from].hasRide(ride) && !insertAll(shards[from], List.of(ride)))
+                        lost[0]++;
+
+            publish(from);
+            return Boolean.TRUE.equals(isAccepted);
+        });
+
+        if (lost[0] > 0)
+            throw new IllegalStateException("Unable to rebalance! " + lost[0] + " rides of region " + region
+                    + " could not be put back into shard " + from);
+
+        if (!Boolean.TRUE.equals(isMoved))
+            return false;
+
+        regionToShard[region] = light;
+        return true;
+    }
+
+    /**
+     * Inserts the passed rides into the passed shard as separate rides (they were already separate in the shard they came
+     * from, so pooling them together again would merge passengers), must only be called on the shard's owning thread
+     * @param shard The heap the rides are inserted into
+     * @param rides The rides being inserted
+     * @return A boolean value that is true if every ride was inserted, else returns false
+     */
+    private static boolean insertAll(MinHeap shard, List<Ride> rides) {
+        boolean isPooling = shard.isPooling();
+        shard.setPooling(false);
+        try {
+            boolean isInserted = true;
+            for (Ride ride : rides)
+                isInserted &= shard.insert(ride);
+
+            return isInserted;
+
+        } finally {
+            shard.setPooling(isPooling);
+        }
+    }
+
+    /**
+     * Checks if the passed shard is disproportionately larger than the average of the other shards
+     * @param shard The index of the shard being checked
+     * @return A boolean value that is true if the shard should be rebalanced, else returns false
+     */
+    private boolean isUnbalanced(int shard) {
+        int size = sizes.get(shard);
+        if (shards.length < 2 || size < REBALANCE_MIN_RIDES)
+            return false;
+
+        // compares against the other shards, since the shard itself would drag the average up
+        double averageOthers = (double) (size() - size) / (shards.length - 1);
+        return size > REBALANCE_FACTOR * averageOthers;
+    }
+
+    /**
+     * Publishes the current root and size of the passed shard, must only be called on the shard's owning thread
+     * @param shard The index of the shard being published
+     */
+    private void publish(int shard) {
+        Ride root = shards[shard].peek();
+        long seq = ++opSeqs[shard];
+        sizes.set(shard, shards[shard].size());
+
+        synchronized (treeLock) {
+            // an older root can never overwrite a newer one
+            if (seq <= rootSeqs[shard])
+                return;
+
+            rootSeqs[shard] = seq;
+            roots[shard] = root;
+
+            // replays the matches from the shard's leaf up to the root of the tree
+            for (int i = (leaves + shard) / 2; i > 0; i /= 2)
+                tree[i] = winner(tree[i * 2], tree[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * Plays a match between two shards of the tournament tree, must be called while holding the tree lock
+     * @param shard1 The first shard, or -1 for an empty leaf
+     * @param shard2 The second shard, or -1 for an empty leaf
+     * @return The shard whose root is earliest, an empty shard always loses
+     */
+    private int winner(int shard1, int shard2) {
+        if (shard1 < 0 || roots[shard1] == null)
+            return shard2 < 0 || roots[shard2] == null ? (shard1 < 0 ? shard2 : shard1) : shard2;
+
+        if (shard2 < 0 || roots[shard2] == null)
+            return shard1;
+
+        return roots[shard2].time.before(roots[shard1].time) ? shard2 : shard1;
+    }
+
+    /**
+     * Calculates the region of the passed ride from its start location ID
+     * @param r The ride being mapped to a region
+     * @return An integer value denoting the region of the ride
+     */
+    private int getRegion(Ride r) {
+        return Math.floorMod(r.startId, regionToShard.length);
+    }
+
+    /**
+     * Runs the passed task on the thread that owns the passed shard and waits for its result
+     * @param shard The index of the shard the task operates on
+     * @param task The task to run
+     * @return The result of the task, or null if the task failed or the queue has been closed
+     */
+    private <T> T execute(int shard, Callable<T> task) {
+        try {
+            return owners[shard].submit(task).get();
+
+        } catch (InterruptedException e) {
+            // restores the interrupt so the caller can see it
+            Thread.currentThread().interrupt();
+            return null;
+
+        } catch (ExecutionException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Tracks the best K elements seen in a stream (e.g., the K earliest rides in a zone) in fixed memory, without copying or
+ * sorting the whole queue. Internally a 'PriorityHeap' holds the current K best elements with the worst of them at the top,
+ * so a new element only has to beat the top to get in, and then replaces it in a single sift
+ *
+ * @Note: Example instantiation:<br>
+ * TopKTracker&lt;Ride&gt; earliest = TopKTracker.earliestRides(10);<br>
+ * for (Ride r : zoneRides) earliest.offer(r);<br>
+ * List&lt;Ride&gt; board = earliest.toSortedList();<br>
+ * <br>Each offer is O(1) when the element is rejected and O(log K) when it is kept, and memory never grows past K elements.
+ * This class is not thread-safe
+ * @param <T> The type of element being tracked
+ */
+public class TopKTracker<T> {
+    /**
+     * Holds the current best elements, with the worst of them at the top
+     */
+    private final PriorityHeap<T> heap;
+    /**
+     * Extracts the key each element is ranked by
+     */
+    private final ToLongFunction<? super T> keyExtractor;
+    /**
+     * True if the largest keys are kept, else the smallest keys are kept
+     */
+    private final boolean isLargest;
+
+    /**
+     * Constructs a new tracker that keeps the K elements with the smallest (or largest) keys
+     * @param k The number of elements to keep
+     * @param keyExtractor Extracts the key each element is ranked by
+     * @param isLargest True to keep the largest keys, else the smallest keys are kept
+     * @throws IllegalArgumentException if K is less than 1
+     */
+    public TopKTracker(int k, ToLongFunction<? super T> keyExtractor, boolean isLargest) {
+        this.keyExtractor = keyExtractor;
+        this.isLargest = isLargest;
+        // the heap's top must be the worst kept element, so keys are inverted when keeping the smallest (~key avoids overflow)
+        heap = isLargest ? new PriorityHeap<>(k, keyExtractor) : new PriorityHeap<>(k, element -> ~keyExtractor.applyAsLong(element));
+    }
+
+    /**
+     * Creates a tracker of the K earliest scheduled rides
+     * @param k The number of rides to keep
+     * @return A new tracker that keeps the rides with the earliest times
+     */
+    public static TopKTracker<Ride> earliestRides(int k) {
+        return new TopKTracker<>(k, ride -> ride.time.getTime(), false);
+    }
+
+    /**
+     * Creates a tracker of the K latest scheduled rides
+     * @param k The number of rides to keep
+     * @return A new tracker that keeps the rides with the latest times
+     */
+    public static TopKTracker<Ride> latestRides(int k) {
+        return new TopKTracker<>(k, ride -> ride.time.getTime(), true);
+    }
+
+    /**
+     * Offers the passed element to the tracker, which keeps it if it is among the best K seen so far
+     * @param element The element being offered
+     * @return A boolean value that is true if the element was kept, else returns false
+     */
+    public boolean offer(T element) {
+        if (element == null)
+            return false;
+
+        if (heap.size() < heap.getCapacity())
+            return heap.insert(element);
+
+        // the element must beat the worst kept element, ties keep the element that arrived first
+        if (heap.compareToTop(element) <= 0)
+            return false;
+
+        heap.replaceTop(element);
+        return true;
+    }
+
+    /**
+     * Returns the worst of the kept elements, which any new element must beat once the tracker is full
+     * @return The worst kept element, or null if the tracker is empty
+     */
+    public T peekWorst() {
+        return heap.peek();
+    }
+
+    /**
+     * Returns the kept elements, best first
+     * @return A new list holding the kept elements in ranked order
+     */
+    public List<T> toSortedList() {
+        List<T> list = heap.toList();
+        Comparator<T> order = Comparator.comparingLong(keyExtractor);
+        list.sort(isLargest ? order.reversed() : order);
+        return list;
+    }
+
+    /**
+     * Returns the number of elements currently kept
+     * @return An integer value denoting the number of kept elements, at most K
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Returns the number of elements the tracker keeps
+     * @return An integer value denoting K
+     */
+    public int getK() {
+        return heap.getCapacity();
+    }
+
+    /**
+     * Removes every kept element so the tracker can be reused (e.g., on the next dashboard refresh)
+     */
+    public void clear() {
+        heap.clear();
+    }
+}
@@ -0,0 +1,301 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recorded trace of bookings, cancellations and dispatch polls (a 'MutationLog' file, e.g., copied from a
+ * production primary) against a 'MinHeap', so incidents can be reproduced and performance regressions bisected against
+ * real traffic. The trace is replayed either as fast as possible, or at its original inter-arrival timing scaled by a speed
+ * factor, and the throughput, queue depth and operation latency are reported for each interval of the replay
+ *
+ * @Note: Example usage:<br>
+ * TraceReplayer replayer = new TraceReplayer(trace);<br>
+ * TraceReplayer.Report report = replayer.replay(new MinHeap(100_000), 2.0, 1000);&nbsp;&nbsp;// twice as fast, 1s intervals<br>
+ * report.dump(System.out);<br>
+ * <br>When the original timing is kept, each operation's latency is measured from when it was due rather than when it
+ * started, so an operation held up behind a slow one is counted as late instead of being hidden (coordinated omission).
+ * Trace times have millisecond resolution, so operations recorded in the same millisecond are replayed back to back.
+ * A record cut short at the end of the trace (e.g., the primary crashed part way through writing it) ends the replay
+ */
+public class TraceReplayer {
+    /**
+     * The size of the buffer used when reading the trace
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The trace file
+     */
+    private final Path trace;
+
+    /**
+     * Constructs a new replayer for the passed trace
+     * @param trace The trace file, in the 'MutationLog' format
+     */
+    public TraceReplayer(Path trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Replays the trace against the passed heap
+     * @param heap The heap the trace is replayed on, usually empty and configured like the heap the trace was recorded from
+     * @param speed The factor the original timing is sped up by (e.g., 1 for the original timing, 10 for ten times as
+     *              fast), or 0 to replay as fast as possible
+     * @param intervalMillis The length of each reporting interval of the replay in milliseconds
+     * @return The per-interval and overall throughput, queue depth and latency of the replay
+     * @throws IllegalArgumentException if the speed is negative or the interval is less than 1 millisecond
+     * @throws IOException if the trace could not be read or holds an unknown record
+     */
+    public Report replay(MinHeap heap, double speed, long intervalMillis) throws IOException {
+        if (!(speed >= 0) || Double.isInfinite(speed))
+            throw new IllegalArgumentException("Unable to replay trace! Invalid speed: " + speed);
+
+        if (intervalMillis < 1)
+            throw new IllegalArgumentException("Unable to replay trace! Invalid interval: " + intervalMillis);
+
+        Report report = new Report();
+        long intervalNanos = intervalMillis * 1_000_000L;
+        long start = System.nanoTime();
+        long firstTime = Long.MIN_VALUE;
+        Interval interval = new Interval(0);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(trace), BUFFER_SIZE))) {
+            MutationLog.Record record;
+            while ((record = next(in, report)) != null) {
+                if (firstTime == Long.MIN_VALUE)
+                    firstTime = record.time;
+
+                // waits until the record is due, scaled from its offset into the trace
+                long due = System.nanoTime();
+                if (speed > 0) {
+                    due = start + (long) ((record.time - firstTime) * 1_000_000L / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0)
+                        LockSupport.parkNanos(wait);
+                }
+
+                long opStart = System.nanoTime();
+                // closes every interval that has passed, an interval with no operations is still reported
+                while (opStart - start >= interval.startNanos + intervalNanos) {
+                    interval.depth = heap.size();
+                    report.intervals.add(interval);
+                    interval = new Interval(interval.startNanos + intervalNanos);
+                }
+
+                boolean isApplied = apply(heap, record);
+                long latency = System.nanoTime() - (speed > 0 ? due : opStart);
+                interval.latency.record(latency);
+                report.latency.record(latency);
+                interval.operations++;
+                report.operations++;
+                if (!isApplied)
+                    report.missed++;
+            }
+        }
+
+        report.elapsedNanos = System.nanoTime() - start;
+        interval.depth = heap.size();
+        report.intervals.add(interval);
+        return report;
+    }
+
+    /**
+     * Reads the next record from the trace, treating a record cut short at the end as the end of the trace
+     * @param in The trace input
+     * @param report The report that notes a cut-short record
+     * @return The next record, or null at the end of the trace
+     * @throws IOException if the trace could not be read or holds an unknown record
+     */
+    private static MutationLog.Record next(DataInputStream in, Report report) throws IOException {
+        try {
+            return MutationLog.read(in);
+
+        } catch (EOFException e) {
+            report.isTruncated = true;
+            return null;
+        }
+    }
+
+    /**
+     * Applies a single record to the heap
+     * @param heap The heap the trace is replayed on
+     * @param record The record being applied
+     * @return A boolean value that is true if the heap accepted the operation, else returns false (e.g., the heap is
+     * configured differently to the one the trace was recorded from, so a cancelled ride is not held)
+     */
+    private static boolean apply(MinHeap heap, MutationLog.Record record) {
+        switch (record.op) {
+            case MutationLog.OP_INSERT:
+                return heap.insert(record.ride);
+
+            case MutationLog.OP_REMOVE:
+                Ride held = heap.getRide(record.rideId);
+                return held != null && heap.remove(held);
+
+            default:
+                return heap.poll() != null;
+        }
+    }
+
+    /**
+     * The throughput, queue depth and latency of a single interval of a replay
+     */
+    public static final class Interval {
+        /**
+         * The offset of the interval from the start of the replay in nanoseconds
+         */
+        private final long startNanos;
+        /**
+         * The latencies of the operations replayed in the interval
+         */
+        private final LatencyHistogram latency = new LatencyHistogram();
+        /**
+         * The number of operations replayed in the interval
+         */
+        private long operations;
+        /**
+         * The number of rides in the heap at the end of the interval
+         */
+        private int depth;
+
+        /**
+         * Constructs a new, empty interval
+         * @param startNanos The offset of the interval from the start of the replay in nanoseconds
+         */
+        private Interval(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Returns the offset of the interval from the start of the replay
+         * @return A long value denoting the interval's start in milliseconds
+         */
+        public long getStartMillis() {
+            return startNanos / 1_000_000L;
+        }
+
+        /**
+         * Returns the number of operations replayed in the interval
+         * @return A long value denoting the number of operations
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * Returns the number of rides in the heap at the end of the interval
+         * @return An integer value denoting the queue depth
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Returns the latencies of the operations replayed in the interval
+         * @return The interval's latency histogram
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * The outcome of a replay
+     */
+    public static final class Report {
+        /**
+         * Every interval of the replay in order, including the last (partial) interval
+         */
+        private final List<Interval> intervals = new ArrayList<>();
+        /**
+         * The latencies of every operation replayed
+         */
+        private final LatencyHistogram latency = new LatencyHistogram();
+        /**
+         * The number of operations replayed
+         */
+        private long operations;
+        /**
+         * The number of operations the heap did not accept
+         */
+        private long missed;
+        /**
+         * The wall-clock time taken in nanoseconds
+         */
+        private long elapsedNanos;
+        /**
+         * True if the trace ended part way through a record
+         */
+        private boolean isTruncated;
+
+        /**
+         * Returns every interval of the replay in order, the last of which may be shorter than the others
+         * @return An unmodifiable list of the intervals
+         */
+        public List<Interval> getIntervals() {
+            return Collections.unmodifiableList(intervals);
+        }
+
+        /**
+         * Returns the latencies of every operation replayed
+         * @return The overall latency histogram
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Returns the number of operations replayed
+         * @return A long value denoting the number of operations
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * Returns the number of operations the heap did not accept, which is 0 when the replaying heap matches the recording one
+         * @return A long value denoting the number of missed operations
+         */
+        public long getMissed() {
+            return missed;
+        }
+
+        /**
+         * Returns the number of operations replayed per second of wall-clock time
+         * @return A double value denoting the overall throughput in operations per second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : operations * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Checks if the trace ended part way through a record
+         * @return A boolean value that is true if the last record was cut short, else returns false
+         */
+        public boolean isTruncated() {
+            return isTruncated;
+        }
+
+        /**
+         * Prints a table of the throughput, queue depth and latency percentiles of every interval, followed by the totals
+         * @param out The stream the table is printed to (e.g., System.out)
+         */
+        public void dump(PrintStream out) {
+            out.printf("%10s %12s %10s %10s %10s %10s%n", "start ms", "ops", "depth", "p50 us", "p99 us", "max us");
+            for (Interval interval : intervals)
+                out.printf("%10d %12d %10d %10.2f %10.2f %10.2f%n", interval.getStartMillis(), interval.operations, interval.depth,
+                        interval.latency.getValueAtPercentile(50) / 1000.0, interval.latency.getValueAtPercentile(99) / 1000.0,
+                        interval.latency.getMax() / 1000.0);
+
+            out.printf("total: %d ops (%d missed) in %.1fms, %.0f ops/s, %s%n", operations, missed, elapsedNanos / 1e6,
+                    getThroughput(), latency);
+        }
+    }
+}